@@ -3,6 +3,9 @@ package chessboard;
 import player.Player;
 import chesspiece.Piece;
 
+import chesspiece.Piece.PieceType;
+
+import java.awt.Color;
 import java.util.Set;
 
 /**
@@ -10,19 +13,40 @@ import java.util.Set;
  * This array is empty by default, call the {@code setPieceAt} and {@code setPlayerPiece} methods to add {@code Piece} object(s) into the array.
  * The {@code ChessBoard} class stores each {@code Piece} object in the array (perceived as a chess board) for piece tracking using coordinates.
  * When being used in a {@code ChessGame}, it has the ability to flip 180 degree by repositioning all {@code Piece} objects in the array to correspond with the opposite player's point of view.
+ * <p>
+ * Alongside the array, the {@code ChessBoard} keeps a bitboard of every piece type, every color and every flipped {@code Point} piece.
+ * Each of the 42 squares is mapped to one bit of a {@code long} by {@link #toSquare(int, int)}, so that occupancy checks become mask tests instead of object reads.
+ * The masks are kept in sync by {@code setPieceAt}, {@code removePiece}, {@code flipPiece}, {@code clearPieces} and {@code flip}.
+ * The same methods also keep an incremental {@code Zobrist} key of the pieces, both as viewed and as rotated by 180 degree, 
+ * so that {@code flip} only has to swap the two keys.
  * 
  * @see chesspiece.Piece
  * @see chessgame.ChessGame
+ * @see chessboard.Zobrist
  * @author Chay Wen Ning
  */
 public class ChessBoard {
     // Dimension of the chess board
-    private final int NO_OF_ROW = 6;
-    private final int NO_OF_COLUMN = 7;
+    public static final int NO_OF_ROW = 6;
+    public static final int NO_OF_COLUMN = 7;
+    public static final int NO_OF_SQUARE = NO_OF_ROW * NO_OF_COLUMN;
+
+    // Mask with a bit set for every square of the chess board
+    public static final long ALL_SQUARES = (1L << NO_OF_SQUARE) - 1;
 
     // 2d-array of pieces; Represents the dimension of the chess board
     private Piece[][] pieces = new Piece[NO_OF_ROW][NO_OF_COLUMN];
 
+    // Bitboards; One mask per piece type, per color (index 0 for Color.YELLOW, 1 for Color.BLUE) and for flipped Point pieces
+    private long[] pieceTypeMasks = new long[PieceType.values().length];
+    private long[] colorMasks = new long[2];
+    private long flippedPointMask;
+    private long occupiedMask;
+
+    // Zobrist keys of the pieces; as viewed, and as viewed from the opposite player's point of view
+    private long key;
+    private long rotatedKey;
+
     /**
      * Constructs a new empty {@code ChessBoard} object.
      * @author Chay Wen Ning
@@ -50,6 +74,157 @@ public class ChessBoard {
         return NO_OF_COLUMN;
     }
 
+    /**
+     * Returns the square index of the specified x, y coordinate, which is also the bit position of the square in every mask of the chess board.
+     * 
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the square index of the specified x, y coordinate
+     * @see #toMask(int, int)
+     * @author Chay Wen Ning
+     */
+    public static int toSquare(int x, int y) {
+        return y * NO_OF_COLUMN + x;
+    }
+
+    /**
+     * Returns a mask with only the bit of the specified x, y coordinate set.
+     * Returns {@code 0} if the coordinate is outside of the chess board.
+     * 
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the mask of the specified x, y coordinate, {@code 0} if the coordinate is outside of the chess board
+     * @see #toSquare(int, int)
+     * @author Chay Wen Ning
+     */
+    public static long toMask(int x, int y) {
+        if (x < 0 || x >= NO_OF_COLUMN || y < 0 || y >= NO_OF_ROW)
+            return 0L;
+
+        return 1L << toSquare(x, y);
+    }
+
+    /**
+     * Returns the specified mask rotated by 180 degree, i.e. the mask as seen from the opposite player's point of view.
+     * Since square {@code s} is mapped to square {@code NO_OF_SQUARE - 1 - s}, the rotation is a bit reversal of the 42 used bits.
+     * 
+     * @param mask the mask to rotate
+     * @return the rotated mask
+     * @see #flip()
+     * @author Chay Wen Ning
+     */
+    public static long rotate(long mask) {
+        return Long.reverse(mask) >>> (Long.SIZE - NO_OF_SQUARE);
+    }
+
+    /**
+     * Returns the color index used by the color masks of the chess board; {@code 0} for {@code Color.YELLOW} and {@code 1} for {@code Color.BLUE}.
+     * 
+     * @param color the {@code Color} of a piece
+     * @return the color index of the specified {@code Color}
+     * @see #getColorMask(Color)
+     * @author Chay Wen Ning
+     */
+    public static int colorIndex(Color color) {
+        return Color.YELLOW.equals(color) ? 0 : 1;
+    }
+
+    /**
+     * Returns the mask of all occupied squares.
+     * 
+     * @return the mask of all occupied squares
+     * @author Chay Wen Ning
+     */
+    public long getOccupiedMask() {
+        return occupiedMask;
+    }
+
+    /**
+     * Returns the mask of the squares occupied by pieces of the specified {@code Color}.
+     * 
+     * @param color the {@code Color} of the pieces
+     * @return the mask of the squares occupied by pieces of the specified {@code Color}
+     * @author Chay Wen Ning
+     */
+    public long getColorMask(Color color) {
+        return colorMasks[colorIndex(color)];
+    }
+
+    /**
+     * Returns the mask of the squares occupied by pieces of the specified {@code PieceType}.
+     * 
+     * @param type the {@code PieceType} of the pieces
+     * @return the mask of the squares occupied by pieces of the specified {@code PieceType}
+     * @see chesspiece.Piece.PieceType
+     * @author Chay Wen Ning
+     */
+    public long getPieceTypeMask(PieceType type) {
+        return pieceTypeMasks[type.ordinal()];
+    }
+
+    /**
+     * Returns the mask of the squares occupied by flipped {@code Point} pieces.
+     * 
+     * @return the mask of the squares occupied by flipped {@code Point} pieces
+     * @see chesspiece.Point
+     * @author Chay Wen Ning
+     */
+    public long getFlippedPointMask() {
+        return flippedPointMask;
+    }
+
+    /**
+     * Returns the {@code Zobrist} key of all pieces on the chess board, taking the board as viewed from the first player's point of view.
+     * 
+     * @return the key of all pieces on the chess board
+     * @see #getRotatedKey()
+     * @see chessboard.Zobrist
+     * @author Chay Wen Ning
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the {@code Zobrist} key of all pieces on the chess board once rotated by 180 degree, 
+     * i.e. the key after the next {@code flip}, which is the key from the first player's point of view while the board is flipped to the second player.
+     * 
+     * @return the key of all pieces on the rotated chess board
+     * @see #getKey()
+     * @see #flip()
+     * @author Chay Wen Ning
+     */
+    public long getRotatedKey() {
+        return rotatedKey;
+    }
+
+    /**
+     * Returns {@code true} if there is a piece at the specified x, y coordinate. 
+     * Returns {@code false} if the coordinate is outside of the chess board.
+     * 
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return {@code true} if there is a piece at the specified x, y coordinate
+     * @author Chay Wen Ning
+     */
+    public boolean isOccupied(int x, int y) {
+        return (occupiedMask & toMask(x, y)) != 0;
+    }
+
+    /**
+     * Returns {@code true} if there is a piece of the specified {@code Color} at the specified x, y coordinate.
+     * Returns {@code false} if the coordinate is outside of the chess board.
+     * 
+     * @param x     the x coordinate
+     * @param y     the y coordinate
+     * @param color the {@code Color} of the piece
+     * @return {@code true} if there is a piece of the specified {@code Color} at the specified x, y coordinate
+     * @author Chay Wen Ning
+     */
+    public boolean isOccupiedBy(int x, int y, Color color) {
+        return (colorMasks[colorIndex(color)] & toMask(x, y)) != 0;
+    }
+
     /**
      * Returns the {@code Piece} object located at the specified x, y coordinate on the chess board.
      * 
@@ -77,9 +252,12 @@ public class ChessBoard {
      * @author Goh Shi Yi
      */
     public void setPieceAt(Piece piece, int x, int y) {
+        clearSquareMasks(piece.getX(), piece.getY());
         pieces[piece.getY()][piece.getX()] = null;
+        clearSquareMasks(x, y);
         pieces[y][x] = piece;
         piece.setPosition(x, y);
+        setSquareMasks(piece, x, y);
     }
 
     /**
@@ -97,15 +275,39 @@ public class ChessBoard {
         } else {
             player.removePiece(piece);
             pieces[piece.getY()][piece.getX()] = null;
+            clearSquareMasks(piece.getX(), piece.getY());
+        }
+    }
+
+    /**
+     * Flips the orientation of the specified {@code Piece} object on the chess board, e.g. when a {@code Point} piece reaches the end of the board.
+     * 
+     * @param piece the {@code Piece} object to be flipped
+     * @see chesspiece.Piece#setFlipped(boolean)
+     * @author Chay Wen Ning
+     */
+    public void flipPiece(Piece piece) {
+        piece.setFlipped(!piece.isFlipped());
+        if (piece.getPieceType() == PieceType.POINT) {
+            int square = toSquare(piece.getX(), piece.getY());
+            flippedPointMask ^= 1L << square;
+            key ^= Zobrist.flippedPoint(square);
+            rotatedKey ^= Zobrist.flippedPoint(NO_OF_SQUARE - 1 - square);
         }
     }
 
     /**
-     * Clears all pieces from the chess board. This method creates a new {@code Piece[][]} to replace the old 2d-array.
+     * Clears all pieces from the chess board. This method creates a new {@code Piece[][]} to replace the old 2d-array, and clears every mask.
      * @author Chay Wen Ning
      */
     public void clearPieces() {
         pieces = new Piece[NO_OF_ROW][NO_OF_COLUMN];
+        pieceTypeMasks = new long[PieceType.values().length];
+        colorMasks = new long[2];
+        flippedPointMask = 0L;
+        occupiedMask = 0L;
+        key = 0L;
+        rotatedKey = 0L;
     }
 
     /**
@@ -144,9 +346,87 @@ public class ChessBoard {
                 }
                 if (this.pieces[r][c] != null) {
                     this.pieces[r][c].setFlipped(!this.pieces[r][c].isFlipped());
-                    this.pieces[r][c].setPosition(NO_OF_COLUMN - 1 - c, NO_OF_ROW - 1 - r);
+                    this.pieces[r][c].setPosition(c, r);
                 }
             }
         }
+
+        // Every piece is flipped, so a Point piece is flipped after rotation only if it was not before
+        for (int i = 0; i < pieceTypeMasks.length; i++) {
+            pieceTypeMasks[i] = rotate(pieceTypeMasks[i]);
+        }
+        colorMasks[0] = rotate(colorMasks[0]);
+        colorMasks[1] = rotate(colorMasks[1]);
+        occupiedMask = rotate(occupiedMask);
+        flippedPointMask = pieceTypeMasks[PieceType.POINT.ordinal()] & ~rotate(flippedPointMask);
+
+        long temp = key;
+        key = rotatedKey;
+        rotatedKey = temp;
+    }
+
+    /**
+     * Clears the bit of the specified x, y coordinate from every mask of the chess board.
+     * 
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @author Chay Wen Ning
+     */
+    private void clearSquareMasks(int x, int y) {
+        long mask = toMask(x, y);
+        if ((occupiedMask & mask) == 0) {
+            return;
+        }
+
+        long keep = ~mask;
+        for (int i = 0; i < pieceTypeMasks.length; i++) {
+            if ((pieceTypeMasks[i] & mask) != 0) {
+                updateKeys((colorMasks[0] & mask) != 0 ? 0 : 1, i, toSquare(x, y), (flippedPointMask & mask) != 0);
+            }
+            pieceTypeMasks[i] &= keep;
+        }
+        colorMasks[0] &= keep;
+        colorMasks[1] &= keep;
+        flippedPointMask &= keep;
+        occupiedMask &= keep;
+    }
+
+    /**
+     * Sets the bit of the specified x, y coordinate in the masks matching the specified {@code Piece} object.
+     * 
+     * @param piece the {@code Piece} object located at the specified x, y coordinate
+     * @param x     the x coordinate
+     * @param y     the y coordinate
+     * @author Chay Wen Ning
+     */
+    private void setSquareMasks(Piece piece, int x, int y) {
+        long mask = toMask(x, y);
+        pieceTypeMasks[piece.getPieceType().ordinal()] |= mask;
+        colorMasks[colorIndex(piece.getColor())] |= mask;
+        occupiedMask |= mask;
+        if (piece.getPieceType() == PieceType.POINT && piece.isFlipped()) {
+            flippedPointMask |= mask;
+        }
+        updateKeys(colorIndex(piece.getColor()), piece.getPieceType().ordinal(), toSquare(x, y), piece.isFlipped());
+    }
+
+    /**
+     * XORs the {@code Zobrist} key of a piece into both the key and the rotated key of the chess board, adding the piece if it is absent and removing it if it is present.
+     * A {@code Point} piece appears with the opposite orientation once the board is rotated.
+     * 
+     * @param color   the color index of the piece
+     * @param type    the piece type index of the piece
+     * @param square  the square index of the piece
+     * @param flipped the orientation of the piece
+     * @author Chay Wen Ning
+     */
+    private void updateKeys(int color, int type, int square, boolean flipped) {
+        int rotatedSquare = NO_OF_SQUARE - 1 - square;
+        key ^= Zobrist.piece(color, type, square);
+        rotatedKey ^= Zobrist.piece(color, type, rotatedSquare);
+        if (type == PieceType.POINT.ordinal()) {
+            key ^= flipped ? Zobrist.flippedPoint(square) : 0L;
+            rotatedKey ^= flipped ? 0L : Zobrist.flippedPoint(rotatedSquare);
+        }
     }
 }
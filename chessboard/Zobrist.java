@@ -0,0 +1,122 @@
+package chessboard;
+
+/**
+ * The {@code Zobrist} class; Holds the random 64-bit keys used to hash a game position into a single {@code long}.
+ * A position key is the XOR of the keys of every piece on its square, of every flipped {@code Point} piece, of the player to move,
+ * of the play count of each player, and of the {@code hasPlayed} status of the current player.
+ * Since XOR is its own inverse, a position key is updated incrementally by XOR-ing out the keys of what changed and XOR-ing in the new ones.
+ * <p>
+ * Squares are always given from the point of view of the first player (of index 0), so that a position has the same key whichever way the chess board is flipped.
+ * The keys are generated from a fixed seed, so that position keys are identical across runs and processes.
+ *
+ * @see chessboard.ChessBoard#getKey()
+ * @see chessgame.ChessGame#positionKey()
+ * @author Chay Wen Ning
+ */
+public final class Zobrist {
+    // Play counts never exceed the switch counter of a game
+    private static final int MAX_PLAY_COUNT = 8;
+
+    private static final long[][][] PIECES = new long[2][5][ChessBoard.NO_OF_SQUARE];
+    private static final long[] FLIPPED_POINTS = new long[ChessBoard.NO_OF_SQUARE];
+    private static final long[][] PLAY_COUNTS = new long[2][MAX_PLAY_COUNT + 1];
+    private static final long SIDE;
+    private static final long HAS_PLAYED;
+
+    static {
+        long seed = 0x5441_4C41_4249_4121L;
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < PIECES[color].length; type++) {
+                for (int square = 0; square < ChessBoard.NO_OF_SQUARE; square++) {
+                    PIECES[color][type][square] = seed = nextKey(seed);
+                }
+            }
+            for (int count = 0; count <= MAX_PLAY_COUNT; count++) {
+                PLAY_COUNTS[color][count] = seed = nextKey(seed);
+            }
+        }
+        for (int square = 0; square < ChessBoard.NO_OF_SQUARE; square++) {
+            FLIPPED_POINTS[square] = seed = nextKey(seed);
+        }
+        SIDE = seed = nextKey(seed);
+        HAS_PLAYED = nextKey(seed);
+    }
+
+    /**
+     * The {@code Zobrist} class only holds static keys and is not to be instantiated.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the next key of the fixed sequence of keys, using the SplitMix64 generator.
+     *
+     * @param seed the previous key
+     * @return the next key
+     * @author Chay Wen Ning
+     */
+    private static long nextKey(long seed) {
+        long z = seed + 0x9E37_79B9_7F4A_7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the key of a piece of the specified color and piece type at the specified square.
+     *
+     * @param color  the color index of the piece, i.e. the index of its player
+     * @param type   the piece type index of the piece, i.e. the ordinal of its {@code PieceType}
+     * @param square the square index of the piece
+     * @return the key of the piece on the square
+     * @author Chay Wen Ning
+     */
+    public static long piece(int color, int type, int square) {
+        return PIECES[color][type][square];
+    }
+
+    /**
+     * Returns the key of a flipped {@code Point} piece, i.e. one moving down the board, at the specified square.
+     *
+     * @param square the square index of the {@code Point} piece
+     * @return the key of the orientation of the {@code Point} piece
+     * @author Chay Wen Ning
+     */
+    public static long flippedPoint(int square) {
+        return FLIPPED_POINTS[square];
+    }
+
+    /**
+     * Returns the key of the specified play count of the player of the specified index.
+     *
+     * @param player the index of the player
+     * @param count  the play count of the player
+     * @return the key of the play count
+     * @author Chay Wen Ning
+     */
+    public static long playCount(int player, int count) {
+        return PLAY_COUNTS[player][count];
+    }
+
+    /**
+     * Returns the key of the player to move, which is {@code 0} for the first player.
+     *
+     * @param player the index of the player to move
+     * @return the key of the player to move
+     * @author Chay Wen Ning
+     */
+    public static long side(int player) {
+        return player == 0 ? 0L : SIDE;
+    }
+
+    /**
+     * Returns the key of the {@code hasPlayed} status of the current player, which is {@code 0} if the player has not played.
+     *
+     * @param hasPlayed the {@code hasPlayed} status of the current player
+     * @return the key of the {@code hasPlayed} status
+     * @author Chay Wen Ning
+     */
+    public static long hasPlayed(boolean hasPlayed) {
+        return hasPlayed ? HAS_PLAYED : 0L;
+    }
+}
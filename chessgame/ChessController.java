@@ -1,11 +1,17 @@
 package chessgame;
 
+import engine.Engine;
 import observer.Event;
 import observer.Observer;
 
 import java.awt.Image;
 import java.awt.Point;
 import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.SwingWorker;
 
 /**
  * The {@code ChessController} class; Implements the {@code Observer} class.
@@ -15,12 +21,20 @@ import java.io.File;
  * <p>
  * Additionally, this class is part of the <a href="https://www.geeksforgeeks.org/observer-pattern-set-1-introduction/">Observer design pattern</a>, and it acts as an {@code Observer}.
  * When given reference to the model and view, it appends itself as an {@code Observer} to each of them, and handles any {@code Event} notified by the latter.
+ * <p>
+ * Either player can be set as a computer player. On a computer player's turn, the controller searches the best move with an {@code Engine} 
+ * on a background thread, then plays the move and switches the turn on the event dispatch thread.
+ * <p>
+ * While a human player thinks against a computer player, the controller ponders: the {@code Engine} searches the position after the reply it expects,
+ * on a background thread. If the human player plays that reply, the pondering search becomes the search of the computer player's move;
+ * otherwise it is stopped, and the computer player's search starts once it has returned.
  * 
  * @see observer.Observer
  * @see main.ChessGameContainer
  * @see chessgame.ChessGame
  * @see chessgame.ChessView
  * @see observer.Event
+ * @see engine.Engine
  * @author Chay Wen Ning
  * @author Goh Shi Yi
  * @author Choo Yun Yi
@@ -29,6 +43,18 @@ public class ChessController implements Observer {
     ChessGame chessModel;
     ChessView chessView;
 
+    private Engine engine = new Engine();
+    private boolean[] computerPlayers = new boolean[2];
+    private SwingWorker<Integer, Void> engineWorker;
+
+    private boolean pondering = true;
+    private SwingWorker<Integer, Void> ponderWorker;
+    private SwingWorker<Integer, Void> stoppedPonderWorker;
+    private ChessGame ponderModel;
+    private long ponderBaseKey; // position the human player thinks on
+    private long ponderKey; // position after the predicted move
+    private boolean ponderHit;
+
     /**
      *
      * Constructs a new {@code ChessController} object that acts as a controller and observer, 
@@ -169,6 +195,249 @@ public class ChessController implements Observer {
         chessView.updateSwitchButton(false);
 
         chessModel.switchPiecesIfPlayCountReached();
+        playComputerTurnIfNeeded();
+    }
+
+    /**
+     *
+     * Sets whether the player of the specified index is played by the computer.
+     *
+     * @param index      the index of the player
+     * @param isComputer {@code true} if the player is to be played by the computer
+     * @see #playComputerTurnIfNeeded()
+     * @author Chay Wen Ning
+     */
+    public void setComputerPlayer(int index, boolean isComputer) {
+        computerPlayers[index] = isComputer;
+    }
+
+    /**
+     *
+     * Sets whether the computer player searches during the turn of a human player. Turning pondering off stops the running pondering search.
+     *
+     * @param pondering {@code true} if the computer player ponders
+     * @see #playComputerTurnIfNeeded()
+     * @author Chay Wen Ning
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering) {
+            stopPondering();
+        }
+    }
+
+    /**
+     *
+     * Returns {@code true} if it is the turn of a computer player that has not played yet, and the game has no winner.
+     *
+     * @return {@code true} if the computer is to play a move
+     * @author Chay Wen Ning
+     */
+    public boolean isComputerTurn() {
+        return computerPlayers[chessModel.getPlayerTurn()] && !chessModel.getHasPlayed() && chessModel.checkWinner() == null;
+    }
+
+    /**
+     *
+     * Starts searching the computer player's move on a background thread if it is a computer player's turn.
+     * Once the search is done, the move is played on the event dispatch thread by {@code playComputerMove}, 
+     * unless the game has changed in the meantime.
+     * If the pondering search was on the current position, it becomes the search of the move instead; 
+     * if it is a human player's turn against a computer player, the pondering search is started.
+     *
+     * @see engine.Engine#findBestMove(GameState)
+     * @see engine.Engine#ponderHit()
+     * @see #playComputerMove(int)
+     * @author Chay Wen Ning
+     */
+    public void playComputerTurnIfNeeded() {
+        if (!isComputerTurn()) {
+            ponderIfNeeded();
+            return;
+        }
+        if (engineWorker != null || ponderHit) {
+            return;
+        }
+        if (ponderWorker != null) {
+            if (ponderModel == chessModel && ponderKey == chessModel.positionKey()) {
+                ponderHit = true;
+                if (ponderWorker.isDone()) {
+                    playPonderMove();
+                } else {
+                    engine.ponderHit();
+                }
+                return;
+            }
+            stopPondering();
+        }
+
+        ChessGame model = chessModel;
+        long positionKey = model.positionKey();
+        GameState state = new GameState(model);
+        SwingWorker<Integer, Void> stoppedWorker = stoppedPonderWorker;
+        engineWorker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                waitForStoppedPonder(stoppedWorker);
+                return engine.findBestMove(state);
+            }
+
+            @Override
+            protected void done() {
+                engineWorker = null;
+                try {
+                    int move = get();
+                    if (model == chessModel && positionKey == model.positionKey()) {
+                        playComputerMove(move);
+                    } else {
+                        playComputerTurnIfNeeded();
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        engineWorker.execute();
+    }
+
+    /**
+     *
+     * Starts the pondering search on a background thread if it is the turn of a human player against a computer player, 
+     * and the {@code Engine} expects a reply. A pondering search of another position is stopped.
+     *
+     * @see engine.Engine#getPonderMove(GameState)
+     * @see engine.Engine#ponder(GameState)
+     * @author Chay Wen Ning
+     */
+    private void ponderIfNeeded() {
+        ChessGame model = chessModel;
+        int turn = model.getPlayerTurn();
+        boolean canPonder = pondering && !computerPlayers[turn] && computerPlayers[1 - turn]
+                && !model.getHasPlayed() && model.checkWinner() == null;
+        if (ponderWorker != null) {
+            if (canPonder && ponderModel == model && ponderBaseKey == model.positionKey()) {
+                return;
+            }
+            stopPondering();
+        }
+        if (!canPonder || engineWorker != null) {
+            return;
+        }
+
+        GameState state = new GameState(model);
+        int predictedMove = engine.getPonderMove(state);
+        if (predictedMove == Move.NONE) {
+            return;
+        }
+        state.makeMove(predictedMove);
+        if (state.isGameOver()) {
+            return;
+        }
+
+        ponderModel = model;
+        ponderBaseKey = model.positionKey();
+        ponderKey = state.getKey();
+        ponderHit = false;
+        SwingWorker<Integer, Void> stoppedWorker = stoppedPonderWorker;
+        ponderWorker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                waitForStoppedPonder(stoppedWorker);
+                return engine.ponder(state);
+            }
+
+            @Override
+            protected void done() {
+                // a stopped search is discarded, and a search that ends before the predicted move is played waits for it
+                if (this == ponderWorker && ponderHit) {
+                    playPonderMove();
+                }
+            }
+        };
+        ponderWorker.execute();
+    }
+
+    /**
+     *
+     * Plays the move of the finished pondering search, once the human player has played the predicted move.
+     *
+     * @author Chay Wen Ning
+     */
+    private void playPonderMove() {
+        SwingWorker<Integer, Void> worker = ponderWorker;
+        ponderWorker = null;
+        ponderHit = false;
+        try {
+            int move = worker.get();
+            if (ponderModel == chessModel && ponderKey == chessModel.positionKey()) {
+                playComputerMove(move);
+            } else {
+                playComputerTurnIfNeeded();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     *
+     * Stops the running pondering search, if any. The next search waits for it to return, since the {@code Engine} runs one search at a time.
+     *
+     * @author Chay Wen Ning
+     */
+    private void stopPondering() {
+        if (ponderWorker != null) {
+            engine.stop();
+            stoppedPonderWorker = ponderWorker;
+            ponderWorker = null;
+            ponderHit = false;
+        }
+    }
+
+    /**
+     *
+     * Waits on a background thread for the specified stopped pondering search to return.
+     * The search is stopped again until it returns, in case it had not started yet when it was first stopped.
+     *
+     * @param worker the worker of the stopped pondering search, {@code null} if there is none
+     * @author Chay Wen Ning
+     */
+    private void waitForStoppedPonder(SwingWorker<Integer, Void> worker) {
+        while (worker != null && !worker.isDone()) {
+            engine.stop();
+            try {
+                worker.get(10, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // stop the search again
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | CancellationException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     *
+     * Plays the specified move of the computer player, then switches the turn if the game has no winner.
+     * The move is encoded from the first player's point of view, as returned by the {@code Engine}.
+     *
+     * @param move the encoded move
+     * @see chessgame.Move#rotate(int)
+     * @see chessgame.ChessGame#playPieceMove(Point, Point)
+     * @author Chay Wen Ning
+     */
+    public void playComputerMove(int move) {
+        if (move == Move.NONE) {
+            return;
+        }
+
+        int boardMove = chessModel.getPlayerTurn() == 1 ? Move.rotate(move) : move;
+        chessModel.playPieceMove(Move.getSourcePoint(boardMove), Move.getDestinationPoint(boardMove));
+        if (chessModel.getHasPlayed()) {
+            switchTurnAndUpdateContainer();
+        }
     }
 
     /**
@@ -245,6 +514,7 @@ public class ChessController implements Observer {
      */
     public void newGame() {
 
+        engine.stop();
         setModel(new ChessGame());
         chessModel.addObserver(this);
 
@@ -253,6 +523,8 @@ public class ChessController implements Observer {
         chessView.displayPlayerTurn(chessModel.getPlayerTurn());
         chessView.displayPlayerStatus(false);
         chessView.highlightLastMovedPiece(null);
+
+        playComputerTurnIfNeeded();
     }
 
     /**
@@ -291,6 +563,7 @@ public class ChessController implements Observer {
             displayCurrentPlayerStatus();
             chessView.updateSwitchButton(chessModel.getHasPlayed());
 
+            playComputerTurnIfNeeded();
             return true;
         }
         return false;
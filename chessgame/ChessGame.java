@@ -2,6 +2,7 @@ package chessgame;
 
 import java.awt.*;
 
+import chesspiece.AttackTables;
 import chesspiece.Hourglass;
 import chesspiece.Plus;
 import chesspiece.Sun;
@@ -25,6 +26,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import chessboard.ChessBoard;
+import chessboard.Zobrist;
 
 /**
  * The {@code ChessGame} class; Implements {@link observer.Subject Subject} class.
@@ -48,7 +50,9 @@ import chessboard.ChessBoard;
  * @author Choo Yun Yi
  */
 public class ChessGame implements Subject {
-    private final int SWITCH_COUNTER = 4;
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    public static final int SWITCH_COUNTER = 4;
     private Player[] players = new Player[2];
     private ChessBoard board;
     private int playerTurn;
@@ -183,6 +187,27 @@ public class ChessGame implements Subject {
         }
     }
 
+    /**
+     *
+     * Returns the 64-bit {@code Zobrist} key of the current position, which identifies the pieces on the chess board and the orientation of every {@code Point} piece,
+     * the current player turn, each player's play count and the current player's {@code hasPlayed} status.
+     * The key does not depend on which way the chess board is flipped, and equals {@code GameState.getKey()} of the same position.
+     *
+     * @return the key of the current position
+     * @see chessboard.Zobrist
+     * @see chessboard.ChessBoard#getKey()
+     * @see chessgame.GameState#getKey()
+     * @author Chay Wen Ning
+     */
+    public long positionKey() {
+        // The board is flipped to the second player's point of view on their turn
+        long key = playerTurn == 0 ? board.getKey() : board.getRotatedKey();
+        return key ^ Zobrist.side(playerTurn)
+                ^ Zobrist.playCount(0, players[0].getPlayCount())
+                ^ Zobrist.playCount(1, players[1].getPlayCount())
+                ^ Zobrist.hasPlayed(players[playerTurn].hasPlayed());
+    }
+
     /**
      *
      * Calculates and returns the total number of rounds played by each player.
@@ -275,6 +300,47 @@ public class ChessGame implements Subject {
         return false;
     }
 
+    /**
+     *
+     * Generates all legal moves of the current player and writes them, encoded by {@code Move}, into the specified buffer.
+     * Returns the number of moves written. No moves are generated if the current player has already played or if the game has a winner.
+     * <p>
+     * Unlike {@code checkPieceMove}, this method reads only the masks of the chess board and does not change the selected piece or any other game state.
+     * The buffer should have a length of at least {@code Move.MAX_MOVES}.
+     * 
+     * @param moves the buffer to write the encoded moves into
+     * @return the number of moves written into the buffer
+     * @see chessgame.Move
+     * @see chesspiece.AttackTables#moves(PieceType, int, boolean, long)
+     * @author Chay Wen Ning
+     */
+    public int generateMoves(int[] moves) {
+        Player player = players[playerTurn];
+        long suns = board.getPieceTypeMask(PieceType.SUN);
+        if (player.hasPlayed() || (suns & board.getColorMask(Color.YELLOW)) == 0 || (suns & board.getColorMask(Color.BLUE)) == 0) {
+            return 0;
+        }
+
+        long own = board.getColorMask(player.getColor());
+        long occupied = board.getOccupiedMask();
+        long flippedPoints = board.getFlippedPointMask();
+        int count = 0;
+        for (PieceType type : PIECE_TYPES) {
+            long pieces = board.getPieceTypeMask(type) & own;
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+
+                long destinations = AttackTables.moves(type, from, (flippedPoints & (1L << from)) != 0, occupied) & ~own;
+                while (destinations != 0) {
+                    moves[count++] = Move.encode(from, Long.numberOfTrailingZeros(destinations));
+                    destinations &= destinations - 1;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      *
      * Plays a piece move by removing any {@code Piece} object located at the specified destination {@code Point}, then 
@@ -308,7 +374,7 @@ public class ChessGame implements Subject {
         // if the piece is a Point piece and it reached the end, flip it
         if (selectedPiece.getPieceType() == PieceType.POINT
                 && (selectedPiece.getY() == 0 || selectedPiece.getY() == board.getNoOfRow() - 1)) {
-            selectedPiece.setFlipped(!selectedPiece.isFlipped());
+            board.flipPiece(selectedPiece);
         }
 
         notifyObservers(Event.PIECEMOVE);
@@ -0,0 +1,733 @@
+package chessgame;
+
+import chessboard.ChessBoard;
+import chessboard.Zobrist;
+import chesspiece.AttackTables;
+import chesspiece.Piece;
+import chesspiece.Piece.PieceType;
+
+import java.util.Arrays;
+
+/**
+ * The {@code GameState} class; A lean representation of a {@code ChessGame} position for searching and simulating moves.
+ * It keeps only bitboards, a square-indexed array of piece codes, the player to move and the play counts of both players,
+ * and provides a {@code makeMove}/{@code unmakeMove} pair that records every change on a preallocated undo stack, so that playing and taking back moves allocates nothing.
+ * <p>
+ * Unlike the {@code ChessBoard} of a {@code ChessGame}, a {@code GameState} is never flipped; squares and {@code Point} orientations are always
+ * given from the point of view of the first player (of index 0). A ply of a {@code GameState} covers a whole turn of a {@code ChessGame}:
+ * playing the move, flipping a {@code Point} piece that reaches the end of the board, switching the player turn, and switching
+ * {@code Time} and {@code Plus} pieces once the total play count reaches {@code SWITCH_COUNTER}.
+ * <p>
+ * Pieces are identified by a piece type index, which is the ordinal of their {@code PieceType}, and a color index, which is the index of their {@code Player}.
+ * <p>
+ * A {@code GameState} also keeps the {@code Zobrist} key of its position up to date on every move, so that {@code getKey} costs nothing.
+ *
+ * @see chessgame.ChessGame
+ * @see chessgame.Move
+ * @see chesspiece.AttackTables
+ * @author Chay Wen Ning
+ */
+public class GameState {
+    // Maximum number of moves that can be made without being unmade
+    public static final int MAX_PLY = 1024;
+
+    // Piece type indices, equal to the ordinal of each PieceType
+    public static final int HOURGLASS = PieceType.HOURGLASS.ordinal();
+    public static final int PLUS = PieceType.PLUS.ordinal();
+    public static final int POINT = PieceType.POINT.ordinal();
+    public static final int SUN = PieceType.SUN.ordinal();
+    public static final int TIME = PieceType.TIME.ordinal();
+    public static final int NO_OF_PIECE_TYPE = PieceType.values().length;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    // Flags of a move, returned by getLastMoveFlags
+    public static final int FLAG_POINT_FLIPPED = 1;
+    public static final int FLAG_PIECES_SWITCHED = 2;
+    public static final int FLAG_CAPTURED_POINT_FLIPPED = 4;
+
+    private final long[] pieceTypeMasks = new long[NO_OF_PIECE_TYPE];
+    private final long[] colorMasks = new long[2];
+    private long flippedPointMask; // Point pieces moving down the board
+
+    // Piece code of every square; 0 if empty, else 1 + color * NO_OF_PIECE_TYPE + type
+    private final byte[] squares = new byte[ChessBoard.NO_OF_SQUARE];
+
+    private int playerTurn;
+    private final int[] playCounts = new int[2];
+    private long key;
+
+    // Undo stack
+    private int ply;
+    private final int[] undoMoves = new int[MAX_PLY];
+    private final byte[] undoCaptures = new byte[MAX_PLY];
+    private final byte[] undoFlags = new byte[MAX_PLY];
+    private final byte[] undoPlayCounts = new byte[MAX_PLY];
+    private final long[] undoKeys = new long[MAX_PLY];
+
+    /**
+     *
+     * Constructs a new {@code GameState} with the starting position of a new {@code ChessGame}.
+     *
+     * @see player.Player#initializePieces(int, int, boolean)
+     * @author Chay Wen Ning
+     */
+    public GameState() {
+        int[] backRow = { PLUS, HOURGLASS, TIME, SUN, TIME, HOURGLASS, PLUS };
+        for (int x = 0; x < ChessBoard.NO_OF_COLUMN; x++) {
+            putPiece(0, POINT, ChessBoard.toSquare(x, ChessBoard.NO_OF_ROW - 2), false);
+            putPiece(0, backRow[x], ChessBoard.toSquare(x, ChessBoard.NO_OF_ROW - 1), false);
+            putPiece(1, POINT, ChessBoard.toSquare(x, 1), true);
+            putPiece(1, backRow[x], ChessBoard.toSquare(x, 0), true);
+        }
+        key = computeKey();
+    }
+
+    /**
+     *
+     * Constructs a new {@code GameState} with a copy of the position of the specified {@code GameState}. The undo stack is not copied.
+     *
+     * @param state the {@code GameState} to copy
+     * @author Chay Wen Ning
+     */
+    public GameState(GameState state) {
+        set(state);
+    }
+
+    /**
+     *
+     * Constructs a new {@code GameState} with the position of the specified {@code ChessGame}.
+     * If the current player of the {@code ChessGame} has already played, the turn is considered to have ended,
+     * i.e. the {@code GameState} has the opponent player to move and the {@code Time} and {@code Plus} pieces are switched if the switch counter is reached.
+     *
+     * @param game the {@code ChessGame} to copy the position from
+     * @author Chay Wen Ning
+     */
+    public GameState(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        boolean viewFlipped = game.getPlayerTurn() == 1;
+        for (int y = 0; y < ChessBoard.NO_OF_ROW; y++) {
+            for (int x = 0; x < ChessBoard.NO_OF_COLUMN; x++) {
+                Piece piece = board.getPieceAt(x, y);
+                if (piece != null) {
+                    int square = ChessBoard.toSquare(x, y);
+                    putPiece(ChessBoard.colorIndex(piece.getColor()), piece.getPieceType().ordinal(),
+                            viewFlipped ? ChessBoard.NO_OF_SQUARE - 1 - square : square, piece.isFlipped() != viewFlipped);
+                }
+            }
+        }
+        playerTurn = game.getPlayerTurn();
+        playCounts[0] = game.getPlayer(0).getPlayCount();
+        playCounts[1] = game.getPlayer(1).getPlayCount();
+
+        if (game.getHasPlayed()) {
+            endTurn();
+        }
+        key = computeKey();
+    }
+
+    /**
+     *
+     * Sets the position of this {@code GameState} to a copy of the position of the specified {@code GameState}, and empties the undo stack.
+     * Unlike the copy constructor, this method allocates nothing, e.g. to reuse a {@code GameState} for many playouts.
+     *
+     * @param state the {@code GameState} to copy
+     * @author Chay Wen Ning
+     */
+    public void set(GameState state) {
+        System.arraycopy(state.pieceTypeMasks, 0, pieceTypeMasks, 0, NO_OF_PIECE_TYPE);
+        System.arraycopy(state.colorMasks, 0, colorMasks, 0, 2);
+        System.arraycopy(state.squares, 0, squares, 0, squares.length);
+        System.arraycopy(state.playCounts, 0, playCounts, 0, 2);
+        flippedPointMask = state.flippedPointMask;
+        playerTurn = state.playerTurn;
+        key = state.key;
+        ply = 0;
+    }
+
+    /**
+     *
+     * Removes every piece of this {@code GameState}, sets the player to move and the play counts of both players, and empties the undo stack.
+     * Together with {@code addPiece}, it sets up any position without allocating, e.g. to enumerate the positions of a {@code Tablebase}.
+     *
+     * @param playerTurn the index of the player to move
+     * @param playCount0 the play count of the first player
+     * @param playCount1 the play count of the second player
+     * @see #addPiece(int, int, int, boolean)
+     * @see engine.Tablebase
+     * @author Chay Wen Ning
+     */
+    public void clear(int playerTurn, int playCount0, int playCount1) {
+        Arrays.fill(pieceTypeMasks, 0L);
+        colorMasks[0] = 0;
+        colorMasks[1] = 0;
+        flippedPointMask = 0;
+        Arrays.fill(squares, (byte) 0);
+        this.playerTurn = playerTurn;
+        playCounts[0] = playCount0;
+        playCounts[1] = playCount1;
+        ply = 0;
+        key = computeKey();
+    }
+
+    /**
+     *
+     * Puts a piece of the specified color index and piece type index at the specified empty square, and updates the key.
+     *
+     * @param color   the color index of the piece
+     * @param type    the piece type index of the piece
+     * @param square  the square index to put the piece at
+     * @param flipped the orientation of a {@code Point} piece, {@code true} if it moves down the board
+     * @see #clear(int, int, int)
+     * @author Chay Wen Ning
+     */
+    public void addPiece(int color, int type, int square, boolean flipped) {
+        putPiece(color, type, square, flipped);
+        key ^= Zobrist.piece(color, type, square);
+        if (type == POINT && flipped) {
+            key ^= Zobrist.flippedPoint(square);
+        }
+    }
+
+    /**
+     *
+     * Returns the index of the player to move.
+     *
+     * @return the index of the player to move
+     * @author Chay Wen Ning
+     */
+    public int getPlayerTurn() {
+        return playerTurn;
+    }
+
+    /**
+     *
+     * Returns the play count of the player of the specified index.
+     *
+     * @param player the index of the player
+     * @return the play count of the player
+     * @author Chay Wen Ning
+     */
+    public int getPlayCount(int player) {
+        return playCounts[player];
+    }
+
+    /**
+     *
+     * Returns the {@code Zobrist} key of the position, which identifies the pieces, the orientation of every {@code Point} piece, 
+     * the player to move and the play counts of both players.
+     * The key equals {@code ChessGame.positionKey()} of the same position at the start of a turn.
+     *
+     * @return the key of the position
+     * @see chessboard.Zobrist
+     * @see chessgame.ChessGame#positionKey()
+     * @author Chay Wen Ning
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     *
+     * Returns the number of moves made and not yet unmade.
+     *
+     * @return the number of moves on the undo stack
+     * @author Chay Wen Ning
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     *
+     * Returns the last move made and not yet unmade, {@code Move.NONE} if there is none.
+     *
+     * @return the encoded last move
+     * @author Chay Wen Ning
+     */
+    public int getLastMove() {
+        return ply == 0 ? Move.NONE : undoMoves[ply - 1];
+    }
+
+    /**
+     *
+     * Returns the flags of the last move made and not yet unmade: {@code FLAG_POINT_FLIPPED} if the moved {@code Point} piece was flipped,
+     * {@code FLAG_PIECES_SWITCHED} if the {@code Time} and {@code Plus} pieces were switched at the end of the turn,
+     * and {@code FLAG_CAPTURED_POINT_FLIPPED} if the captured piece was a flipped {@code Point} piece.
+     * Must only be called after a move is made.
+     *
+     * @return the flags of the last move
+     * @author Chay Wen Ning
+     */
+    public int getLastMoveFlags() {
+        return undoFlags[ply - 1];
+    }
+
+    /**
+     *
+     * Returns the piece type index of the piece captured by the last move made and not yet unmade, {@code -1} if the move captured nothing.
+     * The type is the one before any switch of {@code Time} and {@code Plus} pieces at the end of the turn. Must only be called after a move is made.
+     *
+     * @return the piece type index of the captured piece, {@code -1} if there is none
+     * @author Chay Wen Ning
+     */
+    public int getLastCapturedType() {
+        int code = undoCaptures[ply - 1];
+        return code == 0 ? -1 : (code - 1) % NO_OF_PIECE_TYPE;
+    }
+
+    /**
+     *
+     * Returns the mask of the squares occupied by pieces of the specified piece type index.
+     *
+     * @param type the piece type index
+     * @return the mask of the squares occupied by pieces of the piece type
+     * @author Chay Wen Ning
+     */
+    public long getPieceTypeMask(int type) {
+        return pieceTypeMasks[type];
+    }
+
+    /**
+     *
+     * Returns the mask of the squares occupied by pieces of the player of the specified index.
+     *
+     * @param color the color index, i.e. the index of the player
+     * @return the mask of the squares occupied by pieces of the player
+     * @author Chay Wen Ning
+     */
+    public long getColorMask(int color) {
+        return colorMasks[color];
+    }
+
+    /**
+     *
+     * Returns the mask of all occupied squares.
+     *
+     * @return the mask of all occupied squares
+     * @author Chay Wen Ning
+     */
+    public long getOccupiedMask() {
+        return colorMasks[0] | colorMasks[1];
+    }
+
+    /**
+     *
+     * Returns the mask of the squares occupied by {@code Point} pieces moving down the board.
+     *
+     * @return the mask of the squares occupied by flipped {@code Point} pieces
+     * @author Chay Wen Ning
+     */
+    public long getFlippedPointMask() {
+        return flippedPointMask;
+    }
+
+    /**
+     *
+     * Returns the piece type index of the piece at the specified square, {@code -1} if the square is empty.
+     *
+     * @param square the square index
+     * @return the piece type index of the piece at the square, {@code -1} if the square is empty
+     * @author Chay Wen Ning
+     */
+    public int getPieceTypeAt(int square) {
+        int code = squares[square];
+        return code == 0 ? -1 : (code - 1) % NO_OF_PIECE_TYPE;
+    }
+
+    /**
+     *
+     * Returns the color index of the piece at the specified square, {@code -1} if the square is empty.
+     *
+     * @param square the square index
+     * @return the color index of the piece at the square, {@code -1} if the square is empty
+     * @author Chay Wen Ning
+     */
+    public int getColorAt(int square) {
+        int code = squares[square];
+        return code == 0 ? -1 : (code - 1) / NO_OF_PIECE_TYPE;
+    }
+
+    /**
+     *
+     * Returns {@code true} if a player has lost their {@code Sun} piece.
+     *
+     * @return {@code true} if the game is over
+     * @see chessgame.ChessGame#checkWinner()
+     * @author Chay Wen Ning
+     */
+    public boolean isGameOver() {
+        long suns = pieceTypeMasks[SUN];
+        return (suns & colorMasks[0]) == 0 || (suns & colorMasks[1]) == 0;
+    }
+
+    /**
+     *
+     * Returns the index of the player who has captured the opponent's {@code Sun} piece, {@code -1} if there is no winner.
+     *
+     * @return the index of the winner, {@code -1} if there is no winner
+     * @see chessgame.ChessGame#checkWinner()
+     * @author Chay Wen Ning
+     */
+    public int getWinner() {
+        long suns = pieceTypeMasks[SUN];
+        if ((suns & colorMasks[1]) == 0) {
+            return 0;
+        } else if ((suns & colorMasks[0]) == 0) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * Returns the mask of the pieces of the specified color that can move to the specified square, i.e. that attack it.
+     *
+     * @param square the square index
+     * @param color  the color index of the attacking pieces
+     * @return the mask of the attacking pieces
+     * @see chesspiece.AttackTables
+     * @author Chay Wen Ning
+     */
+    public long getAttackers(int square, int color) {
+        long occupied = getOccupiedMask();
+        long pieces = colorMasks[color];
+        long points = pieceTypeMasks[POINT] & pieces;
+        return (AttackTables.hourglassMoves(square) & pieceTypeMasks[HOURGLASS]
+                | AttackTables.sunMoves(square) & pieceTypeMasks[SUN]
+                | AttackTables.plusMoves(square, occupied) & pieceTypeMasks[PLUS]
+                | AttackTables.timeMoves(square, occupied) & pieceTypeMasks[TIME]
+                | AttackTables.pointAttackers(square, false, occupied) & points & ~flippedPointMask
+                | AttackTables.pointAttackers(square, true, occupied) & points & flippedPointMask) & pieces;
+    }
+
+    /**
+     *
+     * Returns {@code true} if the {@code Sun} piece of the specified color can be captured by the opponent on their next move.
+     * Returns {@code false} if the player has no {@code Sun} piece.
+     *
+     * @param color the color index of the {@code Sun} piece
+     * @return {@code true} if the {@code Sun} piece is attacked
+     * @author Chay Wen Ning
+     */
+    public boolean isSunAttacked(int color) {
+        long sun = pieceTypeMasks[SUN] & colorMasks[color];
+        return sun != 0 && getAttackers(Long.numberOfTrailingZeros(sun), color ^ 1) != 0;
+    }
+
+    /**
+     *
+     * Generates all legal moves of the player to move and writes them, encoded by {@code Move}, into the specified buffer.
+     * Returns the number of moves written. No moves are generated if the game is over.
+     * The buffer should have a length of at least {@code Move.MAX_MOVES}.
+     *
+     * @param moves the buffer to write the encoded moves into
+     * @return the number of moves written into the buffer
+     * @see chessgame.ChessGame#generateMoves(int[])
+     * @author Chay Wen Ning
+     */
+    public int generateMoves(int[] moves) {
+        return generateMoves(moves, ~colorMasks[playerTurn]);
+    }
+
+    /**
+     *
+     * Generates the legal moves of the player to move that capture an opponent piece, and writes them into the specified buffer.
+     * Returns the number of moves written. No moves are generated if the game is over.
+     *
+     * @param moves the buffer to write the encoded moves into
+     * @return the number of moves written into the buffer
+     * @see #generateMoves(int[])
+     * @author Chay Wen Ning
+     */
+    public int generateCaptures(int[] moves) {
+        return generateMoves(moves, colorMasks[playerTurn ^ 1]);
+    }
+
+    /**
+     *
+     * Generates the legal moves of the player to move that move to an empty square, and writes them into the specified buffer.
+     * Returns the number of moves written. No moves are generated if the game is over.
+     *
+     * @param moves the buffer to write the encoded moves into
+     * @return the number of moves written into the buffer
+     * @see #generateMoves(int[])
+     * @author Chay Wen Ning
+     */
+    public int generateQuietMoves(int[] moves) {
+        return generateMoves(moves, ~getOccupiedMask());
+    }
+
+    /**
+     *
+     * Returns {@code true} if the specified encoded move is a legal move of the player to move, 
+     * e.g. to check a move read from a hash table before playing it.
+     *
+     * @param move the encoded move
+     * @return {@code true} if the move is legal
+     * @author Chay Wen Ning
+     */
+    public boolean isLegalMove(int move) {
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        long own = colorMasks[playerTurn];
+        if (move == Move.NONE || (own & (1L << from)) == 0 || isGameOver()) {
+            return false;
+        }
+        int type = (squares[from] - 1) % NO_OF_PIECE_TYPE;
+        long destinations = AttackTables.moves(PIECE_TYPES[type], from, (flippedPointMask & (1L << from)) != 0, getOccupiedMask()) & ~own;
+        return (destinations & (1L << to)) != 0;
+    }
+
+    /**
+     *
+     * Generates the legal moves of the player to move whose destination is in the specified mask, and writes them into the specified buffer.
+     *
+     * @param moves   the buffer to write the encoded moves into
+     * @param targets the mask of the destination squares to generate moves to, without squares of the player to move
+     * @return the number of moves written into the buffer
+     * @author Chay Wen Ning
+     */
+    private int generateMoves(int[] moves, long targets) {
+        if (isGameOver()) {
+            return 0;
+        }
+
+        long own = colorMasks[playerTurn];
+        long occupied = getOccupiedMask();
+        int count = 0;
+        for (int type = 0; type < NO_OF_PIECE_TYPE; type++) {
+            long pieces = pieceTypeMasks[type] & own;
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+
+                long destinations = AttackTables.moves(PIECE_TYPES[type], from, (flippedPointMask & (1L << from)) != 0, occupied) & targets;
+                while (destinations != 0) {
+                    moves[count++] = Move.encode(from, Long.numberOfTrailingZeros(destinations));
+                    destinations &= destinations - 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Makes the specified legal move of the player to move and ends the turn, then records the changes on the undo stack.
+     * The move captures any piece at its destination, flips a {@code Point} piece that reaches the end of the board,
+     * increments the play count of the player, switches the player turn, and switches {@code Time} and {@code Plus} pieces
+     * if the total play count reaches {@code SWITCH_COUNTER}.
+     *
+     * @param move the encoded move, as generated by {@code generateMoves}
+     * @see #unmakeMove()
+     * @see chessgame.ChessGame#playPieceMove(java.awt.Point, java.awt.Point)
+     * @author Chay Wen Ning
+     */
+    public void makeMove(int move) {
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        long fromMask = 1L << from;
+        long toMask = 1L << to;
+        int code = squares[from];
+        int type = (code - 1) % NO_OF_PIECE_TYPE;
+        int flags = 0;
+
+        undoMoves[ply] = move;
+        undoCaptures[ply] = squares[to];
+        undoPlayCounts[ply] = (byte) (playCounts[0] | (playCounts[1] << 4));
+        undoKeys[ply] = key;
+
+        if (squares[to] != 0) {
+            if ((flippedPointMask & toMask) != 0) {
+                flags |= FLAG_CAPTURED_POINT_FLIPPED;
+            }
+            removePiece(to);
+        }
+
+        pieceTypeMasks[type] ^= fromMask | toMask;
+        colorMasks[playerTurn] ^= fromMask | toMask;
+        squares[to] = (byte) code;
+        squares[from] = 0;
+        key ^= Zobrist.piece(playerTurn, type, from) ^ Zobrist.piece(playerTurn, type, to);
+
+        if (type == POINT) {
+            boolean flipped = (flippedPointMask & fromMask) != 0;
+            if (flipped) {
+                key ^= Zobrist.flippedPoint(from);
+            }
+            int row = to / ChessBoard.NO_OF_COLUMN;
+            if (row == 0 || row == ChessBoard.NO_OF_ROW - 1) {
+                flipped = !flipped;
+                flags |= FLAG_POINT_FLIPPED;
+            }
+            flippedPointMask &= ~fromMask;
+            if (flipped) {
+                flippedPointMask |= toMask;
+                key ^= Zobrist.flippedPoint(to);
+            }
+        }
+
+        key ^= Zobrist.playCount(playerTurn, playCounts[playerTurn]) ^ Zobrist.playCount(playerTurn, playCounts[playerTurn] + 1);
+        playCounts[playerTurn]++;
+        if (endTurn()) {
+            flags |= FLAG_PIECES_SWITCHED;
+        }
+        undoFlags[ply++] = (byte) flags;
+    }
+
+    /**
+     *
+     * Takes back the last move made by {@code makeMove}, restoring the position exactly as it was before the move.
+     *
+     * @see #makeMove(int)
+     * @author Chay Wen Ning
+     */
+    public void unmakeMove() {
+        ply--;
+        int move = undoMoves[ply];
+        int flags = undoFlags[ply];
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        long fromMask = 1L << from;
+        long toMask = 1L << to;
+
+        if ((flags & FLAG_PIECES_SWITCHED) != 0) {
+            switchTimeAndPlusPiece();
+        }
+        playerTurn ^= 1;
+        playCounts[0] = undoPlayCounts[ply] & 0xF;
+        playCounts[1] = undoPlayCounts[ply] >>> 4;
+
+        int code = squares[to];
+        int type = (code - 1) % NO_OF_PIECE_TYPE;
+        if (type == POINT) {
+            boolean flipped = ((flippedPointMask & toMask) != 0) != ((flags & FLAG_POINT_FLIPPED) != 0);
+            flippedPointMask &= ~toMask;
+            if (flipped) {
+                flippedPointMask |= fromMask;
+            }
+        }
+
+        pieceTypeMasks[type] ^= fromMask | toMask;
+        colorMasks[playerTurn] ^= fromMask | toMask;
+        squares[from] = (byte) code;
+        squares[to] = 0;
+
+        int captured = undoCaptures[ply];
+        if (captured != 0) {
+            putPiece((captured - 1) / NO_OF_PIECE_TYPE, (captured - 1) % NO_OF_PIECE_TYPE, to,
+                    (flags & FLAG_CAPTURED_POINT_FLIPPED) != 0);
+        }
+        key = undoKeys[ply];
+    }
+
+    /**
+     *
+     * Switches the player turn, then switches {@code Time} and {@code Plus} pieces and resets the play counts if the total play count has reached {@code SWITCH_COUNTER}.
+     * Returns {@code true} if the pieces were switched.
+     *
+     * @return {@code true} if the {@code Time} and {@code Plus} pieces were switched
+     * @see chessgame.ChessGame#switchPiecesIfPlayCountReached()
+     * @author Chay Wen Ning
+     */
+    private boolean endTurn() {
+        playerTurn ^= 1;
+        key ^= Zobrist.side(1);
+        if (playCounts[0] + playCounts[1] == ChessGame.SWITCH_COUNTER) {
+            switchTimeAndPlusPiece();
+            key ^= Zobrist.playCount(0, playCounts[0]) ^ Zobrist.playCount(0, 0)
+                    ^ Zobrist.playCount(1, playCounts[1]) ^ Zobrist.playCount(1, 0);
+            playCounts[0] = 0;
+            playCounts[1] = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     *
+     * Switches the {@code Time} pieces to {@code Plus} pieces and {@code Plus} pieces to {@code Time} pieces, by swapping their masks and piece codes.
+     *
+     * @see chessgame.ChessGame#switchTimeAndPlusPiece()
+     * @author Chay Wen Ning
+     */
+    private void switchTimeAndPlusPiece() {
+        long pluses = pieceTypeMasks[PLUS];
+        pieceTypeMasks[PLUS] = pieceTypeMasks[TIME];
+        pieceTypeMasks[TIME] = pluses;
+
+        long switched = pieceTypeMasks[PLUS] | pieceTypeMasks[TIME];
+        while (switched != 0) {
+            int square = Long.numberOfTrailingZeros(switched);
+            switched &= switched - 1;
+            int color = (squares[square] - 1) / NO_OF_PIECE_TYPE;
+            int type = (pieceTypeMasks[PLUS] & (1L << square)) != 0 ? PLUS : TIME;
+            squares[square] = (byte) (1 + color * NO_OF_PIECE_TYPE + type);
+            key ^= Zobrist.piece(color, PLUS, square) ^ Zobrist.piece(color, TIME, square);
+        }
+    }
+
+    /**
+     *
+     * Computes the {@code Zobrist} key of the position from scratch.
+     *
+     * @return the key of the position
+     * @author Chay Wen Ning
+     */
+    private long computeKey() {
+        long hash = Zobrist.side(playerTurn) ^ Zobrist.playCount(0, playCounts[0]) ^ Zobrist.playCount(1, playCounts[1]);
+        for (int square = 0; square < squares.length; square++) {
+            if (squares[square] != 0) {
+                hash ^= Zobrist.piece(getColorAt(square), getPieceTypeAt(square), square);
+            }
+        }
+        long flippedPoints = flippedPointMask;
+        while (flippedPoints != 0) {
+            hash ^= Zobrist.flippedPoint(Long.numberOfTrailingZeros(flippedPoints));
+            flippedPoints &= flippedPoints - 1;
+        }
+        return hash;
+    }
+
+    /**
+     *
+     * Puts a piece of the specified color index and piece type index at the specified empty square.
+     * The key is not updated, as it is either restored from the undo stack or computed once the position is set up.
+     *
+     * @param color   the color index of the piece
+     * @param type    the piece type index of the piece
+     * @param square  the square index to put the piece at
+     * @param flipped the orientation of a {@code Point} piece, {@code true} if it moves down the board
+     * @author Chay Wen Ning
+     */
+    private void putPiece(int color, int type, int square, boolean flipped) {
+        long mask = 1L << square;
+        pieceTypeMasks[type] |= mask;
+        colorMasks[color] |= mask;
+        if (type == POINT && flipped) {
+            flippedPointMask |= mask;
+        }
+        squares[square] = (byte) (1 + color * NO_OF_PIECE_TYPE + type);
+    }
+
+    /**
+     *
+     * Removes the piece at the specified occupied square.
+     *
+     * @param square the square index to remove the piece from
+     * @author Chay Wen Ning
+     */
+    private void removePiece(int square) {
+        int code = squares[square];
+        long keep = ~(1L << square);
+        key ^= Zobrist.piece((code - 1) / NO_OF_PIECE_TYPE, (code - 1) % NO_OF_PIECE_TYPE, square);
+        if ((flippedPointMask & ~keep) != 0) {
+            key ^= Zobrist.flippedPoint(square);
+        }
+        pieceTypeMasks[(code - 1) % NO_OF_PIECE_TYPE] &= keep;
+        colorMasks[(code - 1) / NO_OF_PIECE_TYPE] &= keep;
+        flippedPointMask &= keep;
+        squares[square] = 0;
+    }
+}
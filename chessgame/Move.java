@@ -0,0 +1,147 @@
+package chessgame;
+
+import chessboard.ChessBoard;
+
+/**
+ * The {@code Move} class; Encodes a piece move compactly into a single {@code int}, so that lists of moves can be kept in preallocated {@code int[]} buffers.
+ * The lowest 6 bits hold the source square index and the next 6 bits hold the destination square index, as given by {@link chessboard.ChessBoard#toSquare(int, int)}.
+ * Since a move always changes square, the value {@code NONE} ({@code 0}) never encodes a valid move.
+ * 
+ * @see chessgame.ChessGame#generateMoves(int[])
+ * @see chessboard.ChessBoard
+ * @author Chay Wen Ning
+ */
+public final class Move {
+    // Value that encodes no move
+    public static final int NONE = 0;
+
+    // Upper bound of the number of moves a player can have in any position
+    public static final int MAX_MOVES = 128;
+
+    private static final int SQUARE_BITS = 6;
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+
+    /**
+     * The {@code Move} class only holds static methods and is not to be instantiated.
+     */
+    private Move() {
+    }
+
+    /**
+     * Encodes a move from the specified source square to the specified destination square.
+     * 
+     * @param from the source square index
+     * @param to   the destination square index
+     * @return the encoded move
+     * @author Chay Wen Ning
+     */
+    public static int encode(int from, int to) {
+        return from | (to << SQUARE_BITS);
+    }
+
+    /**
+     * Returns the source square index of the specified encoded move.
+     * 
+     * @param move the encoded move
+     * @return the source square index
+     * @author Chay Wen Ning
+     */
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the destination square index of the specified encoded move.
+     * 
+     * @param move the encoded move
+     * @return the destination square index
+     * @author Chay Wen Ning
+     */
+    public static int getTo(int move) {
+        return (move >>> SQUARE_BITS) & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the specified encoded move as seen from the opposite player's point of view, i.e. with both squares rotated by 180 degree.
+     * 
+     * @param move the encoded move
+     * @return the rotated encoded move
+     * @see chessboard.ChessBoard#flip()
+     * @author Chay Wen Ning
+     */
+    public static int rotate(int move) {
+        return encode(ChessBoard.NO_OF_SQUARE - 1 - getFrom(move), ChessBoard.NO_OF_SQUARE - 1 - getTo(move));
+    }
+
+    /**
+     * Returns the source of the specified encoded move as a board-relative {@code java.awt.Point}.
+     * 
+     * @param move the encoded move
+     * @return the source {@code Point}
+     * @see chessgame.ChessGame#playPieceMove(java.awt.Point, java.awt.Point)
+     * @author Chay Wen Ning
+     */
+    public static java.awt.Point getSourcePoint(int move) {
+        return new java.awt.Point(getFrom(move) % ChessBoard.NO_OF_COLUMN, getFrom(move) / ChessBoard.NO_OF_COLUMN);
+    }
+
+    /**
+     * Returns the destination of the specified encoded move as a board-relative {@code java.awt.Point}.
+     * 
+     * @param move the encoded move
+     * @return the destination {@code Point}
+     * @see chessgame.ChessGame#playPieceMove(java.awt.Point, java.awt.Point)
+     * @author Chay Wen Ning
+     */
+    public static java.awt.Point getDestinationPoint(int move) {
+        return new java.awt.Point(getTo(move) % ChessBoard.NO_OF_COLUMN, getTo(move) / ChessBoard.NO_OF_COLUMN);
+    }
+
+    /**
+     * Returns the coordinate notation of the specified encoded move, e.g. {@code "a2a3"}.
+     * Columns are lettered from {@code a} and rows are numbered from {@code 1}, starting from the bottom left corner of the first player's point of view.
+     * 
+     * @param move the encoded move
+     * @return the coordinate notation of the move
+     * @see #parse(String)
+     * @author Chay Wen Ning
+     */
+    public static String toString(int move) {
+        return squareName(getFrom(move)) + squareName(getTo(move));
+    }
+
+    /**
+     * Returns the encoded move of the specified coordinate notation, or {@code NONE} if the notation is not valid.
+     * 
+     * @param notation the coordinate notation of the move, e.g. {@code "a2a3"}
+     * @return the encoded move
+     * @see #toString(int)
+     * @author Chay Wen Ning
+     */
+    public static int parse(String notation) {
+        if (notation == null || notation.length() != 4) {
+            return NONE;
+        }
+        int from = parseSquare(notation.charAt(0), notation.charAt(1));
+        int to = parseSquare(notation.charAt(2), notation.charAt(3));
+        if (from < 0 || to < 0 || from == to) {
+            return NONE;
+        }
+        return encode(from, to);
+    }
+
+    private static String squareName(int square) {
+        int x = square % ChessBoard.NO_OF_COLUMN;
+        int y = square / ChessBoard.NO_OF_COLUMN;
+        return "" + (char) ('a' + x) + (ChessBoard.NO_OF_ROW - y);
+    }
+
+    private static int parseSquare(char column, char row) {
+        int x = column - 'a';
+        int y = ChessBoard.NO_OF_ROW - (row - '0');
+        if (x < 0 || x >= ChessBoard.NO_OF_COLUMN || y < 0 || y >= ChessBoard.NO_OF_ROW) {
+            return -1;
+        }
+        return ChessBoard.toSquare(x, y);
+    }
+}
@@ -0,0 +1,189 @@
+package chessgame;
+
+import chessboard.ChessBoard;
+
+/**
+ * The {@code PositionNotation} class; Writes and reads a {@code GameState} position as a single line of text, e.g. to set up a position over a text protocol.
+ * <p>
+ * The notation has four fields separated by spaces: the board, the player to move, and the play counts of the first and second players.
+ * The board lists the rows from the top row (row {@code 6}) to the bottom row (row {@code 1}) of the first player's point of view, separated by {@code /}.
+ * Within a row, from column {@code a} to column {@code g}, a piece is a letter and a run of empty squares is its length.
+ * The letters are {@code S} Sun, {@code H} Hourglass, {@code P} Plus, {@code T} Time, {@code O} a Point moving towards the opponent's side
+ * and {@code U} a Point that has turned back; upper case for the pieces of the first (yellow) player and lower case for the second (blue) player.
+ * The player to move is {@code y} or {@code b}.
+ * <p>
+ * The starting position of a new {@code ChessGame} is {@code phtsthp/ooooooo/7/7/OOOOOOO/PHTSTHP y 0 0}.
+ *
+ * @see chessgame.GameState
+ * @see chessgame.Move#toString(int)
+ * @author Chay Wen Ning
+ */
+public final class PositionNotation {
+    // Notation of the starting position of a new ChessGame
+    public static final String START = "phtsthp/ooooooo/7/7/OOOOOOO/PHTSTHP y 0 0";
+
+    // Letters of the piece types, by piece type index
+    private static final char[] PIECE_LETTERS = new char[GameState.NO_OF_PIECE_TYPE];
+
+    // Letter of a Point piece that has turned back
+    private static final char TURNED_POINT_LETTER = 'U';
+
+    // Letters of the player to move, by color index
+    private static final char[] PLAYER_LETTERS = { 'y', 'b' };
+
+    // Number of pieces of each player in the starting position, by piece type index
+    private static final int[] STARTING_COUNTS = new int[GameState.NO_OF_PIECE_TYPE];
+
+    static {
+        PIECE_LETTERS[GameState.SUN] = 'S';
+        PIECE_LETTERS[GameState.HOURGLASS] = 'H';
+        PIECE_LETTERS[GameState.PLUS] = 'P';
+        PIECE_LETTERS[GameState.TIME] = 'T';
+        PIECE_LETTERS[GameState.POINT] = 'O';
+
+        STARTING_COUNTS[GameState.SUN] = 1;
+        STARTING_COUNTS[GameState.HOURGLASS] = 2;
+        STARTING_COUNTS[GameState.PLUS] = 2;
+        STARTING_COUNTS[GameState.TIME] = 2;
+        STARTING_COUNTS[GameState.POINT] = ChessBoard.NO_OF_COLUMN;
+    }
+
+    private PositionNotation() {
+    }
+
+    /**
+     *
+     * Returns the notation of the position of the specified {@code GameState}.
+     *
+     * @param state the {@code GameState} to write
+     * @return the notation of the position
+     * @see #parse(String)
+     * @author Chay Wen Ning
+     */
+    public static String toString(GameState state) {
+        StringBuilder notation = new StringBuilder();
+        for (int y = 0; y < ChessBoard.NO_OF_ROW; y++) {
+            if (y > 0) {
+                notation.append('/');
+            }
+            int empty = 0;
+            for (int x = 0; x < ChessBoard.NO_OF_COLUMN; x++) {
+                int square = ChessBoard.toSquare(x, y);
+                int type = state.getPieceTypeAt(square);
+                if (type < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    notation.append(empty);
+                    empty = 0;
+                }
+                int color = state.getColorAt(square);
+                char letter = PIECE_LETTERS[type];
+                if (type == GameState.POINT && isTurnedBack(color, (state.getFlippedPointMask() >>> square & 1) != 0)) {
+                    letter = TURNED_POINT_LETTER;
+                }
+                notation.append(color == 0 ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                notation.append(empty);
+            }
+        }
+        notation.append(' ').append(PLAYER_LETTERS[state.getPlayerTurn()]);
+        notation.append(' ').append(state.getPlayCount(0)).append(' ').append(state.getPlayCount(1));
+        return notation.toString();
+    }
+
+    /**
+     *
+     * Returns a new {@code GameState} with the position of the specified notation.
+     *
+     * @param notation the notation of the position
+     * @return the {@code GameState} of the position
+     * @throws IllegalArgumentException if the notation is malformed, or a player does not have exactly one {@code Sun} piece
+     *                                  or has more pieces of a type than in the starting position
+     * @see #toString(GameState)
+     * @author Chay Wen Ning
+     */
+    public static GameState parse(String notation) {
+        String[] fields = notation.trim().split("\\s+");
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Position must have 4 fields: " + notation);
+        }
+        int playerTurn = new String(PLAYER_LETTERS).indexOf(fields[1]);
+        if (fields[1].length() != 1 || playerTurn < 0) {
+            throw new IllegalArgumentException("Unknown player to move: " + fields[1]);
+        }
+        int playCount0 = parsePlayCount(fields[2]);
+        int playCount1 = parsePlayCount(fields[3]);
+        if (playCount0 + playCount1 >= ChessGame.SWITCH_COUNTER) {
+            throw new IllegalArgumentException("Total play count must be below " + ChessGame.SWITCH_COUNTER + ": " + notation);
+        }
+
+        GameState state = new GameState();
+        state.clear(playerTurn, playCount0, playCount1);
+        String[] rows = fields[0].split("/", -1);
+        if (rows.length != ChessBoard.NO_OF_ROW) {
+            throw new IllegalArgumentException("Board must have " + ChessBoard.NO_OF_ROW + " rows: " + fields[0]);
+        }
+        for (int y = 0; y < ChessBoard.NO_OF_ROW; y++) {
+            int x = 0;
+            for (char c : rows[y].toCharArray()) {
+                if (c >= '1' && c <= '9') {
+                    x += c - '0';
+                    continue;
+                }
+                int color = Character.isUpperCase(c) ? 0 : 1;
+                char letter = Character.toUpperCase(c);
+                boolean turnedBack = letter == TURNED_POINT_LETTER;
+                int type = turnedBack ? GameState.POINT : new String(PIECE_LETTERS).indexOf(letter);
+                if (type < 0 || x >= ChessBoard.NO_OF_COLUMN) {
+                    throw new IllegalArgumentException("Malformed row " + (ChessBoard.NO_OF_ROW - y) + ": " + rows[y]);
+                }
+                state.addPiece(color, type, ChessBoard.toSquare(x, y), type == GameState.POINT && isTurnedBack(color, turnedBack));
+                x++;
+            }
+            if (x != ChessBoard.NO_OF_COLUMN) {
+                throw new IllegalArgumentException("Row " + (ChessBoard.NO_OF_ROW - y) + " must have " + ChessBoard.NO_OF_COLUMN + " squares: " + rows[y]);
+            }
+        }
+
+        for (int color = 0; color < 2; color++) {
+            if (Long.bitCount(state.getPieceTypeMask(GameState.SUN) & state.getColorMask(color)) != 1) {
+                throw new IllegalArgumentException("Each player must have exactly one Sun piece: " + fields[0]);
+            }
+            for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+                if (Long.bitCount(state.getPieceTypeMask(type) & state.getColorMask(color)) > STARTING_COUNTS[type]) {
+                    throw new IllegalArgumentException("Too many " + PIECE_LETTERS[type] + " pieces of " + PLAYER_LETTERS[color] + ": " + fields[0]);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     *
+     * Converts between the orientation of a {@code Point} piece on the board, {@code true} if it moves down the board, and whether it has turned back,
+     * since the {@code Point} pieces of the first player start moving up the board and those of the second player start moving down.
+     *
+     * @param color   the color index of the {@code Point} piece
+     * @param flipped the orientation of the piece, or whether it has turned back
+     * @return whether the piece has turned back, or its orientation
+     * @author Chay Wen Ning
+     */
+    private static boolean isTurnedBack(int color, boolean flipped) {
+        return flipped != (color == 1);
+    }
+
+    private static int parsePlayCount(String field) {
+        try {
+            int playCount = Integer.parseInt(field);
+            if (playCount >= 0) {
+                return playCount;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Malformed play count: " + field);
+    }
+}
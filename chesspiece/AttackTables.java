@@ -0,0 +1,266 @@
+package chesspiece;
+
+import chessboard.ChessBoard;
+
+/**
+ * The {@code AttackTables} class; Holds the precomputed destination masks of the non-sliding pieces for every square of the chess board.
+ * The tables are built once when the class is loaded, so that the destinations of a {@code Hourglass}, {@code Sun} or {@code Point} piece
+ * are found with a single array load instead of testing every square of the board.
+ * <p>
+ * For the sliding {@code Plus} and {@code Time} pieces, it also holds a ray mask for each of the 8 directions from every square, 
+ * and a mask of the squares in between every pair of squares on the same line.
+ * A slide is then blocked if the in-between mask shares a bit with the occupancy mask, 
+ * and the destinations along a ray end at the first occupied square, found with a single bit scan.
+ * <p>
+ * A mask has one bit set for every destination square, where the bit position is the square index given by {@link chessboard.ChessBoard#toSquare(int, int)}.
+ * The masks contain pseudo-legal destinations only; squares occupied by pieces of the same color are removed by the caller.
+ *
+ * @see chessboard.ChessBoard
+ * @see chesspiece.Hourglass
+ * @see chesspiece.Sun
+ * @see chesspiece.Point
+ * @see chesspiece.Plus
+ * @see chesspiece.Time
+ * @author Chay Wen Ning
+ */
+public final class AttackTables {
+    private static final long[] HOURGLASS_MOVES = new long[ChessBoard.NO_OF_SQUARE];
+    private static final long[] SUN_MOVES = new long[ChessBoard.NO_OF_SQUARE];
+
+    // Indexed by orientation first; 0 for a Point piece moving up the board, 1 for a flipped Point piece moving down the board
+    private static final long[][] POINT_STEPS = new long[2][ChessBoard.NO_OF_SQUARE];
+    private static final long[][] POINT_JUMPS = new long[2][ChessBoard.NO_OF_SQUARE];
+
+    // Directions of the rays; The first four are orthogonal (Plus), the last four are diagonal (Time)
+    private static final int[] DIRECTION_X = { 1, -1, 0, 0, 1, -1, 1, -1 };
+    private static final int[] DIRECTION_Y = { 0, 0, 1, -1, 1, 1, -1, -1 };
+    private static final long[][] RAYS = new long[DIRECTION_X.length][ChessBoard.NO_OF_SQUARE];
+    private static final long[] PLUS_LINES = new long[ChessBoard.NO_OF_SQUARE];
+    private static final long[] TIME_LINES = new long[ChessBoard.NO_OF_SQUARE];
+    private static final long[][] BETWEEN = new long[ChessBoard.NO_OF_SQUARE][ChessBoard.NO_OF_SQUARE];
+
+    static {
+        for (int y = 0; y < ChessBoard.NO_OF_ROW; y++) {
+            for (int x = 0; x < ChessBoard.NO_OF_COLUMN; x++) {
+                int square = ChessBoard.toSquare(x, y);
+
+                // 3x2 L-shape move
+                HOURGLASS_MOVES[square] = ChessBoard.toMask(x + 1, y + 2) | ChessBoard.toMask(x - 1, y + 2)
+                        | ChessBoard.toMask(x + 1, y - 2) | ChessBoard.toMask(x - 1, y - 2)
+                        | ChessBoard.toMask(x + 2, y + 1) | ChessBoard.toMask(x - 2, y + 1)
+                        | ChessBoard.toMask(x + 2, y - 1) | ChessBoard.toMask(x - 2, y - 1);
+
+                // one step in any direction
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        if (dx != 0 || dy != 0) {
+                            SUN_MOVES[square] |= ChessBoard.toMask(x + dx, y + dy);
+                        }
+                    }
+                }
+
+                // one or two steps forward
+                POINT_STEPS[0][square] = ChessBoard.toMask(x, y - 1);
+                POINT_JUMPS[0][square] = ChessBoard.toMask(x, y - 2);
+                POINT_STEPS[1][square] = ChessBoard.toMask(x, y + 1);
+                POINT_JUMPS[1][square] = ChessBoard.toMask(x, y + 2);
+
+                // rays, and the squares in between the start of a ray and every square on it
+                for (int d = 0; d < DIRECTION_X.length; d++) {
+                    long passed = 0L;
+                    int toX = x + DIRECTION_X[d];
+                    int toY = y + DIRECTION_Y[d];
+                    while (ChessBoard.toMask(toX, toY) != 0) {
+                        BETWEEN[square][ChessBoard.toSquare(toX, toY)] = passed;
+                        passed |= ChessBoard.toMask(toX, toY);
+                        toX += DIRECTION_X[d];
+                        toY += DIRECTION_Y[d];
+                    }
+                    RAYS[d][square] = passed;
+                }
+                PLUS_LINES[square] = RAYS[0][square] | RAYS[1][square] | RAYS[2][square] | RAYS[3][square];
+                TIME_LINES[square] = RAYS[4][square] | RAYS[5][square] | RAYS[6][square] | RAYS[7][square];
+            }
+        }
+    }
+
+    /**
+     * The {@code AttackTables} class only holds static tables and is not to be instantiated.
+     */
+    private AttackTables() {
+    }
+
+    /**
+     * Returns the mask of all squares a {@code Hourglass} piece at the specified square can move to on an empty board.
+     *
+     * @param square the square index of the {@code Hourglass} piece
+     * @return the mask of the destination squares
+     * @see chesspiece.Hourglass
+     * @author Chay Wen Ning
+     */
+    public static long hourglassMoves(int square) {
+        return HOURGLASS_MOVES[square];
+    }
+
+    /**
+     * Returns the mask of all squares a {@code Sun} piece at the specified square can move to on an empty board.
+     *
+     * @param square the square index of the {@code Sun} piece
+     * @return the mask of the destination squares
+     * @see chesspiece.Sun
+     * @author Chay Wen Ning
+     */
+    public static long sunMoves(int square) {
+        return SUN_MOVES[square];
+    }
+
+    /**
+     * Returns the mask of all squares a {@code Point} piece at the specified square can move to with the specified board occupancy.
+     * The two-step move is only included if the square in between is empty.
+     *
+     * @param square   the square index of the {@code Point} piece
+     * @param flipped  the orientation of the {@code Point} piece, {@code true} if it moves down the board
+     * @param occupied the mask of all occupied squares
+     * @return the mask of the destination squares
+     * @see chesspiece.Point
+     * @author Chay Wen Ning
+     */
+    public static long pointMoves(int square, boolean flipped, long occupied) {
+        int orientation = flipped ? 1 : 0;
+        long step = POINT_STEPS[orientation][square];
+        if ((step & occupied) != 0) {
+            return step;
+        }
+        return step | POINT_JUMPS[orientation][square];
+    }
+
+    /**
+     * Returns the mask of all squares from which a {@code Point} piece of the specified orientation can move to the specified square with the specified board occupancy.
+     * Since a {@code Point} piece only moves forward, these are the squares behind the specified square, i.e. the destinations of a {@code Point} piece of the opposite orientation.
+     *
+     * @param square   the square index of the destination
+     * @param flipped  the orientation of the {@code Point} pieces, {@code true} if they move down the board
+     * @param occupied the mask of all occupied squares
+     * @return the mask of the source squares
+     * @see chesspiece.Point
+     * @author Chay Wen Ning
+     */
+    public static long pointAttackers(int square, boolean flipped, long occupied) {
+        return pointMoves(square, !flipped, occupied);
+    }
+
+    /**
+     * Returns the mask of all squares a piece of the specified {@code PieceType} at the specified square can move to with the specified board occupancy.
+     * The orientation is only used by {@code Point} pieces.
+     *
+     * @param type     the {@code PieceType} of the piece
+     * @param square   the square index of the piece
+     * @param flipped  the orientation of the piece, {@code true} if it is flipped
+     * @param occupied the mask of all occupied squares
+     * @return the mask of the destination squares
+     * @see chesspiece.Piece.PieceType
+     * @author Chay Wen Ning
+     */
+    public static long moves(Piece.PieceType type, int square, boolean flipped, long occupied) {
+        switch (type) {
+            case HOURGLASS:
+                return HOURGLASS_MOVES[square];
+            case PLUS:
+                return plusMoves(square, occupied);
+            case POINT:
+                return pointMoves(square, flipped, occupied);
+            case SUN:
+                return SUN_MOVES[square];
+            case TIME:
+                return timeMoves(square, occupied);
+            default:
+                return 0L;
+        }
+    }
+
+    /**
+     * Returns the mask of the squares strictly in between the two specified squares.
+     * Returns {@code 0} if the squares are adjacent, or are not on the same row, column or diagonal.
+     *
+     * @param from the square index where a slide starts
+     * @param to   the square index where a slide ends
+     * @return the mask of the squares in between
+     * @author Chay Wen Ning
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Returns the mask of all squares on the same row or column as the specified square, i.e. the {@code Plus} piece destinations on an empty board.
+     *
+     * @param square the square index of the {@code Plus} piece
+     * @return the mask of the squares on the same row or column
+     * @see chesspiece.Plus
+     * @author Chay Wen Ning
+     */
+    public static long plusLines(int square) {
+        return PLUS_LINES[square];
+    }
+
+    /**
+     * Returns the mask of all squares on the same diagonals as the specified square, i.e. the {@code Time} piece destinations on an empty board.
+     *
+     * @param square the square index of the {@code Time} piece
+     * @return the mask of the squares on the same diagonals
+     * @see chesspiece.Time
+     * @author Chay Wen Ning
+     */
+    public static long timeLines(int square) {
+        return TIME_LINES[square];
+    }
+
+    /**
+     * Returns the mask of all squares a {@code Plus} piece at the specified square can slide to with the specified board occupancy.
+     * Each ray includes its first occupied square, which may hold a piece of either color.
+     *
+     * @param square   the square index of the {@code Plus} piece
+     * @param occupied the mask of all occupied squares
+     * @return the mask of the destination squares
+     * @see chesspiece.Plus
+     * @author Chay Wen Ning
+     */
+    public static long plusMoves(int square, long occupied) {
+        return slide(0, square, occupied) | slide(1, square, occupied) | slide(2, square, occupied) | slide(3, square, occupied);
+    }
+
+    /**
+     * Returns the mask of all squares a {@code Time} piece at the specified square can slide to with the specified board occupancy.
+     * Each ray includes its first occupied square, which may hold a piece of either color.
+     *
+     * @param square   the square index of the {@code Time} piece
+     * @param occupied the mask of all occupied squares
+     * @return the mask of the destination squares
+     * @see chesspiece.Time
+     * @author Chay Wen Ning
+     */
+    public static long timeMoves(int square, long occupied) {
+        return slide(4, square, occupied) | slide(5, square, occupied) | slide(6, square, occupied) | slide(7, square, occupied);
+    }
+
+    /**
+     * Returns the squares of a single ray up to and including its first occupied square.
+     * A ray with an increasing square index meets its first blocker at the lowest set bit, otherwise at the highest set bit.
+     *
+     * @param direction the index of the ray direction
+     * @param square    the square index where the ray starts
+     * @param occupied  the mask of all occupied squares
+     * @return the mask of the squares on the ray up to its first blocker
+     * @author Chay Wen Ning
+     */
+    private static long slide(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers == 0) {
+            return ray;
+        }
+        boolean increasing = DIRECTION_Y[direction] * ChessBoard.NO_OF_COLUMN + DIRECTION_X[direction] > 0;
+        int blocker = increasing ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+        return ray ^ RAYS[direction][blocker];
+    }
+}
@@ -42,14 +42,20 @@ public class Hourglass extends Piece {
      */
     @Override
     public boolean isMovableTo(ChessBoard board, int x, int y) {
-        int xDistance = Math.abs(x - getX());
-        int yDistance = Math.abs(y - getY());
-
-        if ((board.getPieceAt(x, y) != null) && (getColor().equals(board.getPieceAt(x, y).getColor()))) {
-            return false;
-        }
+        return (getMovableMask(board) & ChessBoard.toMask(x, y)) != 0;
+    }
 
-        // Check for 3x2 L-shape move
-        return ((xDistance == 1 && yDistance == 2) || (xDistance == 2 && yDistance == 1));
+    /**
+     *
+     * Returns the mask of all squares the {@code Hourglass} piece is movable to, looked up from the precomputed 3x2 L-shape moves.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Hourglass} piece is movable to
+     * @see chesspiece.AttackTables#hourglassMoves(int)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getMovableMask(ChessBoard board) {
+        return AttackTables.hourglassMoves(getSquare()) & ~board.getColorMask(getColor());
     }
 }
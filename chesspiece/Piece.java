@@ -107,6 +107,18 @@ public abstract class Piece {
         return y;
     }
 
+    /**
+     *
+     * Returns the square index of the {@code Piece}, which is the bit position of its x, y coordinate in the masks of the chess board.
+     * 
+     * @return the square index of the {@code Piece}
+     * @see chessboard.ChessBoard#toSquare(int, int)
+     * @author Chay Wen Ning
+     */
+    public int getSquare() {
+        return ChessBoard.toSquare(x, y);
+    }
+
     /**
      *
      * Sets the {@code PieceType} of the {@code Piece}.
@@ -193,6 +205,29 @@ public abstract class Piece {
      */
     public abstract boolean isMovableTo(ChessBoard board, int x, int y);
 
+    /**
+     *
+     * Returns the mask of all squares the {@code Piece} is movable to, where each bit position is a square index of the chess board.
+     * This default implementation tests every square with {@code isMovableTo}, and is to be overwritten by subclasses that can look up their destinations in the {@code AttackTables}.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Piece} is movable to
+     * @see #isMovableTo(ChessBoard, int, int)
+     * @see chesspiece.AttackTables
+     * @author Chay Wen Ning
+     */
+    public long getMovableMask(ChessBoard board) {
+        long mask = 0L;
+        for (int y = 0; y < ChessBoard.NO_OF_ROW; y++) {
+            for (int x = 0; x < ChessBoard.NO_OF_COLUMN; x++) {
+                if ((x != this.x || y != this.y) && isMovableTo(board, x, y)) {
+                    mask |= ChessBoard.toMask(x, y);
+                }
+            }
+        }
+        return mask;
+    }
+
     /**
      *
      * Clones the {@code Piece} to a {@code Plus} piece. Returns the {@code Plus} piece that contains copied data from the {@code Piece}.
@@ -41,24 +41,26 @@ public class Plus extends Piece {
      */
     @Override
     public boolean isMovableTo(ChessBoard board, int x, int y) {
-        if (getX() == x || getY() == y) { // can move vertically and horizontally
-            if ((board.getPieceAt(x, y) != null) && (getColor().equals(board.getPieceAt(x, y).getColor()))) {
-                return false;
-            } else if (getX() == x) {
-                for (int i = Math.min(getY(), y) + 1; i < Math.max(getY(), y); i++) {
-                    if (board.getPieceAt(x, i) != null) {
-                        return false;
-                    }
-                }
-            } else if (getY() == y) {
-                for (int i = Math.min(getX(), x) + 1; i < Math.max(getX(), x); i++) {
-                    if (board.getPieceAt(i, y) != null) {
-                        return false;
-                    }
-                }
-            }
-            return true;
+        long destination = ChessBoard.toMask(x, y);
+        if ((AttackTables.plusLines(getSquare()) & destination) == 0) { // can move vertically and horizontally
+            return false;
         }
-        return false;
+        int square = ChessBoard.toSquare(x, y);
+        return (AttackTables.between(getSquare(), square) & board.getOccupiedMask()) == 0
+                && !board.isOccupiedBy(x, y, getColor());
+    }
+
+    /**
+     *
+     * Returns the mask of all squares the {@code Plus} piece is movable to, computed from the precomputed rays up to the first blocker in each direction.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Plus} piece is movable to
+     * @see chesspiece.AttackTables#plusMoves(int, long)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getMovableMask(ChessBoard board) {
+        return AttackTables.plusMoves(getSquare(), board.getOccupiedMask()) & ~board.getColorMask(getColor());
     }
 }
@@ -47,27 +47,20 @@ public class Point extends Piece {
      */
     @Override
     public boolean isMovableTo(ChessBoard board, int x, int y) {
-        // Check if the move is only vertical and within 1 or 2 steps
-        int yDistance = Math.abs(y - getY());
-        if (x == getX() && yDistance > 0 && yDistance <= 2) {
-          
-            int direction = isFlipped() ? 1 : -1;
-            
-            if ((y - getY()) / yDistance != direction) {
-                return false;
-            }
-        
-            for (int i = 1; i < yDistance; i++) {
-                if ((board.getPieceAt(x, getY() + i * direction) != null)) {
-                    return false;
-                }
-            }
-            if ((board.getPieceAt(x, y) != null) && (getColor().equals(board.getPieceAt(x, y).getColor()))) {
-                return false;
-            }
-            return true;
-        }
-        
-        return false;
+        return (getMovableMask(board) & ChessBoard.toMask(x, y)) != 0;
+    }
+
+    /**
+     *
+     * Returns the mask of all squares the {@code Point} piece is movable to, looked up from the precomputed one and two-step moves in the direction of its orientation.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Point} piece is movable to
+     * @see chesspiece.AttackTables#pointMoves(int, boolean, long)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getMovableMask(ChessBoard board) {
+        return AttackTables.pointMoves(getSquare(), isFlipped(), board.getOccupiedMask()) & ~board.getColorMask(getColor());
     }
 }
@@ -46,13 +46,20 @@ public class Sun extends Piece {
      */
     @Override
     public boolean isMovableTo(ChessBoard board, int x, int y) {
-        if ((Math.abs(getX() - x) == 1 && (Math.abs(getY() - y) == 0 || Math.abs(getY() - y) == 1))
-                || Math.abs(getY() - y) == 1 && (Math.abs(getX() - x) == 0 || Math.abs(getX() - x) == 1)) { // can move only one step in any direction
-            if ((board.getPieceAt(x, y) != null) && (getColor().equals(board.getPieceAt(x, y).getColor()))) {
-                return false;
-            }
-            return true;
-        }
-        return false;
+        return (getMovableMask(board) & ChessBoard.toMask(x, y)) != 0;
+    }
+
+    /**
+     *
+     * Returns the mask of all squares the {@code Sun} piece is movable to, looked up from the precomputed one-step moves.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Sun} piece is movable to
+     * @see chesspiece.AttackTables#sunMoves(int)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getMovableMask(ChessBoard board) {
+        return AttackTables.sunMoves(getSquare()) & ~board.getColorMask(getColor());
     }
 }
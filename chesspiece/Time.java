@@ -42,34 +42,26 @@ public class Time extends Piece {
      */
     @Override
     public boolean isMovableTo(ChessBoard board, int x, int y) {
-        Piece piece = board.getPieceAt(x, y);
-        if (Math.abs(getX() - x) == Math.abs(getY() - y)) {
-            for (int i = 1; i < Math.abs(getX() - x); i++) {
-                if (getX() > x && getY() > y) {
-                    if (board.getPieceAt(getX() - i, getY() - i) != null) {
-                        return false;
-                    }
-                } else if (getX() < x && getY() > y) {
-                    if (board.getPieceAt(getX() + i, getY() - i) != null) {
-                        return false;
-                    }
-                } else if (getX() > x && getY() < y) {
-                    if (board.getPieceAt(getX() - i, getY() + i) != null) {
-                        return false;
-                    }
-                } else if (getX() < x && getY() < y) {
-                    if (board.getPieceAt(getX() + i, getY() + i) != null) {
-                        return false;
-                    }
-                }
-            }
-            if (piece != null) {
-                if (piece.getColor().equals(getColor())) {
-                    return false;
-                }
-            }
-            return true;
+        long destination = ChessBoard.toMask(x, y);
+        if ((AttackTables.timeLines(getSquare()) & destination) == 0) { // can move diagonally
+            return false;
         }
-        return false;
+        int square = ChessBoard.toSquare(x, y);
+        return (AttackTables.between(getSquare(), square) & board.getOccupiedMask()) == 0
+                && !board.isOccupiedBy(x, y, getColor());
+    }
+
+    /**
+     *
+     * Returns the mask of all squares the {@code Time} piece is movable to, computed from the precomputed rays up to the first blocker in each direction.
+     * 
+     * @param board the {@code ChessBoard} object
+     * @return the mask of all squares the {@code Time} piece is movable to
+     * @see chesspiece.AttackTables#timeMoves(int, long)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getMovableMask(ChessBoard board) {
+        return AttackTables.timeMoves(getSquare(), board.getOccupiedMask()) & ~board.getColorMask(getColor());
     }
 }
@@ -0,0 +1,27 @@
+package engine;
+
+import java.util.List;
+
+/**
+ * The {@code AnalysisListener} interface; Receives the candidate moves of an analysed position as every iteration of the search is completed,
+ * so that a first result is shown at once and then refined, instead of waiting for the end of the search.
+ * <p>
+ * The listener is called on the searching thread, between two iterations, so it should return quickly;
+ * a Swing view should hand the lines over to the event dispatch thread.
+ *
+ * @see engine.Engine#analyze(chessgame.GameState, int, AnalysisListener)
+ * @see engine.PrincipalVariation
+ * @author Chay Wen Ning
+ */
+public interface AnalysisListener {
+    /**
+     *
+     * Called once an iteration of the search is completed, with its candidate moves best first.
+     *
+     * @param lines the candidate moves of the iteration, best first
+     * @param nodes the number of nodes visited so far by the searching thread
+     * @param time  the time since the start of the search in milliseconds
+     * @author Chay Wen Ning
+     */
+    void iterationCompleted(List<PrincipalVariation> lines, long nodes, long time);
+}
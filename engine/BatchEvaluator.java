@@ -0,0 +1,310 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.GameState;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code BatchEvaluator} class; Scores batches of positions that are independent of each other, e.g. for offline analysis,
+ * straight from their packed records without making a {@code GameState} of each.
+ * <p>
+ * A batch is a buffer of records in the format of {@code TrainingDataGenerator}, so that shard files are scored as they are mapped.
+ * With a {@code Network}, the features of a record are read from its bitboards, and both accumulators are computed from scratch and scored
+ * by a {@code BatchKernel}: the kernel of the Vector API if it is available, or else the scalar kernel. Without a {@code Network},
+ * every record is scored by the {@code Evaluation}, whose mobility and {@code Sun} safety are table lookups per piece that do not map to SIMD lanes.
+ * <p>
+ * Usage: {@code java [--add-modules jdk.incubator.vector] engine.BatchEvaluator <shardFile> [-network networkFile | -hidden n] [-rounds n]}
+ * scores the records of a shard file with every kernel available, and with the {@code Evaluation}, checks that the kernels agree,
+ * and prints the positions per second of each, timed over the rounds after a warm-up of the just-in-time compiler. Without a network file, a random {@code Network} of the specified hidden size is scored.
+ *
+ * @see engine.BatchKernel
+ * @see engine.Network
+ * @see engine.TrainingDataGenerator
+ * @author Chay Wen Ning
+ */
+public class BatchEvaluator {
+    // Class name of the kernel of the Vector API, which is compiled on its own
+    private static final String VECTOR_KERNEL = "engine.vector.VectorBatchKernel";
+
+    // Default hidden size of a random benchmark network, and number of rounds of a benchmark
+    private static final int DEFAULT_HIDDEN_SIZE = 256;
+    private static final int DEFAULT_ROUNDS = 20;
+
+    // Time in milliseconds that a benchmark scores the records before it is timed, until the just-in-time compiler has settled
+    private static final long WARMUP_TIME = 2000;
+
+    private final Network network;
+    private final BatchKernel kernel;
+    private final GameState state = new GameState();
+    private final int[][] columns = new int[2][ChessBoard.NO_OF_SQUARE];
+    private final short[][] accumulators;
+
+    /**
+     *
+     * Constructs a new {@code BatchEvaluator} object that scores with the specified {@code Network}, on the fastest kernel available.
+     *
+     * @param network the {@code Network} to score with, {@code null} for the {@code Evaluation}
+     * @author Chay Wen Ning
+     */
+    public BatchEvaluator(Network network) {
+        this(network, vectorKernel() != null ? vectorKernel() : scalarKernel());
+    }
+
+    /**
+     *
+     * Constructs a new {@code BatchEvaluator} object that scores with the specified {@code Network}, on the specified kernel.
+     *
+     * @param network the {@code Network} to score with, {@code null} for the {@code Evaluation}
+     * @param kernel  the kernel to run the layers of the {@code Network} on
+     * @author Chay Wen Ning
+     */
+    public BatchEvaluator(Network network, BatchKernel kernel) {
+        this.network = network;
+        this.kernel = kernel;
+        this.accumulators = network == null ? null : new short[2][network.getHiddenSize()];
+    }
+
+    /**
+     *
+     * Returns the scalar kernel, which runs on any JDK.
+     *
+     * @return the scalar kernel
+     * @author Chay Wen Ning
+     */
+    public static BatchKernel scalarKernel() {
+        return ScalarKernel.INSTANCE;
+    }
+
+    /**
+     *
+     * Returns the kernel of the Vector API, {@code null} if it is not compiled or the {@code jdk.incubator.vector} module is not added.
+     *
+     * @return the kernel of the Vector API, {@code null} if it is not available
+     * @author Chay Wen Ning
+     */
+    public static BatchKernel vectorKernel() {
+        return VectorKernelHolder.INSTANCE;
+    }
+
+    /**
+     *
+     * Returns the kernel the {@code Network} is scored on.
+     *
+     * @return the kernel
+     * @author Chay Wen Ning
+     */
+    public BatchKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     *
+     * Scores the specified number of records of the specified buffer, from the point of view of the player to move of each.
+     *
+     * @param records the little-endian records, from the start of the buffer
+     * @param count   the number of records to score
+     * @param scores  the array to write the scores into, one per record
+     * @author Chay Wen Ning
+     */
+    public void evaluate(ByteBuffer records, int count, int[] scores) {
+        for (int i = 0; i < count; i++) {
+            int offset = i * TrainingDataGenerator.RECORD_SIZE;
+            if (network == null) {
+                TrainingDataGenerator.readPosition(records, offset, state);
+                scores[i] = Evaluation.evaluate(state);
+            } else {
+                scores[i] = evaluateNetwork(records, offset);
+            }
+        }
+    }
+
+    /**
+     *
+     * Scores the record at the specified offset with the {@code Network}, from the point of view of the player to move.
+     *
+     * @param records the little-endian records
+     * @param offset  the offset of the record in bytes
+     * @return the score of the record
+     * @author Chay Wen Ning
+     */
+    private int evaluateNetwork(ByteBuffer records, int offset) {
+        int hiddenSize = network.getHiddenSize();
+        long yellow = records.getLong(offset + TrainingDataGenerator.COLOR_OFFSET);
+        long flipped = records.getLong(offset + TrainingDataGenerator.FLIPPED_POINT_OFFSET);
+        int count = 0;
+        for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+            long pieces = records.getLong(offset + TrainingDataGenerator.PIECE_TYPE_OFFSET + type * Long.BYTES);
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                int color = (yellow & (1L << square)) != 0 ? 0 : 1;
+                boolean pointFlipped = (flipped & (1L << square)) != 0;
+                columns[0][count] = Network.featureIndex(0, color, type, pointFlipped, square) * hiddenSize;
+                columns[1][count] = Network.featureIndex(1, color, type, pointFlipped, square) * hiddenSize;
+                count++;
+            }
+        }
+        for (int perspective = 0; perspective < 2; perspective++) {
+            kernel.accumulate(network.getFeatureWeights(), columns[perspective], count, network.getBiases(), accumulators[perspective], hiddenSize);
+        }
+        int turn = records.get(offset + TrainingDataGenerator.TURN_OFFSET);
+        return network.scaleOutput(kernel.output(accumulators[turn], accumulators[turn ^ 1], network.getOutputWeights(), hiddenSize));
+    }
+
+    /**
+     * The scalar kernel, whose loops are those of {@code Network}.
+     */
+    private static final class ScalarKernel implements BatchKernel {
+        static final ScalarKernel INSTANCE = new ScalarKernel();
+
+        @Override
+        public void accumulate(short[] weights, int[] columns, int count, short[] biases, short[] accumulator, int hiddenSize) {
+            System.arraycopy(biases, 0, accumulator, 0, hiddenSize);
+            for (int j = 0; j < count; j++) {
+                int column = columns[j];
+                for (int i = 0; i < hiddenSize; i++) {
+                    accumulator[i] += weights[column + i];
+                }
+            }
+        }
+
+        @Override
+        public int output(short[] own, short[] other, short[] outputWeights, int hiddenSize) {
+            int sum = 0;
+            for (int i = 0; i < hiddenSize; i++) {
+                sum += Math.min(Math.max(own[i], 0), Network.QA) * outputWeights[i];
+            }
+            for (int i = 0; i < hiddenSize; i++) {
+                sum += Math.min(Math.max(other[i], 0), Network.QA) * outputWeights[hiddenSize + i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Loads the kernel of the Vector API once, on first use.
+     */
+    private static final class VectorKernelHolder {
+        static final BatchKernel INSTANCE = load();
+
+        private static BatchKernel load() {
+            try {
+                return (BatchKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                // not compiled, or the jdk.incubator.vector module is not added
+                return null;
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns a {@code Network} of random weights of the specified hidden size, to benchmark the kernels without a trained network.
+     *
+     * @param hiddenSize the number of hidden values per player
+     * @param seed       the seed of the weights
+     * @return the random {@code Network}
+     * @author Chay Wen Ning
+     */
+    private static Network randomNetwork(int hiddenSize, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] featureWeights = new short[Network.NO_OF_FEATURES * hiddenSize];
+        short[] biases = new short[hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        for (int i = 0; i < featureWeights.length; i++) {
+            featureWeights[i] = (short) random.nextInt(-16, 17);
+        }
+        for (int i = 0; i < biases.length; i++) {
+            biases[i] = (short) random.nextInt(0, Network.QA / 2);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) random.nextInt(-Network.QB, Network.QB + 1);
+        }
+        return new Network(hiddenSize, featureWeights, biases, outputWeights, 0);
+    }
+
+    /**
+     *
+     * Scores the records of the specified buffer for {@code WARMUP_TIME} milliseconds to warm up the just-in-time compiler,
+     * then the specified number of times, prints the positions per second of the timed rounds, and returns the scores.
+     *
+     * @param name      the name of the run
+     * @param evaluator the {@code BatchEvaluator} to score with
+     * @param records   the little-endian records
+     * @param count     the number of records
+     * @param rounds    the number of times to score the records
+     * @return the scores of the records
+     * @author Chay Wen Ning
+     */
+    private static int[] benchmark(String name, BatchEvaluator evaluator, ByteBuffer records, int count, int rounds) {
+        int[] scores = new int[count];
+        long warmupEnd = System.nanoTime() + WARMUP_TIME * 1_000_000;
+        do {
+            evaluator.evaluate(records, count, scores);
+        } while (System.nanoTime() < warmupEnd);
+        long startTime = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            evaluator.evaluate(records, count, scores);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%-12s %,12.0f positions/s%n", name, (double) count * rounds / seconds);
+        return scores;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java [--add-modules jdk.incubator.vector] engine.BatchEvaluator <shardFile> [-network networkFile | -hidden n] [-rounds n]");
+            System.exit(1);
+        }
+
+        Network network = null;
+        int hiddenSize = DEFAULT_HIDDEN_SIZE;
+        int rounds = DEFAULT_ROUNDS;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-network":
+                    network = new Network(new File(args[i + 1]));
+                    break;
+                case "-hidden":
+                    hiddenSize = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-rounds":
+                    rounds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (network == null) {
+            network = randomNetwork(hiddenSize, 1);
+        }
+
+        ByteBuffer records;
+        try (FileChannel channel = FileChannel.open(new File(args[0]).toPath(), StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int count = records.capacity() / TrainingDataGenerator.RECORD_SIZE;
+        System.out.println("Records: " + count + ", hidden size: " + network.getHiddenSize());
+
+        benchmark("evaluation", new BatchEvaluator(null), records, count, rounds);
+        int[] scalarScores = benchmark("scalar", new BatchEvaluator(network, scalarKernel()), records, count, rounds);
+        if (vectorKernel() == null) {
+            System.out.println("vector       not available, add the jdk.incubator.vector module");
+            return;
+        }
+        int[] vectorScores = benchmark("vector", new BatchEvaluator(network, vectorKernel()), records, count, rounds);
+        if (!Arrays.equals(scalarScores, vectorScores)) {
+            System.err.println("Scalar and vector scores differ");
+            System.exit(1);
+        }
+    }
+}
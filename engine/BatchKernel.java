@@ -0,0 +1,41 @@
+package engine;
+
+/**
+ * The {@code BatchKernel} interface; The inner loops of the layers of a {@code Network}, run for every position of a batch by a {@code BatchEvaluator}.
+ * <p>
+ * The {@code BatchEvaluator} has a scalar kernel, and loads a kernel of SIMD lanes of the incubating Vector API by reflection
+ * if it is compiled and its module is added, so that the rest of the project builds and runs on any JDK without it.
+ *
+ * @see engine.BatchEvaluator
+ * @see engine.Network
+ * @author Chay Wen Ning
+ */
+public interface BatchKernel {
+    /**
+     *
+     * Computes an accumulator as the biases plus the sum of the specified weight columns.
+     *
+     * @param weights     the weight columns of the features
+     * @param columns     the offsets of the columns to add in the weights
+     * @param count       the number of columns to add
+     * @param biases      the biases of the first layer
+     * @param accumulator the accumulator to compute
+     * @param hiddenSize  the number of values of the accumulator
+     * @author Chay Wen Ning
+     */
+    void accumulate(short[] weights, int[] columns, int count, short[] biases, short[] accumulator, int hiddenSize);
+
+    /**
+     *
+     * Returns the output sum of the accumulators of the two players: their values clamped to between {@code 0} and {@code Network.QA},
+     * times the output weights.
+     *
+     * @param own           the accumulator of the player to move
+     * @param other         the accumulator of the other player
+     * @param outputWeights the output weights of the player to move then of the other player
+     * @param hiddenSize    the number of values of an accumulator
+     * @return the output sum
+     * @author Chay Wen Ning
+     */
+    int output(short[] own, short[] other, short[] outputWeights, int hiddenSize);
+}
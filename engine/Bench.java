@@ -0,0 +1,94 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code Bench} class; Measures the nodes per second of the {@code Engine} for an increasing number of threads.
+ * Every thread count searches the same set of positions for the same time, with a cleared {@code TranspositionTable},
+ * and the scaling curve is printed as tab-separated rows of threads, nodes, time, nodes per second, speedup and efficiency.
+ * <p>
+ * Usage: {@code java engine.Bench [maxThreads] [moveTimeMs] [hashMb]}. By default, the thread counts double up to the number of available processors,
+ * every position is searched for 1000 milliseconds, and the table is of {@code TranspositionTable.DEFAULT_SIZE_MB} megabytes.
+ *
+ * @see engine.Engine#setThreads(int)
+ * @author Chay Wen Ning
+ */
+public class Bench {
+    // Plies of random play from the initial position to each benchmark position
+    private static final int[] POSITION_PLIES = { 0, 4, 8, 12, 16, 20 };
+    private static final long POSITION_SEED = 20231;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long moveTime = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int hashSize = args.length > 2 ? Integer.parseInt(args[2]) : TranspositionTable.DEFAULT_SIZE_MB;
+
+        List<GameState> positions = createPositions();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        System.out.println("threads\tnodes\ttime_ms\tnps\tspeedup\tefficiency");
+        double baseNps = 0;
+        for (int threads : threadCounts) {
+            Engine engine = new Engine();
+            engine.setHashSize(hashSize);
+            engine.setThreads(threads);
+            engine.setTimeLimit(moveTime);
+
+            long nodes = 0;
+            long startTime = System.nanoTime();
+            for (GameState position : positions) {
+                engine.clearHash();
+                engine.findBestMove(position);
+                nodes += engine.getLastNodes();
+            }
+            long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+            double nps = nodes * 1000.0 / elapsed;
+            if (threads == 1) {
+                baseNps = nps;
+            }
+            double speedup = baseNps > 0 ? nps / baseNps : 0;
+            System.out.printf("%d\t%d\t%d\t%.0f\t%.2f\t%.2f%n", threads, nodes, elapsed, nps, speedup, speedup / threads);
+            engine.setThreads(1);
+        }
+    }
+
+    /**
+     *
+     * Returns the benchmark positions, reached by playing random moves from the initial position with a fixed seed,
+     * so that every run benchmarks the same positions.
+     *
+     * @return the benchmark positions
+     * @author Chay Wen Ning
+     */
+    private static List<GameState> createPositions() {
+        List<GameState> positions = new ArrayList<>();
+        int[] moves = new int[Move.MAX_MOVES];
+        for (int plies : POSITION_PLIES) {
+            Random random = new Random(POSITION_SEED + plies);
+            GameState state = new GameState();
+            for (int ply = 0; ply < plies; ply++) {
+                int count = state.generateMoves(moves);
+                if (count == 0) {
+                    break;
+                }
+                state.makeMove(moves[random.nextInt(count)]);
+                if (state.isGameOver()) {
+                    state.unmakeMove();
+                    break;
+                }
+            }
+            positions.add(new GameState(state));
+        }
+        return positions;
+    }
+}
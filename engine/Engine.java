@@ -0,0 +1,592 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code Engine} class; A computer player for Talabia Chess.
+ * The {@code Engine} finds the best move of a {@code GameState} within a configurable budget,
+ * which is a time limit in milliseconds, a node limit, and a maximum depth in plies.
+ * <p>
+ * A search runs on the thread that calls {@code findBestMove}, and can be stopped from any other thread with {@code stop}.
+ * The {@code TranspositionTable} of the {@code Engine} is kept between searches, so that a search reuses the positions of the previous ones.
+ * <p>
+ * With more than one thread, the {@code Engine} runs a Lazy SMP search: helper threads search the same position alongside the calling thread,
+ * sharing the {@code TranspositionTable} without locks. Every other helper searches one ply deeper,
+ * so the helpers fill the table with results the calling thread will find, and the move of the calling thread is played.
+ * <p>
+ * While the opponent thinks, the {@code Engine} can ponder: {@code ponder} searches the position after the reply predicted by {@code getPonderMove}
+ * without a time limit. If the opponent plays the predicted move, {@code ponderHit} turns it into the search of the move, with the time already pondered counted;
+ * otherwise {@code stop} aborts it, and the next search still finds its positions in the {@code TranspositionTable}.
+ * <p>
+ * To review a game, {@code analyze} searches a position for its best few moves, and hands them with their scores and lines to an {@code AnalysisListener}
+ * as every iteration is completed, from the first iteration within a few milliseconds to the last one within the budget.
+ *
+ * @see engine.Search
+ * @see engine.TranspositionTable
+ * @see chessgame.GameState
+ * @author Chay Wen Ning
+ */
+public class Engine implements SearchEngine {
+    // Default time limit of a search in milliseconds
+    public static final long DEFAULT_TIME_LIMIT = 100;
+
+    private long timeLimit = DEFAULT_TIME_LIMIT;
+    private long nodeLimit = 0;
+    private int maxDepth = Search.MAX_DEPTH;
+    private final TranspositionTable table = new TranspositionTable();
+    private int threads = 1;
+    private ExecutorService helperPool;
+    private Tablebase tablebase;
+    private Network network;
+    private OpeningBook openingBook;
+    private int multiPv = 1;
+    private AnalysisListener listener;
+
+    private volatile Search currentSearch;
+    private boolean pondering; // guarded by this
+    private long ponderStartTime; // guarded by this
+
+    private int lastScore;
+    private int lastDepth;
+    private long lastNodes;
+    private double lastFirstMoveCutoffRate;
+    private List<PrincipalVariation> lastPrincipalVariations = List.of();
+
+    /**
+     *
+     * Constructs a new {@code Engine} object with the default time limit and no node limit.
+     *
+     * @author Chay Wen Ning
+     */
+    public Engine() {
+    }
+
+    /**
+     *
+     * Returns the time limit of a search in milliseconds, {@code 0} if there is no time limit.
+     *
+     * @return the time limit in milliseconds
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     *
+     * Sets the time limit of a search in milliseconds. Set {@code 0} for no time limit.
+     *
+     * @param timeLimit the time limit in milliseconds
+     * @author Chay Wen Ning
+     */
+    @Override
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     *
+     * Returns the node limit of a search, {@code 0} if there is no node limit.
+     *
+     * @return the node limit
+     * @author Chay Wen Ning
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     *
+     * Sets the node limit of a search. Set {@code 0} for no node limit.
+     *
+     * @param nodeLimit the node limit
+     * @author Chay Wen Ning
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     *
+     * Returns the maximum depth of a search in plies.
+     *
+     * @return the maximum depth in plies
+     * @author Chay Wen Ning
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     *
+     * Sets the maximum depth of a search in plies, capped by {@code Search.MAX_DEPTH}.
+     *
+     * @param maxDepth the maximum depth in plies
+     * @author Chay Wen Ning
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.min(maxDepth, Search.MAX_DEPTH);
+    }
+
+    /**
+     *
+     * Returns the number of threads of a search.
+     *
+     * @return the number of threads
+     * @author Chay Wen Ning
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     *
+     * Sets the number of threads of a search, including the calling thread. Must not be called while a search is running.
+     *
+     * @param threads the number of threads
+     * @throws IllegalArgumentException if the number of threads is not positive
+     * @author Chay Wen Ning
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (threads != this.threads && helperPool != null) {
+            helperPool.shutdown();
+            helperPool = null;
+        }
+        this.threads = threads;
+    }
+
+    /**
+     *
+     * Returns the {@code TranspositionTable} of the {@code Engine}, e.g. to read its statistics.
+     *
+     * @return the {@code TranspositionTable} of the {@code Engine}
+     * @author Chay Wen Ning
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     *
+     * Resizes the {@code TranspositionTable} of the {@code Engine} to the specified size in megabytes, which clears it.
+     * Must not be called while a search is running.
+     *
+     * @param sizeMb the size of the table in megabytes
+     * @see engine.TranspositionTable#resize(int)
+     * @author Chay Wen Ning
+     */
+    public void setHashSize(int sizeMb) {
+        table.resize(sizeMb);
+    }
+
+    /**
+     *
+     * Removes every position from the {@code TranspositionTable} of the {@code Engine}, e.g. before a new game.
+     *
+     * @author Chay Wen Ning
+     */
+    public void clearHash() {
+        table.clear();
+    }
+
+    /**
+     *
+     * Returns the {@code Tablebase} probed by a search, {@code null} if there is none.
+     *
+     * @return the {@code Tablebase} of the {@code Engine}
+     * @author Chay Wen Ning
+     */
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     *
+     * Sets the {@code Tablebase} probed by a search, so that positions in its tables are scored by perfect play. Set {@code null} to probe no {@code Tablebase}.
+     *
+     * @param tablebase the {@code Tablebase} to probe, {@code null} for none
+     * @see engine.Search#setTablebase(Tablebase)
+     * @author Chay Wen Ning
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     *
+     * Returns the {@code Network} that scores the positions of a search, {@code null} if the {@code Evaluation} does.
+     *
+     * @return the {@code Network} of the {@code Engine}
+     * @author Chay Wen Ning
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     *
+     * Sets the {@code Network} that scores the positions of a search instead of the {@code Evaluation}. Set {@code null} to use the {@code Evaluation}.
+     *
+     * @param network the {@code Network} to score positions with, {@code null} for none
+     * @see engine.Search#setNetwork(Network)
+     * @author Chay Wen Ning
+     */
+    public void setNetwork(Network network) {
+        this.network = network;
+    }
+
+    /**
+     *
+     * Returns the {@code OpeningBook} looked up before a search, {@code null} if there is none.
+     *
+     * @return the {@code OpeningBook} of the {@code Engine}
+     * @author Chay Wen Ning
+     */
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    /**
+     *
+     * Sets the {@code OpeningBook} looked up before a search, so that a position in the book is answered with a book move without searching.
+     * Set {@code null} to look up no {@code OpeningBook}.
+     *
+     * @param openingBook the {@code OpeningBook} to look up, {@code null} for none
+     * @author Chay Wen Ning
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     *
+     * Returns the number of best moves found by {@code findBestMove} and {@code ponder}.
+     *
+     * @return the number of best moves
+     * @author Chay Wen Ning
+     */
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    /**
+     *
+     * Sets the number of best moves found by {@code findBestMove} and {@code ponder}, whose lines are handed to the {@code AnalysisListener}.
+     * More than one line makes every search slower, so leave it at {@code 1} to play.
+     *
+     * @param multiPv the number of best moves
+     * @throws IllegalArgumentException if the number is not positive
+     * @see engine.Search#setMultiPv(int)
+     * @author Chay Wen Ning
+     */
+    public void setMultiPv(int multiPv) {
+        if (multiPv <= 0) {
+            throw new IllegalArgumentException("Number of lines must be positive: " + multiPv);
+        }
+        this.multiPv = multiPv;
+    }
+
+    /**
+     *
+     * Sets the {@code AnalysisListener} called after every iteration of {@code findBestMove} and {@code ponder}, e.g. to report the progress of a search.
+     * Set {@code null} for none.
+     *
+     * @param listener the {@code AnalysisListener} to call, {@code null} for none
+     * @author Chay Wen Ning
+     */
+    public void setAnalysisListener(AnalysisListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     *
+     * Returns the score of the best move found by the last search, from the point of view of the player to move.
+     *
+     * @return the score of the last best move
+     * @author Chay Wen Ning
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     *
+     * Returns the depth completed by the last search in plies.
+     *
+     * @return the depth of the last search
+     * @author Chay Wen Ning
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     *
+     * Returns the number of nodes visited by the last search, summed over all of its threads.
+     *
+     * @return the number of nodes of the last search
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    /**
+     *
+     * Returns the ratio of the nodes cut off by their first move to all cutoff nodes of the last search, on the calling thread.
+     * The closer to {@code 1}, the better the moves are ordered.
+     *
+     * @return the first-move cutoff rate of the last search, from {@code 0} to {@code 1}
+     * @author Chay Wen Ning
+     */
+    public double getLastFirstMoveCutoffRate() {
+        return lastFirstMoveCutoffRate;
+    }
+
+    /**
+     *
+     * Returns the best moves found by the last search, best first, with their scores and lines.
+     * The list is empty unless the search found more than one best move or had an {@code AnalysisListener}.
+     *
+     * @return the best moves of the last analysis
+     * @author Chay Wen Ning
+     */
+    public List<PrincipalVariation> getLastPrincipalVariations() {
+        return lastPrincipalVariations;
+    }
+
+    /**
+     *
+     * Searches the specified {@code GameState} within the budget of the {@code Engine}, and returns the best move of the player to move.
+     * The move is encoded by {@code Move} from the first player's point of view, as are all moves of a {@code GameState}.
+     * Returns {@code Move.NONE} if the player to move has no moves. The specified {@code GameState} is not changed.
+     * A position of the {@code OpeningBook}, if any, is answered with a book move without searching.
+     *
+     * @param state the {@code GameState} to search
+     * @return the encoded best move
+     * @see chessgame.Move#rotate(int)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public int findBestMove(GameState state) {
+        int bookMove = probeOpeningBook(state);
+        return bookMove != Move.NONE ? bookMove : search(state, false, multiPv, listener);
+    }
+
+    /**
+     *
+     * Searches the specified {@code GameState}, the position after the predicted move of the opponent, without a time limit
+     * until the search is stopped by {@code stop} or given its time limit by {@code ponderHit}, and returns the best move of the player to move.
+     * It is called on a background thread while the opponent thinks, so that the {@code TranspositionTable} is filled with the positions of the predicted reply.
+     *
+     * @param state the {@code GameState} after the predicted move of the opponent
+     * @return the encoded best move
+     * @see #getPonderMove(GameState)
+     * @see #ponderHit()
+     * @author Chay Wen Ning
+     */
+    public int ponder(GameState state) {
+        int bookMove = probeOpeningBook(state);
+        return bookMove != Move.NONE ? bookMove : search(state, true, multiPv, listener);
+    }
+
+    /**
+     *
+     * Searches the specified {@code GameState} within the budget of the {@code Engine} for the specified number of best moves of the player to move,
+     * and returns them best first, with their scores and lines. The {@code OpeningBook} is not looked up.
+     * The best moves are also handed to the specified {@code AnalysisListener}, on the calling thread, every time an iteration is completed.
+     * Set the time limit to {@code 0} to analyse until {@code stop} is called. To analyse a {@code ChessGame}, pass {@code new GameState(chessGame)}.
+     *
+     * @param state    the {@code GameState} to analyse
+     * @param multiPv  the number of best moves to find
+     * @param listener the {@code AnalysisListener} to call after every iteration, {@code null} for none
+     * @return the best moves of the last completed iteration, best first, empty if the player to move has no moves
+     * @throws IllegalArgumentException if the number of best moves is not positive
+     * @see engine.Search#setMultiPv(int)
+     * @author Chay Wen Ning
+     */
+    public List<PrincipalVariation> analyze(GameState state, int multiPv, AnalysisListener listener) {
+        if (multiPv <= 0) {
+            throw new IllegalArgumentException("Number of lines must be positive: " + multiPv);
+        }
+        search(state, false, multiPv, listener);
+        return lastPrincipalVariations;
+    }
+
+    /**
+     *
+     * Tells the running {@code ponder} search that the opponent played the predicted move, so that it becomes a search of the current position.
+     * The time and node limits count from the start of pondering, so that a move pondered for longer than a limit is returned at once.
+     * Without any limit, the search is given the default time limit, so that it does not run until it is stopped.
+     * Returns {@code false} if no {@code ponder} search is running, e.g. if it has already returned. This method can be called from any thread.
+     *
+     * @return {@code true} if a running {@code ponder} search was given its limits
+     * @author Chay Wen Ning
+     */
+    public synchronized boolean ponderHit() {
+        if (!pondering) {
+            return false;
+        }
+        pondering = false;
+        if (timeLimit > 0) {
+            currentSearch.setDeadline(ponderStartTime + timeLimit);
+        }
+        if (nodeLimit > 0) {
+            currentSearch.setNodeLimit(nodeLimit);
+        }
+        if (timeLimit == 0 && nodeLimit == 0 && maxDepth == Search.MAX_DEPTH) {
+            currentSearch.setDeadline(ponderStartTime + DEFAULT_TIME_LIMIT);
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Returns the move of the {@code TranspositionTable} of the specified {@code GameState}, i.e. the reply expected by the last search,
+     * or {@code Move.NONE} if there is no legal one.
+     *
+     * @param state the {@code GameState} of the opponent to move, after the move of the last search
+     * @return the encoded predicted move of the opponent
+     * @author Chay Wen Ning
+     */
+    public int getPonderMove(GameState state) {
+        long entry = table.probe(state.getKey());
+        int move = entry != TranspositionTable.NO_ENTRY ? TranspositionTable.getMove(entry) : Move.NONE;
+        return state.isLegalMove(move) ? move : Move.NONE;
+    }
+
+    /**
+     *
+     * Returns a book move of the specified {@code GameState}, or {@code Move.NONE} if there is no {@code OpeningBook} or the position is not in it.
+     * The statistics of the last search are reset when a book move is found.
+     *
+     * @param state the {@code GameState} to look up
+     * @return the encoded book move
+     * @author Chay Wen Ning
+     */
+    private int probeOpeningBook(GameState state) {
+        int bookMove = openingBook != null ? openingBook.probe(state) : Move.NONE;
+        if (bookMove != Move.NONE) {
+            lastScore = 0;
+            lastDepth = 0;
+            lastNodes = 0;
+            lastFirstMoveCutoffRate = 0;
+            lastPrincipalVariations = List.of();
+        }
+        return bookMove;
+    }
+
+    /**
+     *
+     * Searches the specified {@code GameState} and returns the best move of the player to move.
+     * A {@code ponder} search has no time or node limit until {@code ponderHit} is called.
+     *
+     * @param state    the {@code GameState} to search
+     * @param ponder   {@code true} if it is a {@code ponder} search
+     * @param multiPv  the number of best moves to find
+     * @param listener the {@code AnalysisListener} to call after every iteration, {@code null} for none
+     * @return the encoded best move
+     * @author Chay Wen Ning
+     */
+    private int search(GameState state, boolean ponder, int multiPv, AnalysisListener listener) {
+        table.newSearch();
+        Search search = new Search(new GameState(state), table);
+        search.setTablebase(tablebase);
+        search.setNetwork(network);
+        search.setMultiPv(multiPv);
+        search.setListener(listener);
+        synchronized (this) {
+            currentSearch = search;
+            pondering = ponder;
+            ponderStartTime = System.currentTimeMillis();
+        }
+
+        Search[] helpers = new Search[threads - 1];
+        Future<?>[] helperResults = new Future<?>[helpers.length];
+        if (helpers.length > 0 && helperPool == null) {
+            helperPool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+                Thread thread = new Thread(runnable, "Engine helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            Search helper = new Search(new GameState(state), table);
+            helper.setDepthOffset((i + 1) % 2);
+            helper.setTablebase(tablebase);
+            helper.setNetwork(network);
+            helpers[i] = helper;
+            helperResults[i] = helperPool.submit(() -> helper.search(maxDepth, 0, 0));
+        }
+
+        int bestMove;
+        long nodes;
+        try {
+            bestMove = ponder ? search.search(maxDepth, 0, 0) : search.search(maxDepth, timeLimit, nodeLimit);
+            nodes = search.getNodes();
+        } finally {
+            synchronized (this) {
+                currentSearch = null;
+                pondering = false;
+            }
+            for (Search helper : helpers) {
+                helper.stop();
+            }
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            waitForHelper(helperResults[i]);
+            nodes += helpers[i].getNodes();
+        }
+
+        lastScore = search.getBestScore();
+        lastDepth = search.getCompletedDepth();
+        lastNodes = nodes;
+        lastFirstMoveCutoffRate = search.getCutoffs() == 0 ? 0 : (double) search.getFirstMoveCutoffs() / search.getCutoffs();
+        lastPrincipalVariations = search.getPrincipalVariations();
+        return bestMove;
+    }
+
+    /**
+     *
+     * Waits for a stopped helper thread to return from its search.
+     *
+     * @param helperResult the result of the search of the helper thread
+     * @throws IllegalStateException if the search of the helper thread failed
+     * @author Chay Wen Ning
+     */
+    private static void waitForHelper(Future<?> helperResult) {
+        try {
+            helperResult.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Helper search failed", ex.getCause());
+        }
+    }
+
+    /**
+     *
+     * Stops the running search, if any, which then returns its best move so far. This method can be called from any thread.
+     *
+     * @author Chay Wen Ning
+     */
+    @Override
+    public void stop() {
+        Search search = currentSearch;
+        if (search != null) {
+            search.stop();
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.GameState;
+import chesspiece.AttackTables;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The {@code Evaluation} class; Scores a {@code GameState} statically, i.e. without searching any move.
+ * The score is given in centipawn-like units from the point of view of the player to move, where a positive score favours the player to move.
+ * <p>
+ * The score has two parts. The piece-square part is the material value of every piece plus a bonus for its square,
+ * which for a {@code Point} piece also depends on its orientation. It only changes with the pieces that move,
+ * so it is kept up to date move by move by an {@code Evaluator} instead of being summed at every position.
+ * The positional part weighs the mobility of the {@code Hourglass}, {@code Plus} and {@code Time} pieces and the safety of each {@code Sun} piece,
+ * i.e. the attacked squares around it and the pieces sheltering it, and is computed from the bitboards of the position.
+ * <p>
+ * A {@code Sun} piece has no material value, since losing it ends the game and is scored by the {@code Search} instead.
+ * Piece-square tables are given from the point of view of the first player, with row 0 at the far end of the board,
+ * and are mirrored for the second player.
+ * <p>
+ * The score is a sum of weights times features of the position, e.g. a piece value times the difference of the numbers of pieces of the type.
+ * The weights form a vector of {@code NO_OF_WEIGHTS} values, which can be read and replaced with {@code getWeights} and {@code setWeights},
+ * or loaded from a weights file as written by {@code EvaluationTuner}; {@code computeFeatures} gives the matching features of a position.
+ *
+ * @see engine.Evaluator
+ * @see engine.Search
+ * @see chessgame.GameState
+ * @author Chay Wen Ning
+ */
+public final class Evaluation {
+    // Material value of each piece type, indexed by piece type index
+    private static final int[] PIECE_VALUES = new int[GameState.NO_OF_PIECE_TYPE];
+
+    // Square bonuses, indexed by row then column
+    private static final int[][] HOURGLASS_TABLE = {
+            { 0, 5, 10, 10, 10, 5, 0 },
+            { 5, 15, 20, 20, 20, 15, 5 },
+            { 5, 15, 25, 25, 25, 15, 5 },
+            { 5, 15, 25, 25, 25, 15, 5 },
+            { 0, 10, 15, 15, 15, 10, 0 },
+            { -10, 0, 5, 5, 5, 0, -10 }
+    };
+    private static final int[][] PLUS_TABLE = {
+            { 10, 15, 15, 15, 15, 15, 10 },
+            { 15, 20, 20, 20, 20, 20, 15 },
+            { 0, 5, 5, 5, 5, 5, 0 },
+            { 0, 5, 5, 5, 5, 5, 0 },
+            { 0, 0, 5, 5, 5, 0, 0 },
+            { 0, 0, 5, 5, 5, 0, 0 }
+    };
+    private static final int[][] TIME_TABLE = {
+            { 0, 0, 5, 5, 5, 0, 0 },
+            { 0, 10, 10, 15, 10, 10, 0 },
+            { 5, 10, 20, 20, 20, 10, 5 },
+            { 5, 10, 20, 20, 20, 10, 5 },
+            { 0, 10, 10, 15, 10, 10, 0 },
+            { 0, 0, 5, 5, 5, 0, 0 }
+    };
+    // Point pieces moving up the board, towards the far end
+    private static final int[][] POINT_TABLE = {
+            { 40, 40, 40, 40, 40, 40, 40 },
+            { 30, 35, 35, 35, 35, 35, 30 },
+            { 15, 20, 25, 25, 25, 20, 15 },
+            { 5, 10, 15, 15, 15, 10, 5 },
+            { 0, 0, 0, 0, 0, 0, 0 },
+            { 0, 0, 0, 0, 0, 0, 0 }
+    };
+    // Point pieces moving back down the board, after reaching the far end
+    private static final int[][] RETURNING_POINT_TABLE = {
+            { 25, 25, 25, 25, 25, 25, 25 },
+            { 20, 20, 20, 20, 20, 20, 20 },
+            { 10, 10, 10, 10, 10, 10, 10 },
+            { 5, 5, 5, 5, 5, 5, 5 },
+            { 0, 0, 0, 0, 0, 0, 0 },
+            { 0, 0, 0, 0, 0, 0, 0 }
+    };
+    private static final int[][] SUN_TABLE = {
+            { -60, -60, -60, -60, -60, -60, -60 },
+            { -50, -50, -50, -50, -50, -50, -50 },
+            { -40, -40, -40, -40, -40, -40, -40 },
+            { -25, -25, -25, -25, -25, -25, -25 },
+            { -5, 0, 0, -5, 0, 0, -5 },
+            { 10, 15, 10, 5, 10, 15, 10 }
+    };
+
+    // Bonus per destination square of each piece type, indexed by piece type index
+    private static final int[] MOBILITY_WEIGHTS = new int[GameState.NO_OF_PIECE_TYPE];
+
+    // Penalty per square around a Sun piece attacked by the opponent, and bonus per own piece next to it
+    private static final int[] SUN_SAFETY_WEIGHTS = new int[2];
+    private static final int SUN_ZONE_ATTACK = 0;
+    private static final int SUN_SHELTER = 1;
+
+    // Groups of weights, in the order of the weight vector and of a weights file
+    private static final String[] WEIGHT_GROUPS = { "pieceValues", "hourglassTable", "plusTable", "timeTable",
+            "pointTable", "returningPointTable", "sunTable", "mobilityWeights", "sunSafetyWeights" };
+    private static final int[][][] WEIGHT_ARRAYS = { { PIECE_VALUES }, HOURGLASS_TABLE, PLUS_TABLE, TIME_TABLE,
+            POINT_TABLE, RETURNING_POINT_TABLE, SUN_TABLE, { MOBILITY_WEIGHTS }, { SUN_SAFETY_WEIGHTS } };
+
+    // Indices of the groups of weights that are not piece-square tables
+    private static final int PIECE_VALUE_GROUP = 0;
+    private static final int MOBILITY_GROUP = 7;
+    private static final int SUN_SAFETY_GROUP = 8;
+
+    // Number of weights, and offsets of the groups of weights in the weight vector
+    public static final int NO_OF_WEIGHTS;
+    private static final int[] WEIGHT_OFFSETS = new int[WEIGHT_GROUPS.length];
+
+    // Offset of the piece-square table of each piece type index and orientation in the weight vector
+    private static final int[][] TABLE_OFFSETS = new int[GameState.NO_OF_PIECE_TYPE][2];
+
+    // Signed material and square value, indexed by color index, piece type index, orientation and square index
+    private static final int[][][][] PIECE_SQUARE_VALUES = new int[2][GameState.NO_OF_PIECE_TYPE][2][ChessBoard.NO_OF_SQUARE];
+
+    static {
+        PIECE_VALUES[GameState.HOURGLASS] = 300;
+        PIECE_VALUES[GameState.PLUS] = 450;
+        PIECE_VALUES[GameState.POINT] = 100;
+        PIECE_VALUES[GameState.SUN] = 0;
+        PIECE_VALUES[GameState.TIME] = 450;
+
+        MOBILITY_WEIGHTS[GameState.HOURGLASS] = 4;
+        MOBILITY_WEIGHTS[GameState.PLUS] = 3;
+        MOBILITY_WEIGHTS[GameState.TIME] = 3;
+
+        SUN_SAFETY_WEIGHTS[SUN_ZONE_ATTACK] = 12;
+        SUN_SAFETY_WEIGHTS[SUN_SHELTER] = 6;
+
+        int offset = 0;
+        for (int group = 0; group < WEIGHT_GROUPS.length; group++) {
+            WEIGHT_OFFSETS[group] = offset;
+            for (int[] weights : WEIGHT_ARRAYS[group]) {
+                offset += weights.length;
+            }
+        }
+        NO_OF_WEIGHTS = offset;
+
+        TABLE_OFFSETS[GameState.HOURGLASS][0] = TABLE_OFFSETS[GameState.HOURGLASS][1] = WEIGHT_OFFSETS[1];
+        TABLE_OFFSETS[GameState.PLUS][0] = TABLE_OFFSETS[GameState.PLUS][1] = WEIGHT_OFFSETS[2];
+        TABLE_OFFSETS[GameState.TIME][0] = TABLE_OFFSETS[GameState.TIME][1] = WEIGHT_OFFSETS[3];
+        TABLE_OFFSETS[GameState.POINT][0] = WEIGHT_OFFSETS[4];
+        TABLE_OFFSETS[GameState.POINT][1] = WEIGHT_OFFSETS[5];
+        TABLE_OFFSETS[GameState.SUN][0] = TABLE_OFFSETS[GameState.SUN][1] = WEIGHT_OFFSETS[6];
+
+        computePieceSquareValues();
+    }
+
+    /**
+     * The {@code Evaluation} class only holds static methods and is not to be instantiated.
+     */
+    private Evaluation() {
+    }
+
+    /**
+     *
+     * Computes the signed piece-square values of every piece from the piece values and the piece-square tables.
+     *
+     * @author Chay Wen Ning
+     */
+    private static void computePieceSquareValues() {
+        int[][][][] tables = new int[GameState.NO_OF_PIECE_TYPE][2][][];
+        tables[GameState.HOURGLASS][0] = tables[GameState.HOURGLASS][1] = HOURGLASS_TABLE;
+        tables[GameState.PLUS][0] = tables[GameState.PLUS][1] = PLUS_TABLE;
+        tables[GameState.POINT][0] = POINT_TABLE;
+        tables[GameState.POINT][1] = RETURNING_POINT_TABLE;
+        tables[GameState.SUN][0] = tables[GameState.SUN][1] = SUN_TABLE;
+        tables[GameState.TIME][0] = tables[GameState.TIME][1] = TIME_TABLE;
+
+        for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+            for (int flipped = 0; flipped < 2; flipped++) {
+                for (int square = 0; square < ChessBoard.NO_OF_SQUARE; square++) {
+                    // the second player sees the board rotated, and its Point pieces start flipped
+                    int rotated = ChessBoard.NO_OF_SQUARE - 1 - square;
+                    PIECE_SQUARE_VALUES[0][type][flipped][square] = PIECE_VALUES[type]
+                            + tables[type][flipped][square / ChessBoard.NO_OF_COLUMN][square % ChessBoard.NO_OF_COLUMN];
+                    PIECE_SQUARE_VALUES[1][type][flipped][square] = -(PIECE_VALUES[type]
+                            + tables[type][1 - flipped][rotated / ChessBoard.NO_OF_COLUMN][rotated % ChessBoard.NO_OF_COLUMN]);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns a copy of the weight vector of the evaluation.
+     *
+     * @return the weights, {@code NO_OF_WEIGHTS} of them
+     * @author Chay Wen Ning
+     */
+    public static int[] getWeights() {
+        int[] weights = new int[NO_OF_WEIGHTS];
+        int offset = 0;
+        for (int[][] group : WEIGHT_ARRAYS) {
+            for (int[] array : group) {
+                System.arraycopy(array, 0, weights, offset, array.length);
+                offset += array.length;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     *
+     * Replaces the weight vector of the evaluation. Must not be called while a search is running,
+     * and an {@code Evaluator} must be reset before it is used again.
+     *
+     * @param weights the weights, {@code NO_OF_WEIGHTS} of them
+     * @throws IllegalArgumentException if the number of weights is not {@code NO_OF_WEIGHTS}
+     * @author Chay Wen Ning
+     */
+    public static void setWeights(int[] weights) {
+        if (weights.length != NO_OF_WEIGHTS) {
+            throw new IllegalArgumentException("Expected " + NO_OF_WEIGHTS + " weights: " + weights.length);
+        }
+        int offset = 0;
+        for (int[][] group : WEIGHT_ARRAYS) {
+            for (int[] array : group) {
+                System.arraycopy(weights, offset, array, 0, array.length);
+                offset += array.length;
+            }
+        }
+        computePieceSquareValues();
+    }
+
+    /**
+     *
+     * Loads the weight vector of the evaluation from the specified weights file, as written by {@code writeWeights}.
+     * A group of weights missing from the file keeps its current weights. Must not be called while a search is running.
+     *
+     * @param file the weights file
+     * @throws IOException if the file cannot be read, or has an unknown group or a wrong number of weights
+     * @author Chay Wen Ning
+     */
+    public static void loadWeights(File file) throws IOException {
+        int[] weights = getWeights();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] tokens = line.split("\\s+");
+                int group = Arrays.asList(WEIGHT_GROUPS).indexOf(tokens[0]);
+                if (group < 0 || tokens.length - 1 != groupEnd(group) - WEIGHT_OFFSETS[group]) {
+                    throw new IOException(file + ": unknown group or wrong number of weights: " + tokens[0]);
+                }
+                try {
+                    for (int i = WEIGHT_OFFSETS[group]; i < groupEnd(group); i++) {
+                        weights[i] = Integer.parseInt(tokens[i - WEIGHT_OFFSETS[group] + 1]);
+                    }
+                } catch (NumberFormatException ex) {
+                    throw new IOException(file + ": malformed weight in " + tokens[0], ex);
+                }
+            }
+        }
+        setWeights(weights);
+    }
+
+    /**
+     *
+     * Writes the specified weight vector to the specified weights file, a line per group of weights: its name followed by its weights.
+     *
+     * @param file    the weights file
+     * @param weights the weights, {@code NO_OF_WEIGHTS} of them
+     * @throws IOException if the file cannot be written
+     * @author Chay Wen Ning
+     */
+    public static void writeWeights(File file, int[] weights) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("# Talabia Chess evaluation weights: piece values and mobility weights by piece type index,");
+            writer.println("# piece-square tables row by row from the far end of the board, Sun zone attack penalty and shelter bonus");
+            for (int group = 0; group < WEIGHT_GROUPS.length; group++) {
+                StringBuilder line = new StringBuilder(WEIGHT_GROUPS[group]);
+                for (int i = WEIGHT_OFFSETS[group]; i < groupEnd(group); i++) {
+                    line.append(' ').append(weights[i]);
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the end offset of the specified group of weights in the weight vector, i.e. the offset of the next group.
+     *
+     * @param group the index of the group of weights
+     * @return the end offset of the group
+     * @author Chay Wen Ning
+     */
+    private static int groupEnd(int group) {
+        return group + 1 < WEIGHT_GROUPS.length ? WEIGHT_OFFSETS[group + 1] : NO_OF_WEIGHTS;
+    }
+
+    /**
+     *
+     * Adds the features of the specified {@code GameState} to the specified coefficients, so that the dot product of the coefficients
+     * with the weight vector is the static score of the position from the point of view of the first player.
+     *
+     * @param state        the {@code GameState} to score
+     * @param coefficients the coefficients of the weights to add to, {@code NO_OF_WEIGHTS} of them
+     * @see #getWeights()
+     * @author Chay Wen Ning
+     */
+    public static void computeFeatures(GameState state, int[] coefficients) {
+        long occupied = state.getOccupiedMask();
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int color = state.getColorAt(square);
+            int type = state.getPieceTypeAt(square);
+            int flipped = (state.getFlippedPointMask() & (1L << square)) != 0 ? 1 : 0;
+            if (color == 0) {
+                coefficients[WEIGHT_OFFSETS[PIECE_VALUE_GROUP] + type]++;
+                coefficients[TABLE_OFFSETS[type][flipped] + square]++;
+            } else {
+                coefficients[WEIGHT_OFFSETS[PIECE_VALUE_GROUP] + type]--;
+                coefficients[TABLE_OFFSETS[type][1 - flipped] + ChessBoard.NO_OF_SQUARE - 1 - square]--;
+            }
+        }
+        positionalScore(state, coefficients);
+    }
+
+    /**
+     *
+     * Returns the material value of the specified piece type index.
+     *
+     * @param type the piece type index
+     * @return the material value of the piece type
+     * @author Chay Wen Ning
+     */
+    public static int getPieceValue(int type) {
+        return PIECE_VALUES[type];
+    }
+
+    /**
+     *
+     * Returns the piece-square value of a piece from the point of view of the first player, i.e. negative for a piece of the second player.
+     *
+     * @param color   the color index of the piece
+     * @param type    the piece type index of the piece
+     * @param flipped the orientation of a {@code Point} piece, {@code true} if it moves down the board
+     * @param square  the square index of the piece
+     * @return the piece-square value of the piece
+     * @author Chay Wen Ning
+     */
+    public static int pieceSquareValue(int color, int type, boolean flipped, int square) {
+        return PIECE_SQUARE_VALUES[color][type][flipped ? 1 : 0][square];
+    }
+
+    /**
+     *
+     * Returns the change of the piece-square value of a {@code Time} or {@code Plus} piece when it is switched to the other type,
+     * from the point of view of the first player. Returns {@code 0} for the other piece types.
+     *
+     * @param color  the color index of the piece
+     * @param type   the piece type index of the piece
+     * @param square the square index of the piece
+     * @return the change of the piece-square value when the piece is switched
+     * @author Chay Wen Ning
+     */
+    public static int switchDelta(int color, int type, int square) {
+        if (type != GameState.PLUS && type != GameState.TIME) {
+            return 0;
+        }
+        return PIECE_SQUARE_VALUES[color][switchedType(type)][0][square] - PIECE_SQUARE_VALUES[color][type][0][square];
+    }
+
+    /**
+     *
+     * Returns the piece type index a piece has after the {@code Time} and {@code Plus} pieces are switched.
+     *
+     * @param type the piece type index
+     * @return the piece type index after the switch
+     * @author Chay Wen Ning
+     */
+    public static int switchedType(int type) {
+        if (type == GameState.PLUS) {
+            return GameState.TIME;
+        } else if (type == GameState.TIME) {
+            return GameState.PLUS;
+        }
+        return type;
+    }
+
+    /**
+     *
+     * Returns the sum of the piece-square values of every piece of the specified {@code GameState}, from the point of view of the first player.
+     *
+     * @param state the {@code GameState} to score
+     * @return the piece-square score of the position
+     * @author Chay Wen Ning
+     */
+    public static int computePieceSquareScore(GameState state) {
+        int score = 0;
+        long occupied = state.getOccupiedMask();
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            score += pieceSquareValue(state.getColorAt(square), state.getPieceTypeAt(square),
+                    (state.getFlippedPointMask() & (1L << square)) != 0, square);
+        }
+        return score;
+    }
+
+    /**
+     *
+     * Returns the change of the piece-square score of the specified {@code GameState} if its {@code Time} and {@code Plus} pieces were switched,
+     * from the point of view of the first player.
+     *
+     * @param state the {@code GameState} to score
+     * @return the change of the piece-square score when the pieces are switched
+     * @author Chay Wen Ning
+     */
+    public static int computeSwitchDelta(GameState state) {
+        int delta = 0;
+        long switchable = state.getPieceTypeMask(GameState.PLUS) | state.getPieceTypeMask(GameState.TIME);
+        while (switchable != 0) {
+            int square = Long.numberOfTrailingZeros(switchable);
+            switchable &= switchable - 1;
+            delta += switchDelta(state.getColorAt(square), state.getPieceTypeAt(square), square);
+        }
+        return delta;
+    }
+
+    /**
+     *
+     * Returns the static score of the specified {@code GameState} from the point of view of the player to move, computed from scratch.
+     *
+     * @param state the {@code GameState} to score
+     * @return the score of the position for the player to move
+     * @author Chay Wen Ning
+     */
+    public static int evaluate(GameState state) {
+        return evaluate(state, computePieceSquareScore(state));
+    }
+
+    /**
+     *
+     * Returns the static score of the specified {@code GameState} from the point of view of the player to move,
+     * given its piece-square score kept by an {@code Evaluator}.
+     *
+     * @param state            the {@code GameState} to score
+     * @param pieceSquareScore the piece-square score of the position, from the point of view of the first player
+     * @return the score of the position for the player to move
+     * @see engine.Evaluator#evaluate(GameState)
+     * @author Chay Wen Ning
+     */
+    public static int evaluate(GameState state, int pieceSquareScore) {
+        int score = pieceSquareScore + positionalScore(state, null);
+        return state.getPlayerTurn() == 0 ? score : -score;
+    }
+
+    /**
+     *
+     * Returns the mobility and {@code Sun} safety score of the specified {@code GameState}, from the point of view of the first player,
+     * and adds its features to the specified coefficients unless they are {@code null}.
+     *
+     * @param state        the {@code GameState} to score
+     * @param coefficients the coefficients of the weights to add the features to, {@code null} for none
+     * @return the positional score of the position
+     * @author Chay Wen Ning
+     */
+    private static int positionalScore(GameState state, int[] coefficients) {
+        long occupied = state.getOccupiedMask();
+        long yellowAttacks = 0L;
+        long blueAttacks = 0L;
+        int score = 0;
+
+        for (int color = 0; color < 2; color++) {
+            long own = state.getColorMask(color);
+            long attacks = 0L;
+            int hourglassMobility = 0;
+            int plusMobility = 0;
+            int timeMobility = 0;
+
+            long pieces = state.getPieceTypeMask(GameState.HOURGLASS) & own;
+            while (pieces != 0) {
+                long moves = AttackTables.hourglassMoves(Long.numberOfTrailingZeros(pieces));
+                pieces &= pieces - 1;
+                attacks |= moves;
+                hourglassMobility += Long.bitCount(moves & ~own);
+            }
+            pieces = state.getPieceTypeMask(GameState.PLUS) & own;
+            while (pieces != 0) {
+                long moves = AttackTables.plusMoves(Long.numberOfTrailingZeros(pieces), occupied);
+                pieces &= pieces - 1;
+                attacks |= moves;
+                plusMobility += Long.bitCount(moves & ~own);
+            }
+            pieces = state.getPieceTypeMask(GameState.TIME) & own;
+            while (pieces != 0) {
+                long moves = AttackTables.timeMoves(Long.numberOfTrailingZeros(pieces), occupied);
+                pieces &= pieces - 1;
+                attacks |= moves;
+                timeMobility += Long.bitCount(moves & ~own);
+            }
+            pieces = state.getPieceTypeMask(GameState.POINT) & own;
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                attacks |= AttackTables.pointMoves(square, (state.getFlippedPointMask() & (1L << square)) != 0, occupied);
+            }
+            pieces = state.getPieceTypeMask(GameState.SUN) & own;
+            if (pieces != 0) {
+                attacks |= AttackTables.sunMoves(Long.numberOfTrailingZeros(pieces));
+            }
+
+            int sign = color == 0 ? 1 : -1;
+            score += sign * (MOBILITY_WEIGHTS[GameState.HOURGLASS] * hourglassMobility + MOBILITY_WEIGHTS[GameState.PLUS] * plusMobility
+                    + MOBILITY_WEIGHTS[GameState.TIME] * timeMobility);
+            if (coefficients != null) {
+                coefficients[WEIGHT_OFFSETS[MOBILITY_GROUP] + GameState.HOURGLASS] += sign * hourglassMobility;
+                coefficients[WEIGHT_OFFSETS[MOBILITY_GROUP] + GameState.PLUS] += sign * plusMobility;
+                coefficients[WEIGHT_OFFSETS[MOBILITY_GROUP] + GameState.TIME] += sign * timeMobility;
+            }
+            if (color == 0) {
+                yellowAttacks = attacks;
+            } else {
+                blueAttacks = attacks;
+            }
+        }
+
+        score += sunSafety(state, 0, blueAttacks, coefficients) - sunSafety(state, 1, yellowAttacks, coefficients);
+        return score;
+    }
+
+    /**
+     *
+     * Returns the safety score of the {@code Sun} piece of the specified color, from the point of view of its player.
+     *
+     * @param state             the {@code GameState} to score
+     * @param color             the color index of the {@code Sun} piece
+     * @param opponentAttacks   the mask of the squares attacked by the opponent
+     * @param coefficients      the coefficients of the weights to add the features to, from the point of view of the first player, {@code null} for none
+     * @return the safety score of the {@code Sun} piece
+     * @author Chay Wen Ning
+     */
+    private static int sunSafety(GameState state, int color, long opponentAttacks, int[] coefficients) {
+        long sun = state.getPieceTypeMask(GameState.SUN) & state.getColorMask(color);
+        if (sun == 0) {
+            return 0;
+        }
+        long neighbours = AttackTables.sunMoves(Long.numberOfTrailingZeros(sun));
+        int shelter = Long.bitCount(neighbours & state.getColorMask(color));
+        int zoneAttacks = Long.bitCount((neighbours | sun) & opponentAttacks);
+        if (coefficients != null) {
+            int sign = color == 0 ? 1 : -1;
+            coefficients[WEIGHT_OFFSETS[SUN_SAFETY_GROUP] + SUN_SHELTER] += sign * shelter;
+            coefficients[WEIGHT_OFFSETS[SUN_SAFETY_GROUP] + SUN_ZONE_ATTACK] -= sign * zoneAttacks;
+        }
+        return SUN_SAFETY_WEIGHTS[SUN_SHELTER] * shelter - SUN_SAFETY_WEIGHTS[SUN_ZONE_ATTACK] * zoneAttacks;
+    }
+}
@@ -0,0 +1,392 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+import chessgame.PositionNotation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code EvaluationTuner} class; Fits the weights of the {@code Evaluation} to the results of games, in the manner of Texel tuning.
+ * <p>
+ * A positions file has a position per line, in the notation of {@code PositionNotation}, followed by the result of the game it was played in:
+ * {@code 1-0} or {@code 1} if the first player won, {@code 0-1} or {@code 0} if the second player won, {@code 1/2-1/2} or {@code 0.5} if it was drawn.
+ * Lines starting with {@code #} are ignored, and so are positions that are not quiet: where the game is over, a {@code Sun} piece is attacked,
+ * or the player to move has a capture, since their static score does not tell who is winning.
+ * <p>
+ * The score of the {@code Evaluation} is linear in its weights, so the features of every position are computed once with
+ * {@code Evaluation.computeFeatures} and packed into a single {@code int} array, a feature per element. The predicted result of a position
+ * is {@code 1 / (1 + 10^(-K * score / 400))}, where {@code K} is first fitted to the initial weights; the weights are then fitted by minimising
+ * the mean squared error of the predicted results with the Adam variant of gradient descent. The error and its gradient are summed over
+ * ranges of positions in parallel by a {@code ForkJoinPool}.
+ * <p>
+ * Usage: {@code java engine.EvaluationTuner <positionsFile> <weightsFile> [-iterations n] [-rate r] [-threads n] [-weights initialWeightsFile]}.
+ * The computer player uses the fitted weights after {@code Evaluation.loadWeights(weightsFile)}, e.g. with {@code java engine.UciServer weightsFile}.
+ *
+ * @see engine.Evaluation
+ * @see chessgame.PositionNotation
+ * @author Chay Wen Ning
+ */
+public class EvaluationTuner {
+    // Default number of gradient descent iterations and step size, in score units
+    public static final int DEFAULT_ITERATIONS = 1000;
+    public static final double DEFAULT_RATE = 1.0;
+
+    // Decay rates of the moving averages of the gradient and of its square, and the term keeping the Adam step finite
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    // Range of K searched, and the precision K is fitted to
+    private static final double MIN_K = 0.01;
+    private static final double MAX_K = 4.0;
+    private static final double K_PRECISION = 1e-4;
+
+    // Number of positions below which a range is summed without splitting it further
+    private static final int SPLIT_THRESHOLD = 4096;
+
+    // Number of iterations between progress reports
+    private static final int REPORT_INTERVAL = 50;
+
+    private final ForkJoinPool pool;
+    private int positions;
+    private int[] offsets = new int[1024];
+    private int[] features = new int[16384];
+    private float[] results = new float[1024];
+    private double k = 1.0;
+
+    /**
+     *
+     * Constructs a new {@code EvaluationTuner} object that sums the error over the specified number of threads.
+     *
+     * @param threads the number of threads
+     * @author Chay Wen Ning
+     */
+    public EvaluationTuner(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     *
+     * Returns the number of positions loaded.
+     *
+     * @return the number of positions
+     * @author Chay Wen Ning
+     */
+    public int getPositions() {
+        return positions;
+    }
+
+    /**
+     *
+     * Returns the scaling constant {@code K} of the predicted result.
+     *
+     * @return the scaling constant
+     * @author Chay Wen Ning
+     */
+    public double getK() {
+        return k;
+    }
+
+    /**
+     *
+     * Adds every quiet position of the specified positions file, and returns the number of positions added.
+     *
+     * @param file the positions file
+     * @return the number of positions added
+     * @throws IOException if the file cannot be read, or has a malformed position or an unknown result
+     * @author Chay Wen Ning
+     */
+    public int addPositions(File file) throws IOException {
+        int added = 0;
+        int[] coefficients = new int[Evaluation.NO_OF_WEIGHTS];
+        int[] moves = new int[Move.MAX_MOVES];
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int split = line.lastIndexOf(' ');
+                GameState state;
+                float result;
+                try {
+                    state = PositionNotation.parse(line.substring(0, Math.max(split, 0)));
+                    result = parseResult(line.substring(split + 1));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(file + ":" + lineNumber + ": " + ex.getMessage(), ex);
+                }
+                if (state.isGameOver() || state.isSunAttacked(0) || state.isSunAttacked(1) || state.generateCaptures(moves) > 0) {
+                    continue;
+                }
+
+                Arrays.fill(coefficients, 0);
+                Evaluation.computeFeatures(state, coefficients);
+                addPosition(coefficients, result);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     *
+     * Packs the non-zero coefficients of a position after the features of the previous positions.
+     *
+     * @param coefficients the coefficients of the weights
+     * @param result       the result of the game, from the point of view of the first player
+     * @author Chay Wen Ning
+     */
+    private void addPosition(int[] coefficients, float result) {
+        if (positions + 1 == results.length) {
+            results = Arrays.copyOf(results, results.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        int end = offsets[positions];
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] != 0) {
+                if (end == features.length) {
+                    features = Arrays.copyOf(features, features.length * 2);
+                }
+                // the weight index in the high half, the coefficient in the low half
+                features[end++] = (i << 16) | (coefficients[i] & 0xFFFF);
+            }
+        }
+        results[positions++] = result;
+        offsets[positions] = end;
+    }
+
+    /**
+     *
+     * Parses the result of a game, from the point of view of the first player.
+     *
+     * @param token the result, e.g. {@code 1-0} or {@code 0.5}
+     * @return {@code 1} if the first player won, {@code 0} if the second player won, {@code 0.5} if it was drawn
+     * @throws IllegalArgumentException if the result is unknown
+     * @author Chay Wen Ning
+     */
+    private static float parseResult(String token) {
+        switch (token) {
+            case "1-0":
+            case "1":
+                return 1f;
+            case "0-1":
+            case "0":
+                return 0f;
+            case "1/2-1/2":
+            case "0.5":
+                return 0.5f;
+            default:
+                throw new IllegalArgumentException("Unknown result: " + token);
+        }
+    }
+
+    /**
+     *
+     * Returns the mean squared error of the predicted results with the specified weights and the current {@code K}.
+     *
+     * @param weights the weights
+     * @return the mean squared error
+     * @author Chay Wen Ning
+     */
+    public double computeError(double[] weights) {
+        return pool.invoke(new ErrorTask(weights, null, 0, positions)) / positions;
+    }
+
+    /**
+     *
+     * Fits {@code K} to the specified weights, by a ternary search for the least mean squared error.
+     *
+     * @param weights the weights
+     * @return the fitted {@code K}
+     * @author Chay Wen Ning
+     */
+    public double fitK(double[] weights) {
+        double low = MIN_K;
+        double high = MAX_K;
+        while (high - low > K_PRECISION) {
+            double third = (high - low) / 3;
+            k = low + third;
+            double lowError = computeError(weights);
+            k = high - third;
+            double highError = computeError(weights);
+            if (lowError < highError) {
+                high -= third;
+            } else {
+                low += third;
+            }
+        }
+        k = (low + high) / 2;
+        return k;
+    }
+
+    /**
+     *
+     * Fits the specified weights in place by the specified number of Adam iterations over every position, and returns the final error.
+     *
+     * @param weights    the weights, {@code Evaluation.NO_OF_WEIGHTS} of them
+     * @param iterations the number of iterations
+     * @param rate       the step size, in score units
+     * @return the mean squared error of the fitted weights
+     * @author Chay Wen Ning
+     */
+    public double tune(double[] weights, int iterations, double rate) {
+        double[] momentum = new double[weights.length];
+        double[] velocity = new double[weights.length];
+        double error = 0;
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double[] gradient = new double[weights.length];
+            error = pool.invoke(new ErrorTask(weights, gradient, 0, positions)) / positions;
+            double correction1 = 1 - Math.pow(BETA1, iteration);
+            double correction2 = 1 - Math.pow(BETA2, iteration);
+            for (int i = 0; i < weights.length; i++) {
+                double g = gradient[i] / positions;
+                momentum[i] = BETA1 * momentum[i] + (1 - BETA1) * g;
+                velocity[i] = BETA2 * velocity[i] + (1 - BETA2) * g * g;
+                weights[i] -= rate * (momentum[i] / correction1) / (Math.sqrt(velocity[i] / correction2) + EPSILON);
+            }
+            if (iteration % REPORT_INTERVAL == 0 || iteration == iterations) {
+                System.out.printf("Iteration %d: error %.6f%n", iteration, error);
+            }
+        }
+        return error;
+    }
+
+    /**
+     *
+     * Shuts down the threads of the tuner.
+     *
+     * @author Chay Wen Ning
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Sums the squared error of the predicted results over a range of positions, and their gradient if asked for,
+     * splitting the range in halves until it is small enough.
+     */
+    private final class ErrorTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] weights;
+        private final double[] gradient;
+        private final int from;
+        private final int to;
+
+        private ErrorTask(double[] weights, double[] gradient, int from, int to) {
+            this.weights = weights;
+            this.gradient = gradient;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ErrorTask left = new ErrorTask(weights, gradient == null ? null : new double[weights.length], from, middle);
+                ErrorTask right = new ErrorTask(weights, gradient == null ? null : new double[weights.length], middle, to);
+                left.fork();
+                double error = right.compute() + left.join();
+                if (gradient != null) {
+                    for (int i = 0; i < gradient.length; i++) {
+                        gradient[i] += left.gradient[i] + right.gradient[i];
+                    }
+                }
+                return error;
+            }
+
+            double error = 0;
+            double scale = k * Math.log(10) / 400;
+            for (int position = from; position < to; position++) {
+                double score = 0;
+                for (int i = offsets[position]; i < offsets[position + 1]; i++) {
+                    score += weights[features[i] >>> 16] * (short) features[i];
+                }
+                double predicted = 1 / (1 + Math.exp(-scale * score));
+                double difference = results[position] - predicted;
+                error += difference * difference;
+                if (gradient != null) {
+                    // derivative of the squared error by the score
+                    double slope = -2 * difference * predicted * (1 - predicted) * scale;
+                    for (int i = offsets[position]; i < offsets[position + 1]; i++) {
+                        gradient[features[i] >>> 16] += slope * (short) features[i];
+                    }
+                }
+            }
+            return error;
+        }
+    }
+
+    /**
+     *
+     * Fits the weights of the {@code Evaluation} to a positions file, and writes them to a weights file.
+     *
+     * @param args the positions file and the weights file, followed by options
+     * @throws IOException if a file cannot be read or written
+     * @author Chay Wen Ning
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java engine.EvaluationTuner <positionsFile> <weightsFile> [-iterations n] [-rate r] [-threads n] [-weights initialWeightsFile]");
+            System.exit(1);
+        }
+
+        int iterations = DEFAULT_ITERATIONS;
+        double rate = DEFAULT_RATE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-rate":
+                    rate = Double.parseDouble(args[i + 1]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-weights":
+                    Evaluation.loadWeights(new File(args[i + 1]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        EvaluationTuner tuner = new EvaluationTuner(threads);
+        try {
+            long startTime = System.nanoTime();
+            tuner.addPositions(new File(args[0]));
+            System.out.println("Positions: " + tuner.getPositions() + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            if (tuner.getPositions() == 0) {
+                System.exit(1);
+            }
+
+            double[] weights = Arrays.stream(Evaluation.getWeights()).asDoubleStream().toArray();
+            System.out.printf("K: %.4f, initial error: %.6f%n", tuner.fitK(weights), tuner.computeError(weights));
+            startTime = System.nanoTime();
+            tuner.tune(weights, iterations, rate);
+            System.out.println("Tuned in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+
+            int[] tuned = new int[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                tuned[i] = (int) Math.round(weights[i]);
+            }
+            Evaluation.writeWeights(new File(args[1]), tuned);
+        } finally {
+            tuner.shutdown();
+        }
+    }
+}
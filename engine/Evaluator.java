@@ -0,0 +1,216 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.GameState;
+import chessgame.Move;
+
+/**
+ * The {@code Evaluator} class; Keeps the piece-square score of a {@code GameState} up to date as moves are made and unmade,
+ * so that scoring a position never sums the values of every piece.
+ * <p>
+ * Every {@code makeMove} of the {@code GameState} is followed by a call to {@code update}, which reads the last move and its flags
+ * from the {@code GameState} and pushes the new score; every {@code unmakeMove} is followed by a call to {@code undo}, which pops it.
+ * A move changes the score by the values of the moved piece on its two squares and of the captured piece, if any.
+ * To switch {@code Time} and {@code Plus} pieces in constant time, the {@code Evaluator} also keeps the change of score the next switch would make.
+ * <p>
+ * With a {@code Network}, the {@code Evaluator} also keeps the accumulators of both players on a stack: every {@code update} adds and removes
+ * the weight columns of the pieces the move changed, including every {@code Time} and {@code Plus} piece when they are switched,
+ * and the score of a position is the output of the {@code Network} instead of the {@code Evaluation}.
+ *
+ * @see engine.Evaluation
+ * @see engine.Network
+ * @see chessgame.GameState#getLastMoveFlags()
+ * @author Chay Wen Ning
+ */
+public class Evaluator {
+    // Largest number of features a move adds or removes: the moved piece, a captured piece, and a switched piece on every square
+    private static final int MAX_CHANGES = 2 + ChessBoard.NO_OF_SQUARE;
+
+    private final int maxPly;
+    private final int[] scores;
+    private final int[] switchDeltas;
+    private int ply;
+    private Network network;
+    private short[][][] accumulators;
+    // Features added and removed by a move, indexed by the player of the accumulator
+    private final int[][] added = new int[2][MAX_CHANGES];
+    private final int[][] removed = new int[2][MAX_CHANGES];
+
+    /**
+     *
+     * Constructs a new {@code Evaluator} object with the scores of the specified {@code GameState},
+     * whose stacks hold the scores of up to the specified number of moves made after a reset.
+     *
+     * @param state  the {@code GameState} to evaluate
+     * @param maxPly the largest number of moves made after a reset, e.g. the maximum ply of a search
+     * @author Chay Wen Ning
+     */
+    public Evaluator(GameState state, int maxPly) {
+        this.maxPly = maxPly;
+        this.scores = new int[maxPly + 1];
+        this.switchDeltas = new int[maxPly + 1];
+        reset(state);
+    }
+
+    /**
+     *
+     * Computes the scores of the specified {@code GameState} from scratch, and empties the stack of scores.
+     *
+     * @param state the {@code GameState} to evaluate
+     * @author Chay Wen Ning
+     */
+    public void reset(GameState state) {
+        ply = 0;
+        scores[0] = Evaluation.computePieceSquareScore(state);
+        switchDeltas[0] = Evaluation.computeSwitchDelta(state);
+        if (network != null) {
+            network.refresh(state, 0, accumulators[0][0]);
+            network.refresh(state, 1, accumulators[0][1]);
+        }
+    }
+
+    /**
+     *
+     * Sets the {@code Network} that scores positions instead of the {@code Evaluation}, {@code null} for none.
+     * The {@code Evaluator} must be reset before it is used again.
+     *
+     * @param network the {@code Network} to score positions with, {@code null} for none
+     * @author Chay Wen Ning
+     */
+    public void setNetwork(Network network) {
+        this.network = network;
+        if (network != null && (accumulators == null || accumulators[0][0].length != network.getHiddenSize())) {
+            accumulators = new short[maxPly + 1][2][network.getHiddenSize()];
+        }
+    }
+
+    /**
+     *
+     * Returns the piece-square score of the current position, from the point of view of the first player.
+     *
+     * @return the piece-square score
+     * @author Chay Wen Ning
+     */
+    public int getPieceSquareScore() {
+        return scores[ply];
+    }
+
+    /**
+     *
+     * Returns the static score of the specified {@code GameState}, which must be the current position, from the point of view of the player to move.
+     *
+     * @param state the current {@code GameState}
+     * @return the score of the position for the player to move
+     * @see engine.Evaluation#evaluate(GameState, int)
+     * @author Chay Wen Ning
+     */
+    public int evaluate(GameState state) {
+        if (network != null) {
+            int turn = state.getPlayerTurn();
+            return network.evaluate(accumulators[ply][turn], accumulators[ply][turn ^ 1]);
+        }
+        return Evaluation.evaluate(state, scores[ply]);
+    }
+
+    /**
+     *
+     * Pushes the scores of the specified {@code GameState} after the move just made by {@code GameState.makeMove}.
+     *
+     * @param state the {@code GameState} a move was just made on
+     * @author Chay Wen Ning
+     */
+    public void update(GameState state) {
+        int move = state.getLastMove();
+        int flags = state.getLastMoveFlags();
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        int mover = state.getPlayerTurn() ^ 1;
+        boolean switched = (flags & GameState.FLAG_PIECES_SWITCHED) != 0;
+
+        // the type and orientation of the moved piece before the end of the turn
+        int type = state.getPieceTypeAt(to);
+        if (switched) {
+            type = Evaluation.switchedType(type);
+        }
+        boolean flippedAfter = (state.getFlippedPointMask() & (1L << to)) != 0;
+        boolean flippedBefore = flippedAfter != ((flags & GameState.FLAG_POINT_FLIPPED) != 0);
+
+        int score = scores[ply] - Evaluation.pieceSquareValue(mover, type, flippedBefore, from)
+                + Evaluation.pieceSquareValue(mover, type, flippedAfter, to);
+        int switchDelta = switchDeltas[ply] - Evaluation.switchDelta(mover, type, from) + Evaluation.switchDelta(mover, type, to);
+
+        int captured = state.getLastCapturedType();
+        if (captured >= 0) {
+            score -= Evaluation.pieceSquareValue(mover ^ 1, captured, (flags & GameState.FLAG_CAPTURED_POINT_FLIPPED) != 0, to);
+            switchDelta -= Evaluation.switchDelta(mover ^ 1, captured, to);
+        }
+
+        if (switched) {
+            score += switchDelta;
+            switchDelta = -switchDelta;
+        }
+
+        if (network != null) {
+            updateAccumulators(state, mover, type, from, to, flippedBefore, flippedAfter, captured,
+                    (flags & GameState.FLAG_CAPTURED_POINT_FLIPPED) != 0, switched);
+        }
+
+        ply++;
+        scores[ply] = score;
+        switchDeltas[ply] = switchDelta;
+    }
+
+    /**
+     *
+     * Computes the accumulators of both players after the move just made, from those before it, by the features the move changed.
+     *
+     * @param state           the {@code GameState} a move was just made on
+     * @param mover           the color index of the player who made the move
+     * @param type            the piece type index of the moved piece before the end of the turn
+     * @param from            the square index the piece moved from
+     * @param to              the square index the piece moved to
+     * @param flippedBefore   the orientation of the moved piece before the move
+     * @param flippedAfter    the orientation of the moved piece after the move
+     * @param captured        the piece type index of the captured piece, {@code -1} if none
+     * @param capturedFlipped the orientation of the captured piece
+     * @param switched        {@code true} if the {@code Time} and {@code Plus} pieces were switched at the end of the turn
+     * @author Chay Wen Ning
+     */
+    private void updateAccumulators(GameState state, int mover, int type, int from, int to, boolean flippedBefore, boolean flippedAfter,
+            int captured, boolean capturedFlipped, boolean switched) {
+        for (int perspective = 0; perspective < 2; perspective++) {
+            int[] add = added[perspective];
+            int[] remove = removed[perspective];
+            int addedCount = 0;
+            int removedCount = 0;
+            remove[removedCount++] = Network.featureIndex(perspective, mover, type, flippedBefore, from);
+            add[addedCount++] = Network.featureIndex(perspective, mover, type, flippedAfter, to);
+            if (captured >= 0) {
+                remove[removedCount++] = Network.featureIndex(perspective, mover ^ 1, captured, capturedFlipped, to);
+            }
+            if (switched) {
+                // the moved piece was added with its type before the switch, like every other switched piece
+                long pieces = state.getPieceTypeMask(GameState.PLUS) | state.getPieceTypeMask(GameState.TIME);
+                while (pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    int color = state.getColorAt(square);
+                    int switchedType = state.getPieceTypeAt(square);
+                    remove[removedCount++] = Network.featureIndex(perspective, color, Evaluation.switchedType(switchedType), false, square);
+                    add[addedCount++] = Network.featureIndex(perspective, color, switchedType, false, square);
+                }
+            }
+            network.update(accumulators[ply][perspective], accumulators[ply + 1][perspective], add, addedCount, remove, removedCount);
+        }
+    }
+
+    /**
+     *
+     * Pops the scores of the last move, after it is taken back by {@code GameState.unmakeMove}.
+     *
+     * @author Chay Wen Ning
+     */
+    public void undo() {
+        ply--;
+    }
+}
@@ -0,0 +1,681 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code MctsEngine} class; A computer player for Talabia Chess that uses Monte Carlo Tree Search with UCT selection.
+ * Every iteration selects a leaf of the search tree by the UCT formula, expands it, plays a random game from it (a playout),
+ * and adds the result to every node on the path back to the root. The move played is the most visited move of the root.
+ * <p>
+ * The nodes of the tree are kept in a pool of primitive arrays indexed by node, instead of one object per node,
+ * and the children of a node are stored next to each other. The pool is sized by a memory limit in megabytes;
+ * once it is nearly full, the tree is compacted and the children of the least visited nodes are pruned.
+ * The subtree of the position reached by the next search is kept, so that the tree is reused between moves.
+ * <p>
+ * Playouts run in a {@code ForkJoinPool}: a batch of leaves is selected, with a virtual loss on every selected path so that the leaves differ,
+ * and their playouts run in parallel before their results are added to the tree.
+ *
+ * @see engine.SearchEngine
+ * @see chessgame.GameState
+ * @author Chay Wen Ning
+ */
+public class MctsEngine implements SearchEngine {
+    public static final int DEFAULT_MEMORY_MB = 64;
+
+    // Bytes of a node in the two node pools, the second one being used to compact the tree
+    private static final int BYTES_PER_NODE = 2 * (4 + 4 + 4 + 4 + 2 + 2);
+
+    // Exploration constant of the UCT formula
+    private static final double EXPLORATION = 1.0;
+    // Playout length after which the result is taken from the static evaluation
+    private static final int MAX_PLAYOUT_PLIES = 200;
+    // Static score beyond which an unfinished playout counts as a win
+    private static final int PLAYOUT_WIN_MARGIN = 150;
+    // Leaves selected per thread before their playouts are run
+    private static final int BATCH_PER_THREAD = 4;
+    // Share of the pool that may be filled before the tree is compacted, in percent
+    private static final int PRUNE_THRESHOLD = 90;
+
+    // Result of a playout, in half points for the first player
+    private static final int FIRST_PLAYER_WIN = 2;
+    private static final int DRAW = 1;
+    private static final int SECOND_PLAYER_WIN = 0;
+    private static final int NO_RESULT = -1;
+
+    private long timeLimit = Engine.DEFAULT_TIME_LIMIT;
+    private long playoutLimit = 0;
+    private int threads = 1;
+    private int memoryLimit = DEFAULT_MEMORY_MB;
+    private ForkJoinPool pool;
+    private volatile boolean stopped;
+
+    // Node pool; a node without children has a first child of -1
+    private int capacity;
+    private int size;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] visits;
+    private int[] scores; // half points of the player who made the move into the node
+    private short[] moves;
+    private short[] childCounts;
+
+    // Spare node pool, the target of a compaction
+    private int[] spareParents;
+    private int[] spareFirstChildren;
+    private int[] spareVisits;
+    private int[] spareScores;
+    private short[] spareMoves;
+    private short[] spareChildCounts;
+
+    private GameState rootState;
+    private GameState treeState;
+    private final int[] expandMoves = new int[Move.MAX_MOVES];
+    private GameState[] leafStates = new GameState[0];
+    private int[][] playoutMoves = new int[0][];
+    private SplittableRandom[] randoms = new SplittableRandom[0];
+    private int[] leafNodes = new int[0];
+    private int[] leafDepths = new int[0];
+    private int[] leafResults = new int[0];
+
+    private long lastPlayouts;
+
+    /**
+     *
+     * Constructs a new {@code MctsEngine} object with the default time limit and memory limit, running on one thread.
+     *
+     * @author Chay Wen Ning
+     */
+    public MctsEngine() {
+        allocatePool();
+    }
+
+    @Override
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    @Override
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     *
+     * Returns the playout limit of a search, {@code 0} if there is no playout limit.
+     *
+     * @return the playout limit
+     * @author Chay Wen Ning
+     */
+    public long getPlayoutLimit() {
+        return playoutLimit;
+    }
+
+    /**
+     *
+     * Sets the playout limit of a search. Set {@code 0} for no playout limit.
+     *
+     * @param playoutLimit the playout limit
+     * @author Chay Wen Ning
+     */
+    public void setPlayoutLimit(long playoutLimit) {
+        this.playoutLimit = playoutLimit;
+    }
+
+    /**
+     *
+     * Returns the number of threads that run playouts.
+     *
+     * @return the number of threads
+     * @author Chay Wen Ning
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     *
+     * Sets the number of threads that run playouts. Must not be called while a search is running.
+     *
+     * @param threads the number of threads
+     * @throws IllegalArgumentException if the number of threads is not positive
+     * @author Chay Wen Ning
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (threads != this.threads && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = threads;
+    }
+
+    /**
+     *
+     * Returns the memory limit of the node pool in megabytes.
+     *
+     * @return the memory limit in megabytes
+     * @author Chay Wen Ning
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     *
+     * Sets the memory limit of the node pool in megabytes, which discards the tree. Must not be called while a search is running.
+     *
+     * @param memoryLimit the memory limit in megabytes
+     * @throws IllegalArgumentException if the memory limit is not positive
+     * @author Chay Wen Ning
+     */
+    public void setMemoryLimit(int memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("Memory limit must be positive: " + memoryLimit);
+        }
+        this.memoryLimit = memoryLimit;
+        allocatePool();
+    }
+
+    /**
+     *
+     * Returns the number of nodes of the tree.
+     *
+     * @return the number of nodes
+     * @author Chay Wen Ning
+     */
+    public int getTreeSize() {
+        return size;
+    }
+
+    /**
+     *
+     * Returns the number of visits of the root of the tree, i.e. of the position last searched.
+     *
+     * @return the number of visits of the root
+     * @author Chay Wen Ning
+     */
+    public int getRootVisits() {
+        return size == 0 ? 0 : visits[0];
+    }
+
+    /**
+     *
+     * Returns the number of playouts of the last search.
+     *
+     * @return the number of playouts of the last search
+     * @author Chay Wen Ning
+     */
+    @Override
+    public long getLastNodes() {
+        return lastPlayouts;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public int findBestMove(GameState state) {
+        stopped = false;
+        long deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+        long limit = playoutLimit > 0 ? playoutLimit : Long.MAX_VALUE;
+        if (!reuseTree(state)) {
+            resetTree(state);
+        }
+        expand(0);
+        if (childCounts[0] == 0) {
+            return Move.NONE;
+        }
+
+        int batchSize = threads * BATCH_PER_THREAD;
+        ensureBatchBuffers(batchSize);
+        if (threads > 1 && pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+
+        long playouts = 0;
+        while (!stopped && playouts < limit && System.currentTimeMillis() < deadline) {
+            int batch = (int) Math.min(batchSize, limit - playouts);
+            for (int i = 0; i < batch; i++) {
+                select(i);
+            }
+            runPlayouts(batch);
+            for (int i = 0; i < batch; i++) {
+                backpropagate(leafNodes[i], leafDepths[i], leafResults[i]);
+            }
+            playouts += batch;
+
+            if (size * 100L >= capacity * PRUNE_THRESHOLD) {
+                prune();
+            }
+        }
+        lastPlayouts = playouts;
+        return mostVisitedMove();
+    }
+
+    /**
+     *
+     * Selects a leaf by the UCT formula from the root, expands it if it was visited before, and prepares its playout in the specified batch slot.
+     * Every node on the path gets a visit at once, which acts as a virtual loss until the result of the playout is added.
+     *
+     * @param slot the index of the leaf in the batch
+     * @author Chay Wen Ning
+     */
+    private void select(int slot) {
+        int node = 0;
+        int depth = 0;
+        visits[0]++;
+        while (true) {
+            if (treeState.isGameOver()) {
+                leafResults[slot] = treeState.getWinner() == 0 ? FIRST_PLAYER_WIN : SECOND_PLAYER_WIN;
+                break;
+            }
+            if (firstChildren[node] < 0 && visits[node] > 1) {
+                expand(node);
+            }
+            if (firstChildren[node] < 0) {
+                leafStates[slot].set(treeState);
+                leafResults[slot] = NO_RESULT;
+                break;
+            }
+            if (childCounts[node] == 0) {
+                // no moves, while the game is not over, is a draw
+                leafResults[slot] = DRAW;
+                break;
+            }
+
+            node = selectChild(node);
+            visits[node]++;
+            treeState.makeMove(moves[node]);
+            depth++;
+        }
+        leafNodes[slot] = node;
+        leafDepths[slot] = depth;
+        for (int i = 0; i < depth; i++) {
+            treeState.unmakeMove();
+        }
+    }
+
+    /**
+     *
+     * Returns the child of the specified node with the highest UCT value. An unvisited child is returned first.
+     *
+     * @param node the index of the node
+     * @return the index of the selected child
+     * @author Chay Wen Ning
+     */
+    private int selectChild(int node) {
+        int first = firstChildren[node];
+        int last = first + childCounts[node];
+        double logVisits = Math.log(visits[node]);
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < last; child++) {
+            if (visits[child] == 0) {
+                return child;
+            }
+            double value = scores[child] / (2.0 * visits[child]) + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     *
+     * Adds the children of the specified node, whose position is the current position of the tree {@code GameState}, if the pool has room for them.
+     *
+     * @param node the index of the node to expand
+     * @author Chay Wen Ning
+     */
+    private void expand(int node) {
+        if (firstChildren[node] >= 0) {
+            return;
+        }
+        int count = treeState.generateMoves(expandMoves);
+        if (size + count > capacity) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int child = size + i;
+            parents[child] = node;
+            firstChildren[child] = -1;
+            visits[child] = 0;
+            scores[child] = 0;
+            moves[child] = (short) expandMoves[i];
+            childCounts[child] = 0;
+        }
+        firstChildren[node] = size;
+        childCounts[node] = (short) count;
+        size += count;
+    }
+
+    /**
+     *
+     * Runs the playouts of the leaves of the batch, in parallel if there is more than one thread.
+     *
+     * @param batch the number of leaves of the batch
+     * @author Chay Wen Ning
+     */
+    private void runPlayouts(int batch) {
+        if (pool == null) {
+            for (int i = 0; i < batch; i++) {
+                runPlayout(i);
+            }
+        } else {
+            pool.invoke(new PlayoutTask(0, batch));
+        }
+    }
+
+    /**
+     *
+     * Runs the playout of the specified batch slot, if the leaf of the slot is not already decided.
+     *
+     * @param slot the index of the leaf in the batch
+     * @author Chay Wen Ning
+     */
+    private void runPlayout(int slot) {
+        if (leafResults[slot] == NO_RESULT) {
+            leafResults[slot] = playout(leafStates[slot], randoms[slot], playoutMoves[slot]);
+        }
+    }
+
+    /**
+     * The {@code PlayoutTask} class; Runs the playouts of a range of batch slots, splitting the range in halves.
+     */
+    private class PlayoutTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        PlayoutTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int slot = from; slot < to; slot++) {
+                    runPlayout(slot);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlayoutTask(from, middle), new PlayoutTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     *
+     * Plays random moves on the specified {@code GameState} until a {@code Sun} piece can be captured or {@code MAX_PLAYOUT_PLIES} plies are played,
+     * and returns the result in half points for the first player. Captures are preferred half of the time.
+     * An unfinished playout is decided by the static evaluation.
+     *
+     * @param state  the {@code GameState} to play on
+     * @param random the random generator of the playout
+     * @param moves  the buffer of the moves of the playout
+     * @return the result of the playout, in half points for the first player
+     * @author Chay Wen Ning
+     */
+    private static int playout(GameState state, SplittableRandom random, int[] moves) {
+        for (int ply = 0; ply < MAX_PLAYOUT_PLIES; ply++) {
+            if (state.isGameOver()) {
+                return state.getWinner() == 0 ? FIRST_PLAYER_WIN : SECOND_PLAYER_WIN;
+            }
+            int turn = state.getPlayerTurn();
+            if (state.isSunAttacked(turn ^ 1)) {
+                return turn == 0 ? FIRST_PLAYER_WIN : SECOND_PLAYER_WIN;
+            }
+
+            int count = random.nextBoolean() ? state.generateCaptures(moves) : 0;
+            if (count == 0) {
+                count = state.generateMoves(moves);
+            }
+            if (count == 0) {
+                return DRAW;
+            }
+            state.makeMove(moves[random.nextInt(count)]);
+        }
+
+        int score = Evaluation.evaluate(state);
+        if (state.getPlayerTurn() == 1) {
+            score = -score;
+        }
+        if (score > PLAYOUT_WIN_MARGIN) {
+            return FIRST_PLAYER_WIN;
+        } else if (score < -PLAYOUT_WIN_MARGIN) {
+            return SECOND_PLAYER_WIN;
+        }
+        return DRAW;
+    }
+
+    /**
+     *
+     * Adds the result of a playout to every node from the specified leaf up to the root.
+     * Each node scores the result for the player who made the move into it.
+     *
+     * @param leaf   the index of the leaf node
+     * @param depth  the depth of the leaf node
+     * @param result the result of the playout, in half points for the first player
+     * @author Chay Wen Ning
+     */
+    private void backpropagate(int leaf, int depth, int result) {
+        int rootTurn = rootState.getPlayerTurn();
+        int node = leaf;
+        for (int d = depth; d > 0; d--) {
+            int mover = rootTurn ^ ((d - 1) & 1);
+            scores[node] += mover == 0 ? result : FIRST_PLAYER_WIN - result;
+            node = parents[node];
+        }
+    }
+
+    /**
+     *
+     * Returns the move of the most visited child of the root.
+     *
+     * @return the encoded most visited move
+     * @author Chay Wen Ning
+     */
+    private int mostVisitedMove() {
+        int first = firstChildren[0];
+        int best = first;
+        for (int child = first + 1; child < first + childCounts[0]; child++) {
+            if (visits[child] > visits[best]) {
+                best = child;
+            }
+        }
+        return moves[best];
+    }
+
+    /**
+     *
+     * Keeps the subtree of the specified {@code GameState}, if it is the root or a child or grandchild of the root of the tree.
+     * Returns {@code true} if the tree is reused.
+     *
+     * @param state the {@code GameState} to search
+     * @return {@code true} if the tree is reused
+     * @author Chay Wen Ning
+     */
+    private boolean reuseTree(GameState state) {
+        if (size == 0 || rootState == null) {
+            return false;
+        }
+        int newRoot = findNode(0, state.getKey(), 2);
+        if (newRoot < 0) {
+            return false;
+        }
+        compact(newRoot, 0);
+        rootState = new GameState(state);
+        treeState = new GameState(state);
+        return true;
+    }
+
+    /**
+     *
+     * Returns the index of the node of the specified position key, searched from the specified node up to the specified depth,
+     * {@code -1} if there is none. The tree {@code GameState} must be at the position of the specified node.
+     *
+     * @param node  the index of the node to search from
+     * @param key   the position key to find
+     * @param depth the maximum depth to search
+     * @return the index of the node of the position, {@code -1} if there is none
+     * @author Chay Wen Ning
+     */
+    private int findNode(int node, long key, int depth) {
+        if (treeState.getKey() == key) {
+            return node;
+        }
+        if (depth == 0 || firstChildren[node] < 0) {
+            return -1;
+        }
+        int first = firstChildren[node];
+        for (int child = first; child < first + childCounts[node]; child++) {
+            treeState.makeMove(moves[child]);
+            int found = findNode(child, key, depth - 1);
+            treeState.unmakeMove();
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * Discards the tree and starts a new one at the specified {@code GameState}.
+     *
+     * @param state the {@code GameState} of the root
+     * @author Chay Wen Ning
+     */
+    private void resetTree(GameState state) {
+        rootState = new GameState(state);
+        treeState = new GameState(state);
+        parents[0] = -1;
+        firstChildren[0] = -1;
+        visits[0] = 0;
+        scores[0] = 0;
+        moves[0] = Move.NONE;
+        childCounts[0] = 0;
+        size = 1;
+    }
+
+    /**
+     *
+     * Compacts the tree until it fills at most half of the pool, pruning the children of nodes visited less and less often.
+     *
+     * @author Chay Wen Ning
+     */
+    private void prune() {
+        int minVisits = 2;
+        compact(0, minVisits);
+        while (size * 2L > capacity) {
+            minVisits *= 2;
+            compact(0, minVisits);
+        }
+    }
+
+    /**
+     *
+     * Copies the subtree of the specified node into the spare pool, with the node as the new root, and swaps the pools.
+     * The children of a node are only kept if the node has at least the specified number of visits.
+     * The nodes are copied in breadth-first order, so that the children of every node stay next to each other.
+     *
+     * @param root      the index of the node to make the new root
+     * @param minVisits the minimum number of visits of a node to keep its children
+     * @author Chay Wen Ning
+     */
+    private void compact(int root, int minVisits) {
+        copyNode(root, 0, -1);
+        int newSize = 1;
+        for (int next = 0; next < newSize; next++) {
+            int old = spareFirstChildren[next];
+            int count = spareChildCounts[next];
+            if (old < 0 || spareVisits[next] < minVisits) {
+                spareFirstChildren[next] = -1;
+                spareChildCounts[next] = 0;
+                continue;
+            }
+            spareFirstChildren[next] = newSize;
+            for (int i = 0; i < count; i++) {
+                copyNode(old + i, newSize + i, next);
+            }
+            newSize += count;
+        }
+
+        int[] ints = parents; parents = spareParents; spareParents = ints;
+        ints = firstChildren; firstChildren = spareFirstChildren; spareFirstChildren = ints;
+        ints = visits; visits = spareVisits; spareVisits = ints;
+        ints = scores; scores = spareScores; spareScores = ints;
+        short[] shorts = moves; moves = spareMoves; spareMoves = shorts;
+        shorts = childCounts; childCounts = spareChildCounts; spareChildCounts = shorts;
+        size = newSize;
+    }
+
+    private void copyNode(int from, int to, int parent) {
+        spareParents[to] = parent;
+        spareFirstChildren[to] = firstChildren[from];
+        spareVisits[to] = visits[from];
+        spareScores[to] = scores[from];
+        spareMoves[to] = moves[from];
+        spareChildCounts[to] = childCounts[from];
+    }
+
+    /**
+     *
+     * Allocates the node pools for the memory limit, which discards the tree.
+     *
+     * @author Chay Wen Ning
+     */
+    private void allocatePool() {
+        capacity = (int) Math.min((long) memoryLimit * 1024 * 1024 / BYTES_PER_NODE, Integer.MAX_VALUE - 8);
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        visits = new int[capacity];
+        scores = new int[capacity];
+        moves = new short[capacity];
+        childCounts = new short[capacity];
+        spareParents = new int[capacity];
+        spareFirstChildren = new int[capacity];
+        spareVisits = new int[capacity];
+        spareScores = new int[capacity];
+        spareMoves = new short[capacity];
+        spareChildCounts = new short[capacity];
+        size = 0;
+        rootState = null;
+    }
+
+    /**
+     *
+     * Allocates the per-slot buffers of a batch of the specified size, if they are smaller.
+     *
+     * @param batchSize the number of leaves of a batch
+     * @author Chay Wen Ning
+     */
+    private void ensureBatchBuffers(int batchSize) {
+        if (leafStates.length >= batchSize) {
+            return;
+        }
+        leafStates = new GameState[batchSize];
+        randoms = new SplittableRandom[batchSize];
+        playoutMoves = new int[batchSize][Move.MAX_MOVES];
+        for (int i = 0; i < batchSize; i++) {
+            leafStates[i] = new GameState();
+            randoms[i] = new SplittableRandom(i + 1);
+        }
+        leafNodes = new int[batchSize];
+        leafDepths = new int[batchSize];
+        leafResults = new int[batchSize];
+    }
+}
@@ -0,0 +1,220 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.GameState;
+import chessgame.Move;
+
+/**
+ * The {@code MovePicker} class; Hands out the moves of a {@code GameState} one at a time, best first, for a node of the {@code Search}.
+ * The moves are generated in stages, so that a node cut off by an early move never generates or sorts the later ones:
+ * <ol>
+ * <li>the move of the {@code TranspositionTable}, if it is legal;</li>
+ * <li>the captures, by most valuable victim then least valuable attacker, so that capturing a {@code Sun} piece comes first;</li>
+ * <li>the killer moves, i.e. the quiet moves that last cut off a node at the same ply, if they are legal;</li>
+ * <li>the other quiet moves, by their history score for the piece type and destination square.</li>
+ * </ol>
+ * For the quiescence search, {@code initCaptures} starts a {@code MovePicker} that only hands out the captures.
+ * A {@code MovePicker} is reused for every node of its ply, and allocates nothing.
+ *
+ * @see engine.Search
+ * @see chessgame.GameState#generateCaptures(int[])
+ * @see chessgame.GameState#generateQuietMoves(int[])
+ * @author Chay Wen Ning
+ */
+public class MovePicker {
+    // Stages of the move generation
+    private static final int STAGE_TABLE_MOVE = 0;
+    private static final int STAGE_GENERATE_CAPTURES = 1;
+    private static final int STAGE_CAPTURES = 2;
+    private static final int STAGE_KILLERS = 3;
+    private static final int STAGE_GENERATE_QUIETS = 4;
+    private static final int STAGE_QUIETS = 5;
+    private static final int STAGE_DONE = 6;
+
+    // Capture order value of each piece type, as a victim and as an attacker
+    private static final int[] CAPTURE_VALUES = new int[GameState.NO_OF_PIECE_TYPE];
+
+    static {
+        CAPTURE_VALUES[GameState.POINT] = 1;
+        CAPTURE_VALUES[GameState.HOURGLASS] = 3;
+        CAPTURE_VALUES[GameState.PLUS] = 4;
+        CAPTURE_VALUES[GameState.TIME] = 4;
+        CAPTURE_VALUES[GameState.SUN] = 8;
+    }
+
+    private final GameState state;
+    private final int[][][] history;
+    private final int[] moves = new int[Move.MAX_MOVES];
+    private final int[] scores = new int[Move.MAX_MOVES];
+
+    private int stage;
+    private int index;
+    private int count;
+    private int tableMove;
+    private int killer1;
+    private int killer2;
+    private boolean capturesOnly;
+
+    /**
+     *
+     * Constructs a new {@code MovePicker} object for the specified {@code GameState}, which orders quiet moves by the specified history table.
+     *
+     * @param state   the {@code GameState} to pick moves of
+     * @param history the history scores, indexed by color index, piece type index and destination square index
+     * @author Chay Wen Ning
+     */
+    public MovePicker(GameState state, int[][][] history) {
+        this.state = state;
+        this.history = history;
+    }
+
+    /**
+     *
+     * Starts picking the moves of the current position of the {@code GameState}.
+     *
+     * @param tableMove the move of the {@code TranspositionTable}, {@code Move.NONE} if there is none
+     * @param killer1   the first killer move of the ply, {@code Move.NONE} if there is none
+     * @param killer2   the second killer move of the ply, {@code Move.NONE} if there is none
+     * @author Chay Wen Ning
+     */
+    public void init(int tableMove, int killer1, int killer2) {
+        this.tableMove = tableMove;
+        this.killer1 = killer1;
+        this.killer2 = killer2 != killer1 ? killer2 : Move.NONE;
+        capturesOnly = false;
+        stage = STAGE_TABLE_MOVE;
+        index = 0;
+        count = 0;
+    }
+
+    /**
+     *
+     * Starts picking the captures of the current position of the {@code GameState}, and no other moves.
+     *
+     * @author Chay Wen Ning
+     */
+    public void initCaptures() {
+        tableMove = Move.NONE;
+        killer1 = Move.NONE;
+        killer2 = Move.NONE;
+        capturesOnly = true;
+        stage = STAGE_GENERATE_CAPTURES;
+        index = 0;
+        count = 0;
+    }
+
+    /**
+     *
+     * Returns the next move to search, or {@code Move.NONE} once every move has been picked.
+     *
+     * @return the encoded next move
+     * @author Chay Wen Ning
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case STAGE_TABLE_MOVE:
+                    stage = STAGE_GENERATE_CAPTURES;
+                    if (state.isLegalMove(tableMove)) {
+                        return tableMove;
+                    }
+                    tableMove = Move.NONE;
+                    break;
+                case STAGE_GENERATE_CAPTURES:
+                    count = state.generateCaptures(moves);
+                    index = 0;
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = CAPTURE_VALUES[state.getPieceTypeAt(Move.getTo(moves[i]))] * 16
+                                - CAPTURE_VALUES[state.getPieceTypeAt(Move.getFrom(moves[i]))];
+                    }
+                    stage = STAGE_CAPTURES;
+                    break;
+                case STAGE_CAPTURES:
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move != tableMove) {
+                            return move;
+                        }
+                    }
+                    stage = capturesOnly ? STAGE_DONE : STAGE_KILLERS;
+                    index = 0;
+                    break;
+                case STAGE_KILLERS:
+                    int killer = index++ == 0 ? killer1 : killer2;
+                    if (index >= 2) {
+                        stage = STAGE_GENERATE_QUIETS;
+                    }
+                    if (killer != tableMove && isQuiet(killer) && state.isLegalMove(killer)) {
+                        return killer;
+                    }
+                    break;
+                case STAGE_GENERATE_QUIETS:
+                    count = state.generateQuietMoves(moves);
+                    index = 0;
+                    int color = state.getPlayerTurn();
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = history[color][state.getPieceTypeAt(Move.getFrom(moves[i]))][Move.getTo(moves[i])];
+                    }
+                    stage = STAGE_QUIETS;
+                    break;
+                case STAGE_QUIETS:
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move != tableMove && move != killer1 && move != killer2) {
+                            return move;
+                        }
+                    }
+                    stage = STAGE_DONE;
+                    break;
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns {@code true} if the specified move does not capture a piece in the current position.
+     *
+     * @param move the encoded move
+     * @return {@code true} if the move is quiet
+     * @author Chay Wen Ning
+     */
+    public boolean isQuiet(int move) {
+        return (state.getOccupiedMask() & (1L << Move.getTo(move))) == 0;
+    }
+
+    /**
+     *
+     * Returns the move of the highest score among the moves not picked yet, and moves it to the current index.
+     * A selection step is cheaper than a full sort, since most nodes are cut off after a few moves.
+     *
+     * @return the encoded best remaining move
+     * @author Chay Wen Ning
+     */
+    private int pickBest() {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        index++;
+        return move;
+    }
+
+    /**
+     *
+     * Returns a new history table, indexed by color index, piece type index and destination square index.
+     *
+     * @return the new history table
+     * @author Chay Wen Ning
+     */
+    public static int[][][] newHistory() {
+        return new int[2][GameState.NO_OF_PIECE_TYPE][ChessBoard.NO_OF_SQUARE];
+    }
+}
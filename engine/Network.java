@@ -0,0 +1,344 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.GameState;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code Network} class; Scores a {@code GameState} with a small neural network in the manner of NNUE, as an alternative to the {@code Evaluation}.
+ * <p>
+ * An input feature is a piece type, color, square and {@code Point} orientation, seen from the point of view of one player: the colors are
+ * relative to that player, and for the second player the board is rotated and the orientation of the {@code Point} pieces is reversed,
+ * as the piece-square tables of the {@code Evaluation} are. The first layer maps the features of the pieces on the board to an accumulator
+ * of {@code hiddenSize} values per player, which is the sum of the weight columns of the features plus the biases. A move only adds and
+ * removes the columns of the few pieces it changes, so an {@code Evaluator} keeps both accumulators up to date move by move.
+ * <p>
+ * The output layer clamps the accumulator of the player to move, then that of the other player, to between {@code 0} and {@code QA},
+ * and sums them times the output weights, which must be small enough for the sum to fit in an {@code int}. All weights are 16-bit integers: the first layer is scaled by {@code QA} and the output layer by {@code QB},
+ * so that the score is the output sum times {@code OUTPUT_SCALE / (QA * QB)}, from the point of view of the player to move.
+ * <p>
+ * A network file is little-endian: the magic number, the hidden size as an {@code int}, the {@code short} weight columns of the
+ * {@code NO_OF_FEATURES} features in the order of {@code featureIndex}, the {@code short} biases, the {@code short} output weights for the player
+ * to move then for the other player, and the output bias as an {@code int}. It is written by {@code write}, e.g. from weights trained on the
+ * records of a {@code TrainingDataGenerator}. A {@code Network} is read-only once loaded, so threads share it.
+ *
+ * @see engine.Evaluator
+ * @see engine.TrainingDataGenerator
+ * @author Chay Wen Ning
+ */
+public final class Network {
+    // Magic number of a network file, "TALANNUE"
+    static final long MAGIC = 0x5441_4C41_4E4E_5545L;
+
+    // Number of input features: relative color, piece type, Point orientation and square
+    public static final int NO_OF_FEATURES = 2 * GameState.NO_OF_PIECE_TYPE * 2 * ChessBoard.NO_OF_SQUARE;
+
+    // Quantisation scales of the first layer and of the output layer, and the score of an output of 1
+    public static final int QA = 255;
+    public static final int QB = 64;
+    public static final int OUTPUT_SCALE = 400;
+
+    // Largest number of hidden values per player
+    public static final int MAX_HIDDEN_SIZE = 4096;
+
+    private final int hiddenSize;
+    private final short[] featureWeights;
+    private final short[] biases;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    /**
+     *
+     * Constructs a new {@code Network} object with the specified weights.
+     *
+     * @param hiddenSize     the number of hidden values per player
+     * @param featureWeights the weight columns of the features, {@code hiddenSize} per feature
+     * @param biases         the biases of the first layer, {@code hiddenSize} of them
+     * @param outputWeights  the output weights of the player to move then of the other player, {@code 2 * hiddenSize} of them
+     * @param outputBias     the output bias
+     * @throws IllegalArgumentException if the hidden size or the length of an array is wrong
+     * @author Chay Wen Ning
+     */
+    public Network(int hiddenSize, short[] featureWeights, short[] biases, short[] outputWeights, int outputBias) {
+        if (hiddenSize <= 0 || hiddenSize > MAX_HIDDEN_SIZE || featureWeights.length != NO_OF_FEATURES * hiddenSize
+                || biases.length != hiddenSize || outputWeights.length != 2 * hiddenSize) {
+            throw new IllegalArgumentException("Wrong network size: " + hiddenSize);
+        }
+        if (!hasBoundedOutput(hiddenSize, outputWeights, outputBias)) {
+            throw new IllegalArgumentException("Output weights too large for hidden size " + hiddenSize);
+        }
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights.clone();
+        this.biases = biases.clone();
+        this.outputWeights = outputWeights.clone();
+        this.outputBias = outputBias;
+    }
+
+    /**
+     *
+     * Constructs a new {@code Network} object with the weights of the specified network file.
+     *
+     * @param file the network file
+     * @throws IOException if the file cannot be read, or is not a network file
+     * @author Chay Wen Ning
+     */
+    public Network(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < Long.BYTES + Integer.BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a network file: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole file
+            }
+        }
+        buffer.flip();
+        hiddenSize = buffer.getInt(Long.BYTES);
+        if (buffer.getLong(0) != MAGIC || hiddenSize <= 0 || hiddenSize > MAX_HIDDEN_SIZE
+                || buffer.limit() != fileSize(hiddenSize)) {
+            throw new IOException("Not a network file: " + file);
+        }
+        buffer.position(Long.BYTES + Integer.BYTES);
+        featureWeights = new short[NO_OF_FEATURES * hiddenSize];
+        biases = new short[hiddenSize];
+        outputWeights = new short[2 * hiddenSize];
+        buffer.asShortBuffer().get(featureWeights).get(biases).get(outputWeights);
+        outputBias = buffer.getInt(buffer.limit() - Integer.BYTES);
+        if (!hasBoundedOutput(hiddenSize, outputWeights, outputBias)) {
+            throw new IOException("Output weights too large for hidden size " + hiddenSize + ": " + file);
+        }
+    }
+
+    /**
+     *
+     * Returns {@code true} if the output sum of the specified output weights always fits in an {@code int}, so that it needs no wider arithmetic.
+     *
+     * @param hiddenSize    the number of hidden values per player
+     * @param outputWeights the output weights
+     * @param outputBias    the output bias
+     * @return {@code true} if the output sum cannot overflow
+     * @author Chay Wen Ning
+     */
+    private static boolean hasBoundedOutput(int hiddenSize, short[] outputWeights, int outputBias) {
+        long bound = Math.abs((long) outputBias);
+        for (short weight : outputWeights) {
+            bound += (long) QA * Math.abs(weight);
+        }
+        return bound <= Integer.MAX_VALUE;
+    }
+
+    /**
+     *
+     * Returns the size in bytes of a network file of the specified hidden size.
+     *
+     * @param hiddenSize the number of hidden values per player
+     * @return the size of the file in bytes
+     * @author Chay Wen Ning
+     */
+    private static int fileSize(int hiddenSize) {
+        return Long.BYTES + Integer.BYTES + Short.BYTES * (NO_OF_FEATURES + 3) * hiddenSize + Integer.BYTES;
+    }
+
+    /**
+     *
+     * Writes the weights of this {@code Network} to the specified network file.
+     *
+     * @param file the network file
+     * @throws IOException if the file cannot be written
+     * @author Chay Wen Ning
+     */
+    public void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize(hiddenSize)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC).putInt(hiddenSize);
+        buffer.asShortBuffer().put(featureWeights).put(biases).put(outputWeights);
+        buffer.putInt(buffer.capacity() - Integer.BYTES, outputBias);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the number of hidden values per player, i.e. the length of an accumulator.
+     *
+     * @return the hidden size
+     * @author Chay Wen Ning
+     */
+    public int getHiddenSize() {
+        return hiddenSize;
+    }
+
+    /**
+     *
+     * Returns the index of the input feature of a piece, seen from the point of view of the specified player.
+     *
+     * @param perspective the index of the player the piece is seen by
+     * @param color       the color index of the piece
+     * @param type        the piece type index of the piece
+     * @param flipped     the orientation of a {@code Point} piece, {@code true} if it moves down the board
+     * @param square      the square index of the piece
+     * @return the index of the feature
+     * @author Chay Wen Ning
+     */
+    public static int featureIndex(int perspective, int color, int type, boolean flipped, int square) {
+        int orientation = type == GameState.POINT && flipped != (perspective == 1) ? 1 : 0;
+        int relativeSquare = perspective == 0 ? square : ChessBoard.NO_OF_SQUARE - 1 - square;
+        return (((color ^ perspective) * GameState.NO_OF_PIECE_TYPE + type) * 2 + orientation) * ChessBoard.NO_OF_SQUARE + relativeSquare;
+    }
+
+    /**
+     *
+     * Computes the accumulator of the specified player from scratch, from every piece of the specified {@code GameState}.
+     *
+     * @param state       the {@code GameState} to score
+     * @param perspective the index of the player of the accumulator
+     * @param accumulator the accumulator to compute, {@code hiddenSize} values
+     * @author Chay Wen Ning
+     */
+    public void refresh(GameState state, int perspective, short[] accumulator) {
+        System.arraycopy(biases, 0, accumulator, 0, hiddenSize);
+        long occupied = state.getOccupiedMask();
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int feature = featureIndex(perspective, state.getColorAt(square), state.getPieceTypeAt(square),
+                    (state.getFlippedPointMask() & (1L << square)) != 0, square);
+            int column = feature * hiddenSize;
+            for (int i = 0; i < hiddenSize; i++) {
+                accumulator[i] += featureWeights[column + i];
+            }
+        }
+    }
+
+    /**
+     *
+     * Computes an accumulator from another by adding and removing the weight columns of the specified features.
+     * The source and target may be the same array.
+     *
+     * @param source       the accumulator before the changes
+     * @param target       the accumulator to write, {@code hiddenSize} values
+     * @param added        the indices of the features added
+     * @param addedCount   the number of features added
+     * @param removed      the indices of the features removed
+     * @param removedCount the number of features removed
+     * @author Chay Wen Ning
+     */
+    public void update(short[] source, short[] target, int[] added, int addedCount, int[] removed, int removedCount) {
+        if (addedCount == 1 && removedCount == 1) {
+            // a quiet move, in a single pass
+            int addedColumn = added[0] * hiddenSize;
+            int removedColumn = removed[0] * hiddenSize;
+            for (int i = 0; i < hiddenSize; i++) {
+                target[i] = (short) (source[i] + featureWeights[addedColumn + i] - featureWeights[removedColumn + i]);
+            }
+            return;
+        }
+        if (source != target) {
+            System.arraycopy(source, 0, target, 0, hiddenSize);
+        }
+        for (int j = 0; j < addedCount; j++) {
+            int column = added[j] * hiddenSize;
+            for (int i = 0; i < hiddenSize; i++) {
+                target[i] += featureWeights[column + i];
+            }
+        }
+        for (int j = 0; j < removedCount; j++) {
+            int column = removed[j] * hiddenSize;
+            for (int i = 0; i < hiddenSize; i++) {
+                target[i] -= featureWeights[column + i];
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the score of a position from its accumulators, from the point of view of the player to move.
+     *
+     * @param own   the accumulator of the player to move
+     * @param other the accumulator of the other player
+     * @return the score of the position for the player to move
+     * @author Chay Wen Ning
+     */
+    public int evaluate(short[] own, short[] other) {
+        int sum = 0;
+        for (int i = 0; i < hiddenSize; i++) {
+            sum += Math.min(Math.max(own[i], 0), QA) * outputWeights[i];
+        }
+        for (int i = 0; i < hiddenSize; i++) {
+            sum += Math.min(Math.max(other[i], 0), QA) * outputWeights[hiddenSize + i];
+        }
+        return scaleOutput(sum);
+    }
+
+    /**
+     *
+     * Returns the score of an output sum, i.e. the sum of the clamped accumulators times the output weights, without the output bias.
+     *
+     * @param sum the output sum
+     * @return the score for the player to move
+     * @author Chay Wen Ning
+     */
+    int scaleOutput(int sum) {
+        return (int) ((long) (sum + outputBias) * OUTPUT_SCALE / (QA * QB));
+    }
+
+    /**
+     *
+     * Returns the weight columns of the features, {@code hiddenSize} per feature. The array is not copied, and must not be changed.
+     *
+     * @return the weight columns of the features
+     * @author Chay Wen Ning
+     */
+    short[] getFeatureWeights() {
+        return featureWeights;
+    }
+
+    /**
+     *
+     * Returns the biases of the first layer. The array is not copied, and must not be changed.
+     *
+     * @return the biases
+     * @author Chay Wen Ning
+     */
+    short[] getBiases() {
+        return biases;
+    }
+
+    /**
+     *
+     * Returns the output weights of the player to move then of the other player. The array is not copied, and must not be changed.
+     *
+     * @return the output weights
+     * @author Chay Wen Ning
+     */
+    short[] getOutputWeights() {
+        return outputWeights;
+    }
+
+    /**
+     *
+     * Returns the score of the specified {@code GameState} from the point of view of the player to move, computed from scratch.
+     *
+     * @param state the {@code GameState} to score
+     * @return the score of the position for the player to move
+     * @author Chay Wen Ning
+     */
+    public int evaluate(GameState state) {
+        short[][] accumulators = new short[2][hiddenSize];
+        refresh(state, 0, accumulators[0]);
+        refresh(state, 1, accumulators[1]);
+        int turn = state.getPlayerTurn();
+        return evaluate(accumulators[turn], accumulators[turn ^ 1]);
+    }
+}
@@ -0,0 +1,160 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code OpeningBook} class; Looks up the moves of the early positions of a game in a book file built by {@code OpeningBookBuilder},
+ * so that the computer player answers them at once instead of searching.
+ * <p>
+ * A book file is a header followed by fixed-size records of a position key, a move and a weight, sorted by key then by move.
+ * The {@code OpeningBook} maps the file into memory with a {@code MappedByteBuffer} and binary searches the records in place,
+ * so that a probe reads a few pages of the file and allocates nothing, and every game process on a host shares the same pages of the OS page cache.
+ * <p>
+ * A position has as many records as book moves, and a probe chooses one of them at random, in proportion to its weight.
+ *
+ * @see engine.OpeningBookBuilder
+ * @see chessgame.GameState#getKey()
+ * @author Chay Wen Ning
+ */
+public class OpeningBook {
+    // Magic number of a book file, "TALABOOK"
+    static final long MAGIC = 0x5441_4C41_424F_4F4BL;
+
+    // Bytes of the header (magic number and number of records) and of a record (key, move and weight)
+    static final int HEADER_SIZE = 2 * Long.BYTES;
+    static final int RECORD_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    private final ByteBuffer records;
+    private final int count;
+
+    /**
+     *
+     * Constructs a new {@code OpeningBook} object with the specified book file mapped into memory.
+     *
+     * @param file the book file
+     * @throws IOException if the file cannot be mapped, or is not a book file
+     * @author Chay Wen Ning
+     */
+    public OpeningBook(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a book file: " + file);
+            }
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        long recordCount = records.getLong(Long.BYTES);
+        if (records.getLong(0) != MAGIC || recordCount != (records.capacity() - HEADER_SIZE) / RECORD_SIZE
+                || (records.capacity() - HEADER_SIZE) % RECORD_SIZE != 0) {
+            throw new IOException("Not a book file: " + file);
+        }
+        count = (int) recordCount;
+    }
+
+    /**
+     *
+     * Returns the number of records of the book, i.e. of book moves over all positions.
+     *
+     * @return the number of records
+     * @author Chay Wen Ning
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     *
+     * Writes the book moves of the specified {@code GameState} and their weights into the specified buffers, and returns the number of moves written.
+     * Moves that are not legal in the position, e.g. of another position of the same key, are skipped.
+     *
+     * @param state   the {@code GameState} to look up
+     * @param moves   the buffer to write the encoded moves into, of at least {@code Move.MAX_MOVES} moves
+     * @param weights the buffer to write the weights into, of at least {@code Move.MAX_MOVES} weights
+     * @return the number of moves written into the buffers
+     * @author Chay Wen Ning
+     */
+    public int getMoves(GameState state, int[] moves, int[] weights) {
+        long key = state.getKey();
+        int written = 0;
+        for (int i = findFirst(key); i < count && keyAt(i) == key && written < Move.MAX_MOVES; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            int move = records.getInt(offset + Long.BYTES);
+            if (state.isLegalMove(move)) {
+                moves[written] = move;
+                weights[written] = records.getInt(offset + Long.BYTES + Integer.BYTES);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     *
+     * Returns a book move of the specified {@code GameState}, chosen at random in proportion to its weight,
+     * or {@code Move.NONE} if the position is not in the book. This method can be called from any thread.
+     *
+     * @param state the {@code GameState} to look up
+     * @return the encoded book move
+     * @author Chay Wen Ning
+     */
+    public int probe(GameState state) {
+        long key = state.getKey();
+        int first = findFirst(key);
+        long totalWeight = 0;
+        int last = first;
+        for (; last < count && keyAt(last) == key; last++) {
+            totalWeight += weightAt(last);
+        }
+        if (totalWeight <= 0) {
+            return Move.NONE;
+        }
+
+        long choice = ThreadLocalRandom.current().nextLong(totalWeight);
+        for (int i = first; i < last; i++) {
+            choice -= weightAt(i);
+            if (choice < 0) {
+                int move = records.getInt(HEADER_SIZE + i * RECORD_SIZE + Long.BYTES);
+                return state.isLegalMove(move) ? move : Move.NONE;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     *
+     * Returns the index of the first record of the specified key, or of the first record of a greater key if there is none.
+     *
+     * @param key the position key
+     * @return the index of the first record not less than the key
+     * @author Chay Wen Ning
+     */
+    private int findFirst(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return records.getLong(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    private int weightAt(int index) {
+        return records.getInt(HEADER_SIZE + index * RECORD_SIZE + Long.BYTES + Integer.BYTES);
+    }
+}
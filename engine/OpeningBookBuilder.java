@@ -0,0 +1,334 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code OpeningBookBuilder} class; Builds a book file for an {@code OpeningBook} from archived games and from self-play games of the {@code Engine}.
+ * <p>
+ * Every move of the first plies of a game adds points to the weight of the move in its position: {@code WIN_POINTS} if the player who played it
+ * went on to win, {@code DRAW_POINTS} if the game was drawn, and none if they lost. Moves that never won or drew are left out of the book.
+ * <p>
+ * An archived games file has a game per line, as moves in the notation of {@code Move.toString} separated by spaces, from the starting position.
+ * A line may end with the result of the game, {@code 1-0} if the first player won, {@code 0-1} if the second player won, or {@code 1/2-1/2};
+ * without a result, a game that ends with the capture of a {@code Sun} piece is won by the capturing player and any other game is drawn.
+ * Lines starting with {@code #} are ignored.
+ * <p>
+ * A self-play game plays a random move instead of the move of the {@code Engine} at some of the first plies, so that the games differ;
+ * only the moves of the {@code Engine} are added to the book. Self-play games run in parallel, one {@code Engine} per thread,
+ * which is reused by the games of the thread with its transposition table cleared.
+ * <p>
+ * Usage: {@code java engine.OpeningBookBuilder <bookFile> [-games gamesFile]... [-selfplay n] [-plies n] [-movetime ms] [-threads n]}.
+ *
+ * @see engine.OpeningBook
+ * @see chessgame.Move#toString(int)
+ * @author Chay Wen Ning
+ */
+public class OpeningBookBuilder {
+    // Default number of plies of a game added to the book
+    public static final int DEFAULT_PLIES = 16;
+
+    // Points added to the weight of a move for the result of the game, for the player who played it
+    private static final int WIN_POINTS = 2;
+    private static final int DRAW_POINTS = 1;
+
+    // Number of plies after which a self-play game is a draw
+    private static final int MAX_GAME_PLIES = 400;
+
+    // Chance of a random move at a ply of a self-play game added to the book
+    private static final double RANDOM_MOVE_RATE = 0.2;
+
+    private final int plies;
+    private final Map<Long, Map<Integer, Integer>> weights = new HashMap<>();
+    // the Engine of every self-play thread, whose transposition table is allocated once and cleared per game
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+    private int games;
+
+    /**
+     *
+     * Constructs a new {@code OpeningBookBuilder} object that adds the specified number of first plies of every game to the book.
+     *
+     * @param plies the number of plies of a game added to the book
+     * @author Chay Wen Ning
+     */
+    public OpeningBookBuilder(int plies) {
+        this.plies = plies;
+    }
+
+    /**
+     *
+     * Returns the number of games added to the book.
+     *
+     * @return the number of games
+     * @author Chay Wen Ning
+     */
+    public synchronized int getGames() {
+        return games;
+    }
+
+    /**
+     *
+     * Returns the number of positions of the book.
+     *
+     * @return the number of positions
+     * @author Chay Wen Ning
+     */
+    public synchronized int getPositions() {
+        return weights.size();
+    }
+
+    /**
+     *
+     * Adds every game of the specified archived games file to the book, and returns the number of games added.
+     *
+     * @param file the archived games file
+     * @return the number of games added
+     * @throws IOException if the file cannot be read, or has an illegal move or an unknown result
+     * @author Chay Wen Ning
+     */
+    public int addGames(File file) throws IOException {
+        int added = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] tokens = line.split("\\s+");
+                GameState state = new GameState();
+                List<long[]> bookMoves = new ArrayList<>();
+                int winner = -1;
+                int ply = 0;
+                for (int i = 0; i < tokens.length; i++) {
+                    int move = Move.parse(tokens[i]);
+                    if (move != Move.NONE && state.isLegalMove(move)) {
+                        if (ply < plies) {
+                            bookMoves.add(new long[] { state.getKey(), move, state.getPlayerTurn() });
+                        }
+                        state.makeMove(move);
+                        ply++;
+                        if (ply >= plies) {
+                            // drop the undo stack, so that a game of any length fits
+                            state = new GameState(state);
+                        }
+                    } else if (i == tokens.length - 1 && parseResult(tokens[i]) != Integer.MIN_VALUE) {
+                        winner = parseResult(tokens[i]);
+                    } else {
+                        throw new IOException(file + ":" + lineNumber + ": illegal move or unknown result: " + tokens[i]);
+                    }
+                }
+                if (state.isGameOver()) {
+                    winner = state.getWinner();
+                }
+                addGame(bookMoves, winner);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     *
+     * Plays the specified number of self-play games of the {@code Engine} in parallel, and adds them to the book.
+     *
+     * @param count     the number of games to play
+     * @param moveTime  the time limit of a move in milliseconds
+     * @param threads   the number of games played at once
+     * @throws InterruptedException if the calling thread is interrupted while the games are played
+     * @author Chay Wen Ning
+     */
+    public void selfPlay(int count, long moveTime, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                results.add(pool.submit(() -> playGame(moveTime)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Self-play game failed", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     *
+     * Plays a self-play game of the {@code Engine} and adds it to the book.
+     *
+     * @param moveTime the time limit of a move in milliseconds
+     * @author Chay Wen Ning
+     */
+    private void playGame(long moveTime) {
+        Engine engine = engines.get();
+        engine.clearHash();
+        engine.setTimeLimit(moveTime);
+        GameState state = new GameState();
+        int[] moves = new int[Move.MAX_MOVES];
+        List<long[]> bookMoves = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (!state.isGameOver() && state.getPly() < MAX_GAME_PLIES) {
+            int move;
+            if (state.getPly() < plies && random.nextDouble() < RANDOM_MOVE_RATE) {
+                int count = state.generateMoves(moves);
+                if (count == 0) {
+                    break;
+                }
+                move = moves[random.nextInt(count)];
+            } else {
+                move = engine.findBestMove(state);
+                if (move == Move.NONE) {
+                    break;
+                }
+                if (state.getPly() < plies) {
+                    bookMoves.add(new long[] { state.getKey(), move, state.getPlayerTurn() });
+                }
+            }
+            state.makeMove(move);
+        }
+        addGame(bookMoves, state.getWinner());
+    }
+
+    /**
+     *
+     * Adds the specified moves of a game to the book, with the points of the result of the game.
+     *
+     * @param bookMoves the moves of the game to add, as the position key, the encoded move and the index of the player who played it
+     * @param winner    the index of the winner, {@code -1} for a draw
+     * @author Chay Wen Ning
+     */
+    private synchronized void addGame(List<long[]> bookMoves, int winner) {
+        for (long[] bookMove : bookMoves) {
+            int points = winner < 0 ? DRAW_POINTS : winner == bookMove[2] ? WIN_POINTS : 0;
+            weights.computeIfAbsent(bookMove[0], key -> new HashMap<>()).merge((int) bookMove[1], points, Integer::sum);
+        }
+        games++;
+    }
+
+    /**
+     *
+     * Writes the book to the specified book file, sorted by position key then by move, and returns the number of records written.
+     *
+     * @param file the book file
+     * @return the number of records written
+     * @throws IOException if the file cannot be written
+     * @author Chay Wen Ning
+     */
+    public synchronized int write(File file) throws IOException {
+        TreeMap<Long, Map<Integer, Integer>> sorted = new TreeMap<>(weights);
+        int count = 0;
+        for (Map<Integer, Integer> moveWeights : sorted.values()) {
+            moveWeights.values().removeIf(weight -> weight <= 0);
+            count += moveWeights.size();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + count * OpeningBook.RECORD_SIZE);
+        buffer.putLong(OpeningBook.MAGIC).putLong(count);
+        for (Map.Entry<Long, Map<Integer, Integer>> position : sorted.entrySet()) {
+            for (Map.Entry<Integer, Integer> moveWeight : new TreeMap<>(position.getValue()).entrySet()) {
+                buffer.putLong(position.getKey()).putInt(moveWeight.getKey()).putInt(moveWeight.getValue());
+            }
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Returns the index of the winner of the specified result, {@code -1} for a draw, or {@code Integer.MIN_VALUE} if it is not a result.
+     *
+     * @param result the result, {@code 1-0}, {@code 0-1} or {@code 1/2-1/2}
+     * @return the index of the winner
+     * @author Chay Wen Ning
+     */
+    private static int parseResult(String result) {
+        switch (result) {
+            case "1-0":
+                return 0;
+            case "0-1":
+                return 1;
+            case "1/2-1/2":
+                return -1;
+            default:
+                return Integer.MIN_VALUE;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java engine.OpeningBookBuilder <bookFile> [-games gamesFile]... [-selfplay n] [-plies n] [-movetime ms] [-threads n]");
+            System.exit(1);
+        }
+
+        List<File> gameFiles = new ArrayList<>();
+        int selfPlayGames = 0;
+        int plies = DEFAULT_PLIES;
+        long moveTime = Engine.DEFAULT_TIME_LIMIT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-games":
+                    gameFiles.add(new File(args[i + 1]));
+                    break;
+                case "-selfplay":
+                    selfPlayGames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-plies":
+                    plies = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-movetime":
+                    moveTime = Long.parseLong(args[i + 1]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        for (File gameFile : gameFiles) {
+            System.out.println(gameFile + ": " + builder.addGames(gameFile) + " games");
+        }
+        if (selfPlayGames > 0) {
+            long startTime = System.nanoTime();
+            builder.selfPlay(selfPlayGames, moveTime, threads);
+            System.out.println("Self-play: " + selfPlayGames + " games in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        }
+        int records = builder.write(new File(args[0]));
+        System.out.println("Games: " + builder.getGames() + ", positions: " + builder.getPositions() + ", records: " + records);
+    }
+}
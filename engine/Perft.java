@@ -0,0 +1,194 @@
+package engine;
+
+import chessgame.ChessGame;
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code Perft} class; Counts the leaf nodes of the game tree to a given depth, to verify the move generation and measure its speed.
+ * Every move is played with {@code GameState.makeMove}, so the counts cover the {@code Point} orientation reversal,
+ * the {@code Time} and {@code Plus} switch and the turn switch of a real game.
+ * A position where a {@code Sun} piece has been captured has no moves, so it is a leaf only at depth {@code 0}.
+ * <p>
+ * Usage: {@code java engine.Perft <depth> [gameFile] [-divide] [-threads n]}.
+ * The game file is a game saved by {@code ChessGame.writeGameDataToFile}; without one, the count starts from the initial position.
+ * {@code -divide} prints the count below every root move, in the notation of {@code Move.toString}.
+ * {@code -threads} splits the root moves over a {@code ForkJoinPool} of the given number of threads.
+ *
+ * @see chessgame.GameState
+ * @see chessgame.ChessGame#writeGameDataToFile(File)
+ * @author Chay Wen Ning
+ */
+public class Perft {
+    private final GameState state;
+    private final int[][] moves;
+
+    /**
+     *
+     * Constructs a new {@code Perft} object that counts the leaf nodes of the specified {@code GameState}, up to the specified depth.
+     * The {@code GameState} is changed during a count, and restored once the count returns.
+     *
+     * @param state    the {@code GameState} to count
+     * @param maxDepth the maximum depth to count
+     * @author Chay Wen Ning
+     */
+    public Perft(GameState state, int maxDepth) {
+        this.state = state;
+        this.moves = new int[Math.max(maxDepth, 1)][Move.MAX_MOVES];
+    }
+
+    /**
+     *
+     * Returns the number of leaf nodes of the {@code GameState} at the specified depth.
+     *
+     * @param depth the depth to count in plies
+     * @return the number of leaf nodes
+     * @author Chay Wen Ning
+     */
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] plyMoves = moves[ply];
+        int count = state.generateMoves(plyMoves);
+        if (depth == 1) {
+            return count;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            state.makeMove(plyMoves[i]);
+            nodes += perft(depth - 1, ply + 1);
+            state.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     *
+     * Returns the number of leaf nodes below each move of the {@code GameState} at the specified depth,
+     * splitting the moves over the specified {@code ForkJoinPool}.
+     *
+     * @param rootMoves the encoded moves of the {@code GameState}
+     * @param count     the number of moves
+     * @param depth     the depth to count in plies, at least {@code 1}
+     * @param pool      the {@code ForkJoinPool} to count in, {@code null} to count on the calling thread
+     * @return the number of leaf nodes below each move
+     * @author Chay Wen Ning
+     */
+    public long[] divide(int[] rootMoves, int count, int depth, ForkJoinPool pool) {
+        long[] nodes = new long[count];
+        if (pool == null) {
+            for (int i = 0; i < count; i++) {
+                state.makeMove(rootMoves[i]);
+                nodes[i] = perft(depth - 1, 0);
+                state.unmakeMove();
+            }
+            return nodes;
+        }
+
+        RootMoveTask[] tasks = new RootMoveTask[count];
+        for (int i = 0; i < count; i++) {
+            tasks[i] = new RootMoveTask(state, rootMoves[i], depth);
+            pool.execute(tasks[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            nodes[i] = tasks[i].join();
+        }
+        return nodes;
+    }
+
+    /**
+     * The {@code RootMoveTask} class; Counts the leaf nodes below one root move on its own copy of the {@code GameState}.
+     */
+    private static class RootMoveTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final GameState state;
+        private final int move;
+        private final int depth;
+
+        RootMoveTask(GameState root, int move, int depth) {
+            this.state = new GameState(root);
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            state.makeMove(move);
+            return new Perft(state, depth - 1).perft(depth - 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java engine.Perft <depth> [gameFile] [-divide] [-threads n]");
+            System.exit(1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        File gameFile = null;
+        boolean divide = false;
+        int threads = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-divide")) {
+                divide = true;
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                gameFile = new File(args[i]);
+            }
+        }
+
+        GameState state;
+        if (gameFile != null) {
+            ChessGame game = new ChessGame();
+            if (!game.loadGameDataFromFile(gameFile)) {
+                System.err.println("Cannot load game file: " + gameFile);
+                System.exit(1);
+            }
+            state = new GameState(game);
+        } else {
+            state = new GameState();
+        }
+
+        long startTime = System.nanoTime();
+        long nodes;
+        if (depth == 0) {
+            nodes = 1;
+        } else {
+            int[] rootMoves = new int[Move.MAX_MOVES];
+            int count = state.generateMoves(rootMoves);
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            long[] moveNodes = new Perft(state, depth).divide(rootMoves, count, depth, pool);
+            if (pool != null) {
+                pool.shutdown();
+            }
+
+            nodes = 0;
+            for (int i = 0; i < count; i++) {
+                nodes += moveNodes[i];
+                if (divide) {
+                    System.out.println(Move.toString(rootMoves[i]) + ": " + moveNodes[i]);
+                }
+            }
+        }
+        long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+        if (divide) {
+            System.out.println();
+        }
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Time: " + elapsed + " ms");
+        System.out.println("NPS: " + nodes * 1000 / elapsed);
+    }
+}
@@ -0,0 +1,100 @@
+package engine;
+
+import chessgame.Move;
+
+/**
+ * The {@code PrincipalVariation} class; A candidate move of an analysed position, with its score and the line of best play that follows it,
+ * as found by an iteration of a {@code Search}.
+ * <p>
+ * The moves are encoded by {@code Move} from the first player's point of view, starting with the candidate move.
+ * The line is read from the {@code TranspositionTable} once the iteration is completed, so it may be shorter than the depth of the iteration.
+ *
+ * @see engine.Search#getPrincipalVariations()
+ * @see engine.AnalysisListener
+ * @author Chay Wen Ning
+ */
+public final class PrincipalVariation {
+    private final int score;
+    private final int depth;
+    private final int[] moves;
+
+    /**
+     *
+     * Constructs a new {@code PrincipalVariation} object of the specified score, depth and moves.
+     *
+     * @param score the score of the candidate move, from the point of view of the player to move
+     * @param depth the depth of the iteration that found it in plies
+     * @param moves the encoded moves of the line, starting with the candidate move
+     * @author Chay Wen Ning
+     */
+    public PrincipalVariation(int score, int depth, int[] moves) {
+        this.score = score;
+        this.depth = depth;
+        this.moves = moves.clone();
+    }
+
+    /**
+     *
+     * Returns the candidate move, i.e. the first move of the line.
+     *
+     * @return the encoded candidate move
+     * @author Chay Wen Ning
+     */
+    public int getMove() {
+        return moves[0];
+    }
+
+    /**
+     *
+     * Returns the score of the candidate move from the point of view of the player to move.
+     * A score of at least {@code Search.MIN_WIN_SCORE} is a forced capture of the opponent's {@code Sun} piece {@code WIN_SCORE - score} plies away.
+     *
+     * @return the score of the candidate move
+     * @author Chay Wen Ning
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     *
+     * Returns the depth of the iteration that found the line in plies.
+     *
+     * @return the depth in plies
+     * @author Chay Wen Ning
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     *
+     * Returns the moves of the line, starting with the candidate move.
+     *
+     * @return a copy of the encoded moves of the line
+     * @author Chay Wen Ning
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     *
+     * Returns the line as its moves in the notation of {@code Move.toString}, separated by spaces.
+     *
+     * @return the moves of the line
+     * @see chessgame.Move#toString(int)
+     * @author Chay Wen Ning
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        for (int move : moves) {
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(Move.toString(move));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,379 @@
+package engine;
+
+import chessgame.ChessGame;
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * The {@code ProofNumberSolver} class; Proves or disproves that the player to move can force the capture of the opponent's {@code Sun} piece within a number of plies.
+ * It runs a depth-first proof-number (df-pn) search: an OR node, with the attacker to move, is proven if any child is proven,
+ * and an AND node, with the defender to move, is proven if every child is proven. The search always expands the most proving node,
+ * i.e. the child with the fewest nodes left to prove (at an OR node) or to disprove (at an AND node), within thresholds that keep it depth-first.
+ * <p>
+ * Every ply is played with {@code GameState.makeMove}, so the {@code Point} reversals, the turn switch and the {@code Time} and {@code Plus} switch
+ * happen exactly as in a {@code ChessGame}. A capture of the {@code Sun} piece counts as a ply; a line where the defender captures the attacker's {@code Sun} piece first is disproven,
+ * and so is a line that reaches a position where the player to move has no moves, which is a draw.
+ * <p>
+ * The proof and disproof numbers are kept in a hash table of the solver, indexed by the position key and the number of plies left,
+ * so that a position reached with a different number of plies left is a different node.
+ * Since the number of plies left decreases at every ply, the search graph has no cycles.
+ * <p>
+ * Usage: {@code java engine.ProofNumberSolver <plies> [gameFile] [nodeLimit]}.
+ *
+ * @see chessgame.GameState
+ * @see engine.Search
+ * @author Chay Wen Ning
+ */
+public class ProofNumberSolver {
+    public static final int DEFAULT_SIZE_MB = 64;
+
+    // Results of a solve
+    public static final int PROVEN = 1;
+    public static final int DISPROVEN = 0;
+    public static final int UNKNOWN = -1;
+
+    // Proof or disproof number of a node that cannot be proven or disproven
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    // Bytes of an entry of the hash table: key, proof number and disproof number
+    private static final int BYTES_PER_ENTRY = Long.BYTES + 2 * Integer.BYTES;
+
+    // Keys mixed into the position key for every number of plies left
+    private static final long[] PLIES_KEYS = new long[GameState.MAX_PLY];
+
+    static {
+        long seed = 0x5052_4F4F_464E_554DL;
+        for (int i = 0; i < PLIES_KEYS.length; i++) {
+            seed += 0x9E37_79B9_7F4A_7C15L;
+            long z = (seed ^ (seed >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+            PLIES_KEYS[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final long[] keys;
+    private final int[] proofNumbers;
+    private final int[] disproofNumbers;
+    private final int indexMask;
+
+    private GameState state;
+    private int attacker;
+    private int[][] moves;
+    private int[][] childProofNumbers;
+    private int[][] childDisproofNumbers;
+    private long nodes;
+    private long nodeLimit;
+    private int bestMove;
+
+    /**
+     *
+     * Constructs a new {@code ProofNumberSolver} object with a hash table of the default size.
+     *
+     * @author Chay Wen Ning
+     */
+    public ProofNumberSolver() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     *
+     * Constructs a new {@code ProofNumberSolver} object with a hash table of at most the specified size in megabytes.
+     *
+     * @param sizeMb the size of the hash table in megabytes
+     * @throws IllegalArgumentException if the size is not positive
+     * @author Chay Wen Ning
+     */
+    public ProofNumberSolver(int sizeMb) {
+        if (sizeMb <= 0) {
+            throw new IllegalArgumentException("Hash table size must be positive: " + sizeMb);
+        }
+        int entries = (int) Math.min(Long.highestOneBit((long) sizeMb * 1024 * 1024 / BYTES_PER_ENTRY), 1 << 30);
+        keys = new long[entries];
+        proofNumbers = new int[entries];
+        disproofNumbers = new int[entries];
+        indexMask = entries - 1;
+    }
+
+    /**
+     *
+     * Returns the number of nodes visited by the last solve.
+     *
+     * @return the number of nodes visited
+     * @author Chay Wen Ning
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     *
+     * Returns the first move of the proof found by the last solve, {@code Move.NONE} if it did not prove the capture.
+     *
+     * @return the encoded first move of the proof
+     * @author Chay Wen Ning
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     *
+     * Solves the specified {@code GameState} without a node limit.
+     *
+     * @param state    the {@code GameState} to solve
+     * @param maxPlies the maximum number of plies, including the capture of the {@code Sun} piece
+     * @return {@code PROVEN} or {@code DISPROVEN}
+     * @see #solve(GameState, int, long)
+     * @author Chay Wen Ning
+     */
+    public int solve(GameState state, int maxPlies) {
+        return solve(state, maxPlies, 0);
+    }
+
+    /**
+     *
+     * Returns {@code PROVEN} if the player to move of the specified {@code GameState} can force the capture of the opponent's {@code Sun} piece
+     * within the specified number of plies, {@code DISPROVEN} if they cannot, or {@code UNKNOWN} if the node limit is reached first.
+     * The specified {@code GameState} is not changed. The hash table is cleared before every solve.
+     *
+     * @param state     the {@code GameState} to solve
+     * @param maxPlies  the maximum number of plies, including the capture of the {@code Sun} piece
+     * @param nodeLimit the node limit, {@code 0} for no limit
+     * @return the result of the solve
+     * @author Chay Wen Ning
+     */
+    public int solve(GameState state, int maxPlies, long nodeLimit) {
+        if (maxPlies < 0 || maxPlies >= GameState.MAX_PLY) {
+            throw new IllegalArgumentException("Number of plies out of range: " + maxPlies);
+        }
+        this.state = new GameState(state);
+        this.attacker = state.getPlayerTurn();
+        this.moves = new int[maxPlies + 1][Move.MAX_MOVES];
+        this.childProofNumbers = new int[maxPlies + 1][Move.MAX_MOVES];
+        this.childDisproofNumbers = new int[maxPlies + 1][Move.MAX_MOVES];
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        this.bestMove = Move.NONE;
+        Arrays.fill(keys, 0L);
+
+        int index = multipleIterativeDeepening(maxPlies, INFINITY, INFINITY);
+        int proofNumber = proofNumbers[index];
+        int disproofNumber = disproofNumbers[index];
+        if (proofNumber == 0) {
+            bestMove = findProvenMove(maxPlies);
+            return PROVEN;
+        } else if (disproofNumber == 0) {
+            return DISPROVEN;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     *
+     * Searches the current node until its proof number reaches the proof threshold or its disproof number reaches the disproof threshold,
+     * and returns the index of the node in the hash table.
+     *
+     * @param plies              the number of plies left
+     * @param proofThreshold     the proof number threshold
+     * @param disproofThreshold  the disproof number threshold
+     * @return the index of the node in the hash table
+     * @author Chay Wen Ning
+     */
+    private int multipleIterativeDeepening(int plies, int proofThreshold, int disproofThreshold) {
+        nodes++;
+        long key = state.getKey() ^ PLIES_KEYS[plies];
+        int index = (int) (key ^ (key >>> 32)) & indexMask;
+
+        if (evaluateTerminal(index, key, plies)) {
+            return index;
+        }
+
+        boolean orNode = state.getPlayerTurn() == attacker;
+        int[] plyMoves = moves[plies];
+        int[] proofs = childProofNumbers[plies];
+        int[] disproofs = childDisproofNumbers[plies];
+        int count = state.generateMoves(plyMoves);
+        for (int i = 0; i < count; i++) {
+            // children share table slots, so the numbers are read once and then kept here, where no other node can overwrite them
+            state.makeMove(plyMoves[i]);
+            int childIndex = probe(state.getKey() ^ PLIES_KEYS[plies - 1]);
+            state.unmakeMove();
+            proofs[i] = childIndex >= 0 ? proofNumbers[childIndex] : 1;
+            disproofs[i] = childIndex >= 0 ? disproofNumbers[childIndex] : 1;
+        }
+
+        while (true) {
+            // proof and disproof numbers of the node from its children
+            int proofNumber = orNode ? INFINITY : 0;
+            int disproofNumber = orNode ? 0 : INFINITY;
+            int best = -1;
+            int bestValue = INFINITY;
+            int secondValue = INFINITY;
+            for (int i = 0; i < count; i++) {
+                int childProof = proofs[i];
+                int childDisproof = disproofs[i];
+                int value = orNode ? childProof : childDisproof;
+                if (orNode) {
+                    proofNumber = Math.min(proofNumber, childProof);
+                    disproofNumber = add(disproofNumber, childDisproof);
+                } else {
+                    proofNumber = add(proofNumber, childProof);
+                    disproofNumber = Math.min(disproofNumber, childDisproof);
+                }
+                if (value < bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = i;
+                } else if (value < secondValue) {
+                    secondValue = value;
+                }
+            }
+            if (count == 0) {
+                // no moves, while the game is not over, is a draw, so the Sun piece is never captured
+                proofNumber = INFINITY;
+                disproofNumber = 0;
+            }
+
+            if (proofNumber >= proofThreshold || disproofNumber >= disproofThreshold || nodes >= nodeLimit) {
+                return store(index, key, proofNumber, disproofNumber);
+            }
+
+            int childProof = proofs[best];
+            int childDisproof = disproofs[best];
+            int childProofThreshold;
+            int childDisproofThreshold;
+            if (orNode) {
+                childProofThreshold = Math.min(proofThreshold, add(secondValue, 1));
+                childDisproofThreshold = add(disproofThreshold - disproofNumber, childDisproof);
+            } else {
+                childProofThreshold = add(proofThreshold - proofNumber, childProof);
+                childDisproofThreshold = Math.min(disproofThreshold, add(secondValue, 1));
+            }
+
+            state.makeMove(plyMoves[best]);
+            int childIndex = multipleIterativeDeepening(plies - 1, childProofThreshold, childDisproofThreshold);
+            state.unmakeMove();
+            proofs[best] = proofNumbers[childIndex];
+            disproofs[best] = disproofNumbers[childIndex];
+        }
+    }
+
+    /**
+     *
+     * Stores the proof and disproof numbers of the current node in the hash table if it is decided without searching its children,
+     * and returns {@code true} if it is.
+     *
+     * @param index the index of the node in the hash table
+     * @param key   the key of the node
+     * @param plies the number of plies left
+     * @return {@code true} if the node is decided
+     * @author Chay Wen Ning
+     */
+    private boolean evaluateTerminal(int index, long key, int plies) {
+        int defender = attacker ^ 1;
+
+        boolean proven;
+        if (state.isGameOver()) {
+            proven = state.getWinner() == attacker;
+        } else if (state.getPlayerTurn() == attacker) {
+            if (plies >= 1 && state.isSunAttacked(defender)) {
+                proven = true;
+            } else if (plies < 3) {
+                proven = false;
+            } else {
+                return false;
+            }
+        } else {
+            if (state.isSunAttacked(attacker) || plies < 2) {
+                proven = false;
+            } else {
+                return false;
+            }
+        }
+
+        store(index, key, proven ? 0 : INFINITY, proven ? INFINITY : 0);
+        return true;
+    }
+
+    /**
+     *
+     * Returns a root move whose child is proven, after the root is proven.
+     * The moves of the root are generated in the same order as during the search.
+     *
+     * @param plies the number of plies of the root
+     * @return the encoded proven move
+     * @author Chay Wen Ning
+     */
+    private int findProvenMove(int plies) {
+        // a root decided without searching its children can capture the Sun piece at once
+        int[] rootMoves = new int[Move.MAX_MOVES];
+        int count = state.generateMoves(rootMoves);
+        for (int i = 0; i < count; i++) {
+            state.makeMove(rootMoves[i]);
+            boolean won = state.isGameOver() && state.getWinner() == attacker;
+            state.unmakeMove();
+            if (won) {
+                return rootMoves[i];
+            }
+        }
+
+        // otherwise, the numbers of the root's children are still kept for its number of plies
+        for (int i = 0; i < count; i++) {
+            if (childProofNumbers[plies][i] == 0) {
+                return moves[plies][i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    private int probe(long key) {
+        int index = (int) (key ^ (key >>> 32)) & indexMask;
+        return keys[index] == key ? index : -1;
+    }
+
+    private int store(int index, long key, int proofNumber, int disproofNumber) {
+        keys[index] = key;
+        proofNumbers[index] = proofNumber;
+        disproofNumbers[index] = disproofNumber;
+        return index;
+    }
+
+    private static int add(int a, int b) {
+        return Math.min(a + b, INFINITY);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java engine.ProofNumberSolver <plies> [gameFile] [nodeLimit]");
+            System.exit(1);
+        }
+
+        int plies = Integer.parseInt(args[0]);
+        GameState state = new GameState();
+        if (args.length > 1) {
+            ChessGame game = new ChessGame();
+            if (!game.loadGameDataFromFile(new File(args[1]))) {
+                System.err.println("Cannot load game file: " + args[1]);
+                System.exit(1);
+            }
+            state = new GameState(game);
+        }
+        long nodeLimit = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        ProofNumberSolver solver = new ProofNumberSolver();
+        long startTime = System.nanoTime();
+        int result = solver.solve(state, plies, nodeLimit);
+        long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+        String[] names = { "disproven", "proven" };
+        System.out.println("Result: " + (result == UNKNOWN ? "unknown" : names[result]));
+        if (result == PROVEN) {
+            System.out.println("Move: " + Move.toString(solver.getBestMove()));
+        }
+        System.out.println("Nodes: " + solver.getNodes());
+        System.out.println("Time: " + elapsed + " ms");
+    }
+}
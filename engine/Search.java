@@ -0,0 +1,678 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code Search} class; Searches a {@code GameState} for the best move of the player to move,
+ * using iterative deepening over a negamax alpha-beta search.
+ * The goal of the search is to capture the opponent's {@code Sun} piece, which ends the game as in {@code ChessGame.checkWinner()}.
+ * Since every ply is played with {@code GameState.makeMove}, the search also plays the {@code Time} and {@code Plus} switch every {@code SWITCH_COUNTER} plies.
+ * <p>
+ * Searched positions are stored in a {@code TranspositionTable}, which gives the move to try first when a position is searched again,
+ * and cuts the search short when a stored score is deep enough. The moves of every node are handed out best first by a {@code MovePicker},
+ * which relies on the killer moves and history scores the {@code Search} collects from its cutoffs.
+ * <p>
+ * At the end of the nominal depth, a quiescence search plays on the captures only, so that a position is not scored in the middle of an exchange,
+ * nor just before a {@code Sun} piece is captured by a long slide of a {@code Plus} or {@code Time} piece.
+ * <p>
+ * A {@code Search} object owns its {@code GameState} and all of its move buffers, so that searching allocates nothing.
+ * It stops when its maximum depth is completed, or when its time or node limit is reached; the best move of the last completed iteration is returned.
+ * <p>
+ * To analyse a position, a {@code Search} can find the best few root moves instead of one (multi-PV): a root move is searched with a window
+ * just above the score of the last of the best moves so far, so that only the moves that enter the best few get an exact score.
+ * The best moves and their lines are handed to an {@code AnalysisListener} as soon as every iteration is completed.
+ *
+ * @see engine.Engine
+ * @see engine.Evaluation
+ * @see engine.Evaluator
+ * @see engine.TranspositionTable
+ * @see engine.MovePicker
+ * @see chessgame.GameState
+ * @author Chay Wen Ning
+ */
+public class Search {
+    // Maximum search depth in plies
+    public static final int MAX_DEPTH = 64;
+
+    // Score of a captured Sun piece; a win found n plies from the root scores WIN_SCORE - n
+    public static final int WIN_SCORE = 30000;
+    public static final int INFINITY = 32000;
+    // Lowest score of a win, found by the search or read from a Tablebase
+    public static final int MIN_WIN_SCORE = WIN_SCORE - MAX_DEPTH - Tablebase.MAX_DISTANCE;
+
+    // Number of nodes between two checks of the time limit
+    private static final int CHECK_INTERVAL = 1024;
+
+    // Bound of the history scores
+    private static final int HISTORY_MAX = 1 << 14;
+
+    // Margin added to the value of a capture before it is pruned by delta pruning
+    private static final int DELTA_MARGIN = 200;
+    // Number of quiescence plies in which every move is searched while the Sun piece of the player to move is attacked
+    private static final int MAX_EVASION_PLIES = 2;
+
+    private final GameState state;
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+    private Tablebase tablebase;
+    private final int[] rootMoves = new int[Move.MAX_MOVES];
+    private final int[] rootScores = new int[Move.MAX_MOVES];
+    private final MovePicker[] movePickers = new MovePicker[MAX_DEPTH + 1];
+    private final int[][] killers = new int[MAX_DEPTH + 1][2];
+    private final int[][] quietsSearched = new int[MAX_DEPTH + 1][Move.MAX_MOVES];
+    private final int[][][] history = MovePicker.newHistory();
+
+    private int depthOffset;
+    private volatile long deadline = Long.MAX_VALUE;
+    private volatile long nodeLimit = Long.MAX_VALUE;
+    private volatile boolean stopped;
+    private int multiPv = 1;
+    private AnalysisListener listener;
+
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private List<PrincipalVariation> principalVariations = new ArrayList<>();
+
+    /**
+     *
+     * Constructs a new {@code Search} object that searches the specified {@code GameState} with the specified {@code TranspositionTable}.
+     * The {@code GameState} is changed during a search, and restored once the search returns.
+     *
+     * @param state the {@code GameState} to search
+     * @param table the {@code TranspositionTable} to store searched positions in
+     * @author Chay Wen Ning
+     */
+    public Search(GameState state, TranspositionTable table) {
+        this.state = state;
+        this.table = table;
+        // a search makes no move past MAX_DEPTH, where the quiescence search stands pat
+        this.evaluator = new Evaluator(state, MAX_DEPTH);
+        for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+            movePickers[ply] = new MovePicker(state, history);
+        }
+    }
+
+    /**
+     *
+     * Returns the number of nodes visited by the last search.
+     *
+     * @return the number of nodes visited
+     * @author Chay Wen Ning
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     *
+     * Returns the number of nodes of the last search cut off by a move, i.e. that failed high.
+     *
+     * @return the number of cutoff nodes
+     * @author Chay Wen Ning
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     *
+     * Returns the number of nodes of the last search cut off by the first move searched.
+     * The ratio of this number to {@code getCutoffs} measures how well the moves are ordered.
+     *
+     * @return the number of nodes cut off by their first move
+     * @author Chay Wen Ning
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     *
+     * Returns the best move found by the last search, {@code Move.NONE} if the player to move has no moves.
+     *
+     * @return the encoded best move
+     * @author Chay Wen Ning
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     *
+     * Returns the score of the best move found by the last search, from the point of view of the player to move.
+     *
+     * @return the score of the best move
+     * @author Chay Wen Ning
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     *
+     * Returns the depth of the last iteration completed by the last search.
+     *
+     * @return the last completed depth
+     * @author Chay Wen Ning
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     *
+     * Returns the best root moves of the last completed iteration of the last search, best first, with their lines.
+     * There are as many as the number of lines set by {@code setMultiPv}, or fewer if the player to move has fewer moves;
+     * the list is empty unless the search has more than one line or an {@code AnalysisListener}.
+     *
+     * @return the best root moves of the last completed iteration
+     * @see #setMultiPv(int)
+     * @author Chay Wen Ning
+     */
+    public List<PrincipalVariation> getPrincipalVariations() {
+        return principalVariations;
+    }
+
+    /**
+     *
+     * Sets the number of best root moves searched with an exact score, {@code 1} to find the best move only.
+     *
+     * @param multiPv the number of best root moves
+     * @throws IllegalArgumentException if the number is not positive
+     * @author Chay Wen Ning
+     */
+    public void setMultiPv(int multiPv) {
+        if (multiPv <= 0) {
+            throw new IllegalArgumentException("Number of lines must be positive: " + multiPv);
+        }
+        this.multiPv = multiPv;
+    }
+
+    /**
+     *
+     * Sets the {@code AnalysisListener} called with the best root moves every time an iteration is completed. Set {@code null} for none.
+     *
+     * @param listener the {@code AnalysisListener} to call, {@code null} for none
+     * @author Chay Wen Ning
+     */
+    public void setListener(AnalysisListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     *
+     * Sets the number of plies added to the depth of every iteration.
+     * Helper threads of a parallel search use different offsets, so that they search ahead of the main thread and fill the shared {@code TranspositionTable}.
+     *
+     * @param depthOffset the number of plies added to every iteration
+     * @see engine.Engine#setThreads(int)
+     * @author Chay Wen Ning
+     */
+    public void setDepthOffset(int depthOffset) {
+        this.depthOffset = depthOffset;
+    }
+
+    /**
+     *
+     * Sets the {@code Tablebase} probed at every node below the root, whose result replaces the search of a position in its tables.
+     * Set {@code null} to probe no {@code Tablebase}.
+     *
+     * @param tablebase the {@code Tablebase} to probe, {@code null} for none
+     * @author Chay Wen Ning
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     *
+     * Sets the {@code Network} that scores the positions of a search instead of the {@code Evaluation}, {@code null} for none.
+     *
+     * @param network the {@code Network} to score positions with, {@code null} for none
+     * @see engine.Evaluator#setNetwork(Network)
+     * @author Chay Wen Ning
+     */
+    public void setNetwork(Network network) {
+        evaluator.setNetwork(network);
+    }
+
+    /**
+     *
+     * Sets the time, in milliseconds since the epoch, at which the search stops, e.g. to give a time limit to a running search that had none.
+     * This method can be called from any thread, before or during a search without a time limit.
+     *
+     * @param deadline the time at which the search stops, as returned by {@code System.currentTimeMillis}
+     * @author Chay Wen Ning
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     *
+     * Sets the number of nodes, counted from the start of the search, after which the search stops, e.g. to give a node limit to a running search that had none.
+     * This method can be called from any thread, before or during a search without a node limit.
+     *
+     * @param nodeLimit the node limit
+     * @author Chay Wen Ning
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     *
+     * Stops the running search as soon as possible. This method can be called from any thread.
+     * A {@code Search} that is stopped before it starts returns at once, and cannot be searched again.
+     *
+     * @author Chay Wen Ning
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     *
+     * Searches the {@code GameState} with iterative deepening, and returns the best move found.
+     * Returns {@code Move.NONE} if the player to move has no moves.
+     *
+     * @param maxDepth  the maximum depth to search in plies
+     * @param timeLimit the time limit in milliseconds, {@code 0} for no limit other than a deadline set by {@code setDeadline}
+     * @param nodeLimit the node limit, {@code 0} for no limit other than a node limit set by {@code setNodeLimit}
+     * @return the encoded best move
+     * @author Chay Wen Ning
+     */
+    public int search(int maxDepth, long timeLimit, long nodeLimit) {
+        long startTime = System.currentTimeMillis();
+        if (timeLimit > 0) {
+            this.deadline = startTime + timeLimit;
+        }
+        if (nodeLimit > 0) {
+            this.nodeLimit = nodeLimit;
+        }
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        evaluator.reset(state);
+        bestMove = Move.NONE;
+        bestScore = 0;
+        completedDepth = 0;
+        principalVariations = new ArrayList<>();
+
+        int count = state.generateMoves(rootMoves);
+        if (count == 0) {
+            return Move.NONE;
+        }
+        bestMove = rootMoves[0];
+
+        for (int depth = 1 + depthOffset; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+            int score = searchRoot(depth, count);
+            if (stopped) {
+                break;
+            }
+            bestScore = score;
+            completedDepth = depth;
+            int lines = Math.min(multiPv, count);
+            if (lines > 1 || listener != null) {
+                principalVariations = new ArrayList<>();
+                for (int i = 0; i < lines; i++) {
+                    principalVariations.add(principalVariation(i, depth));
+                }
+                if (listener != null) {
+                    listener.iterationCompleted(principalVariations, nodes, System.currentTimeMillis() - startTime);
+                }
+            }
+
+            // no need to search deeper once a forced Sun capture is found for every line
+            boolean decided = true;
+            for (int i = 0; i < lines; i++) {
+                decided &= Math.abs(rootScores[i]) >= MIN_WIN_SCORE;
+            }
+            if (decided) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     *
+     * Searches every root move to the specified depth, in the order of the scores of the previous iteration, so that its best move is searched first.
+     * The searched moves are kept sorted by score, and a move is searched with alpha at the score of the last of the {@code multiPv} best moves so far,
+     * so that the best moves get exact scores and the others an upper bound. Updates the best move if the iteration is not stopped.
+     *
+     * @param depth the depth to search in plies
+     * @param count the number of root moves
+     * @return the score of the best root move
+     * @author Chay Wen Ning
+     */
+    private int searchRoot(int depth, int count) {
+        int lines = Math.min(multiPv, count);
+        int alpha = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = rootMoves[i];
+            makeMove(move);
+            int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+            unmakeMove();
+            if (stopped) {
+                break;
+            }
+
+            // insert the move among the searched moves, after the moves of equal score
+            int j = i;
+            for (; j > 0 && rootScores[j - 1] < score; j--) {
+                rootMoves[j] = rootMoves[j - 1];
+                rootScores[j] = rootScores[j - 1];
+            }
+            rootMoves[j] = move;
+            rootScores[j] = score;
+            if (i + 1 >= lines) {
+                alpha = rootScores[lines - 1];
+            }
+        }
+
+        if (!stopped) {
+            bestMove = rootMoves[0];
+            table.store(state.getKey(), bestMove, TranspositionTable.toTableScore(rootScores[0], 0), depth, TranspositionTable.BOUND_EXACT);
+        }
+        return rootScores[0];
+    }
+
+    /**
+     *
+     * Returns the line of the root move of the specified index after a completed iteration, followed through the moves of the {@code TranspositionTable}.
+     * The line ends at the depth of the iteration, at the end of the game, or at a position without a legal table move.
+     *
+     * @param index the index of the root move
+     * @param depth the depth of the iteration in plies
+     * @return the line of the root move
+     * @author Chay Wen Ning
+     */
+    private PrincipalVariation principalVariation(int index, int depth) {
+        int[] moves = new int[depth];
+        int length = 0;
+        moves[length++] = rootMoves[index];
+        state.makeMove(rootMoves[index]);
+        while (length < depth && !state.isGameOver()) {
+            long entry = table.probe(state.getKey());
+            int move = entry != TranspositionTable.NO_ENTRY ? TranspositionTable.getMove(entry) : Move.NONE;
+            if (move == Move.NONE || !state.isLegalMove(move)) {
+                break;
+            }
+            moves[length++] = move;
+            state.makeMove(move);
+        }
+        for (int i = 0; i < length; i++) {
+            state.unmakeMove();
+        }
+        return new PrincipalVariation(rootScores[index], depth, Arrays.copyOf(moves, length));
+    }
+
+    /**
+     *
+     * Returns the negamax score of the {@code GameState} from the point of view of the player to move, searched to the specified depth within the alpha-beta window.
+     * A position where the player to move has lost their {@code Sun} piece scores a loss, adjusted by the ply so that quicker wins are preferred.
+     *
+     * @param depth the remaining depth in plies
+     * @param ply   the distance from the root in plies
+     * @param alpha the lower bound of the window
+     * @param beta  the upper bound of the window
+     * @return the score of the position
+     * @author Chay Wen Ning
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (++nodes % CHECK_INTERVAL == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (state.isGameOver()) {
+            return -WIN_SCORE + ply;
+        }
+        if (state.isSunAttacked(state.getPlayerTurn() ^ 1)) {
+            return WIN_SCORE - (ply + 1);
+        }
+        if (tablebase != null) {
+            int result = tablebase.probe(state);
+            if (result != Tablebase.UNKNOWN) {
+                return result > 0 ? WIN_SCORE - (ply + result) : result < 0 ? -WIN_SCORE + (ply - result) : 0;
+            }
+        }
+        if (depth <= 0 || ply >= MAX_DEPTH) {
+            return quiesce(ply, 0, alpha, beta);
+        }
+
+        long key = state.getKey();
+        int tableMove = Move.NONE;
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.NO_ENTRY) {
+            tableMove = TranspositionTable.getMove(entry);
+            if (TranspositionTable.getDepth(entry) >= depth) {
+                int score = TranspositionTable.fromTableScore(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MovePicker picker = movePickers[ply];
+        picker.init(tableMove, killers[ply][0], killers[ply][1]);
+        int[] quiets = quietsSearched[ply];
+        int quietCount = 0;
+        int moveCount = 0;
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            boolean quiet = picker.isQuiet(move);
+            moveCount++;
+            makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (moveCount == 1) {
+                            firstMoveCutoffs++;
+                        }
+                        if (quiet) {
+                            updateQuietStatistics(ply, depth, move, quiets, quietCount);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (quiet) {
+                quiets[quietCount++] = move;
+            }
+        }
+        if (moveCount == 0) {
+            // no moves, while the game is not over, is a draw
+            return 0;
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        table.store(key, bound == TranspositionTable.BOUND_UPPER ? Move.NONE : bestMove,
+                TranspositionTable.toTableScore(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     *
+     * Returns the score of the {@code GameState} from the point of view of the player to move, searching only the captures within the alpha-beta window.
+     * The player to move may stand pat, i.e. take the static score, unless their {@code Sun} piece is attacked,
+     * in which case every move is searched for the first {@code MAX_EVASION_PLIES} plies.
+     * A capture that cannot raise the static score up to alpha, even with a margin, is pruned (delta pruning).
+     *
+     * @param ply   the distance from the root in plies
+     * @param qply  the distance from the start of the quiescence search in plies
+     * @param alpha the lower bound of the window
+     * @param beta  the upper bound of the window
+     * @return the score of the position
+     * @author Chay Wen Ning
+     */
+    private int quiesce(int ply, int qply, int alpha, int beta) {
+        if (++nodes % CHECK_INTERVAL == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (state.isGameOver()) {
+            return -WIN_SCORE + ply;
+        }
+        int turn = state.getPlayerTurn();
+        if (state.isSunAttacked(turn ^ 1)) {
+            return WIN_SCORE - (ply + 1);
+        }
+        int standPat = evaluator.evaluate(state);
+        if (ply >= MAX_DEPTH) {
+            return standPat;
+        }
+
+        boolean evading = qply < MAX_EVASION_PLIES && state.isSunAttacked(turn);
+        int bestScore = -INFINITY;
+        MovePicker picker = movePickers[ply];
+        if (evading) {
+            picker.init(Move.NONE, Move.NONE, Move.NONE);
+        } else {
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat > alpha) {
+                alpha = standPat;
+            }
+            bestScore = standPat;
+            picker.initCaptures();
+        }
+
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (!evading) {
+                int captured = state.getPieceTypeAt(Move.getTo(move));
+                if (standPat + Evaluation.getPieceValue(captured) + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+            }
+
+            makeMove(move);
+            int score = -quiesce(ply + 1, qply + 1, -beta, -alpha);
+            unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore == -INFINITY ? standPat : bestScore;
+    }
+
+    /**
+     *
+     * Makes the specified move on the {@code GameState}, and updates the {@code Evaluator} with it.
+     *
+     * @param move the encoded move
+     * @author Chay Wen Ning
+     */
+    private void makeMove(int move) {
+        state.makeMove(move);
+        evaluator.update(state);
+    }
+
+    /**
+     *
+     * Takes back the last move made on the {@code GameState}, and on the {@code Evaluator}.
+     *
+     * @author Chay Wen Ning
+     */
+    private void unmakeMove() {
+        state.unmakeMove();
+        evaluator.undo();
+    }
+
+    /**
+     *
+     * Records the specified quiet move, which cut off a node, as a killer move of its ply, and raises its history score.
+     * The history scores of the quiet moves searched before it at the node are lowered.
+     *
+     * @param ply        the distance of the node from the root
+     * @param depth      the remaining depth of the node
+     * @param move       the encoded quiet move that cut off the node
+     * @param quiets     the quiet moves searched before the move
+     * @param quietCount the number of quiet moves searched before the move
+     * @author Chay Wen Ning
+     */
+    private void updateQuietStatistics(int ply, int depth, int move, int[] quiets, int quietCount) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int bonus = Math.min(depth * depth, HISTORY_MAX / 4);
+        int color = state.getPlayerTurn();
+        updateHistory(color, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            updateHistory(color, quiets[i], -bonus);
+        }
+    }
+
+    /**
+     *
+     * Adds the specified bonus to the history score of a quiet move, scaled down as the score nears {@code HISTORY_MAX}, 
+     * so that the scores stay bounded and recent cutoffs weigh more than old ones.
+     *
+     * @param color the color index of the player of the move
+     * @param move  the encoded quiet move
+     * @param bonus the bonus to add, negative to lower the score
+     * @author Chay Wen Ning
+     */
+    private void updateHistory(int color, int move, int bonus) {
+        int[] scores = history[color][state.getPieceTypeAt(Move.getFrom(move))];
+        int to = Move.getTo(move);
+        scores[to] += bonus - scores[to] * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    /**
+     *
+     * Stops the search if its time or node limit is reached.
+     *
+     * @author Chay Wen Ning
+     */
+    private void checkLimits() {
+        if (nodes >= nodeLimit || System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+    }
+}
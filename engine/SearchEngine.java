@@ -0,0 +1,60 @@
+package engine;
+
+import chessgame.GameState;
+
+/**
+ * The {@code SearchEngine} interface; A computer player that finds a move of a {@code GameState} within a time budget.
+ * Engines of different types implement it, so that they can be swapped and compared under the same wall-clock budget.
+ *
+ * @see engine.Engine
+ * @see engine.MctsEngine
+ * @author Chay Wen Ning
+ */
+public interface SearchEngine {
+    /**
+     *
+     * Searches the specified {@code GameState} and returns the best move found for the player to move,
+     * encoded by {@code Move} from the first player's point of view. Returns {@code Move.NONE} if the player to move has no moves.
+     * The specified {@code GameState} is not changed.
+     *
+     * @param state the {@code GameState} to search
+     * @return the encoded best move
+     * @author Chay Wen Ning
+     */
+    int findBestMove(GameState state);
+
+    /**
+     *
+     * Stops the running search, if any, which then returns its best move so far. Can be called from any thread.
+     *
+     * @author Chay Wen Ning
+     */
+    void stop();
+
+    /**
+     *
+     * Returns the time limit of a search in milliseconds, {@code 0} if there is no time limit.
+     *
+     * @return the time limit in milliseconds
+     * @author Chay Wen Ning
+     */
+    long getTimeLimit();
+
+    /**
+     *
+     * Sets the time limit of a search in milliseconds. Set {@code 0} for no time limit.
+     *
+     * @param timeLimit the time limit in milliseconds
+     * @author Chay Wen Ning
+     */
+    void setTimeLimit(long timeLimit);
+
+    /**
+     *
+     * Returns the number of nodes or playouts of the last search, as a measure of the work it did.
+     *
+     * @return the number of nodes of the last search
+     * @author Chay Wen Ning
+     */
+    long getLastNodes();
+}
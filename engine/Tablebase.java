@@ -0,0 +1,532 @@
+package engine;
+
+import chessboard.ChessBoard;
+import chessgame.ChessGame;
+import chessgame.GameState;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code Tablebase} class; Probes endgame tables, which hold the result of perfect play of every position of a small material signature.
+ * A table is generated by {@code TablebaseGenerator} and written to a file of one byte per position, which the {@code Tablebase}
+ * maps into memory with a {@code MappedByteBuffer}, so that probing reads the file through the page cache and never loads it onto the heap.
+ * <p>
+ * A material signature lists the pieces of the player to move, then the pieces of the opponent, e.g. {@code SHvS} for a {@code Sun} and
+ * an {@code Hourglass} piece against a lone {@code Sun} piece. The letters are {@code S} for a {@code Sun}, {@code H} for an {@code Hourglass},
+ * {@code P} for a {@code Plus}, {@code T} for a {@code Time} and {@code O} for a {@code Point} piece; every side has exactly one {@code Sun} piece.
+ * <p>
+ * A position of a table is seen from the player to move, so that a position of the second player is rotated and the colors swapped.
+ * Besides the squares of the pieces and the orientation of the {@code Point} pieces, it holds the phase of the {@code Time} and {@code Plus} switch,
+ * i.e. the total play count of both players, and, if the signature has {@code Time} or {@code Plus} pieces, whether they are switched,
+ * so that a table covers both its signature and the signature with every {@code Time} and {@code Plus} piece swapped, which it turns into every {@code SWITCH_COUNTER} plies.
+ * <p>
+ * A byte of a table is {@code 0} for a position that is not used, {@code 1} for a draw, i.e. a position where neither player can force the capture of the
+ * opponent's {@code Sun} piece, or else the number of plies to the capture plus {@code 1}; an odd number of plies is a win for the player to move, an even number a loss.
+ *
+ * @see engine.TablebaseGenerator
+ * @see engine.Search
+ * @author Chay Wen Ning
+ */
+public class Tablebase {
+    // Result of a probe of a position that is not in a table
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    // Extension of the file of a table
+    public static final String FILE_EXTENSION = ".tb";
+
+    // Maximum number of pieces of a type of a side, other than the Sun piece
+    public static final int MAX_PIECES_PER_TYPE = 3;
+
+    // Longest distance to the capture of a Sun piece that a byte of a table holds
+    public static final int MAX_DISTANCE = 254;
+
+    // Values of a byte of a table
+    static final int NOT_USED = 0;
+    static final int DRAW = 1;
+
+    // Phases of the Time and Plus switch, i.e. total play counts of both players
+    static final int NO_OF_PHASES = ChessGame.SWITCH_COUNTER;
+
+    // Letter of every piece type index in a material signature
+    private static final char[] TYPE_LETTERS = new char[GameState.NO_OF_PIECE_TYPE];
+
+    static {
+        TYPE_LETTERS[GameState.HOURGLASS] = 'H';
+        TYPE_LETTERS[GameState.PLUS] = 'P';
+        TYPE_LETTERS[GameState.POINT] = 'O';
+        TYPE_LETTERS[GameState.SUN] = 'S';
+        TYPE_LETTERS[GameState.TIME] = 'T';
+    }
+
+    // Tables by material code, and whether the material of the code is the signature of the table with Time and Plus pieces switched
+    private final Table[] tables = new Table[1 << 16];
+    private final boolean[] switched = new boolean[1 << 16];
+    private int maxPieces;
+
+    /**
+     *
+     * Constructs a new {@code Tablebase} object without tables.
+     *
+     * @author Chay Wen Ning
+     */
+    public Tablebase() {
+    }
+
+    /**
+     *
+     * Constructs a new {@code Tablebase} object with every table file of the specified directory mapped into memory.
+     *
+     * @param directory the directory of the table files
+     * @throws IOException if a table file cannot be mapped, or its size does not match its signature
+     * @author Chay Wen Ning
+     */
+    public Tablebase(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            add(map(Table.forSignature(name.substring(0, name.length() - FILE_EXTENSION.length())), file));
+        }
+    }
+
+    /**
+     *
+     * Returns the largest number of pieces, including both {@code Sun} pieces, of a table of the {@code Tablebase}, {@code 0} if it has no tables.
+     * A position with more pieces is never in a table, so that a search need not probe it.
+     *
+     * @return the largest number of pieces of a table
+     * @author Chay Wen Ning
+     */
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     *
+     * Returns {@code true} if the {@code Tablebase} has the table of the specified material signature, which may have its {@code Time} and {@code Plus} pieces switched.
+     *
+     * @param signature the material signature
+     * @return {@code true} if the table of the signature is present
+     * @throws IllegalArgumentException if the signature is malformed
+     * @author Chay Wen Ning
+     */
+    public boolean hasTable(String signature) {
+        Table table = Table.forSignature(signature);
+        return tables[materialCode(table.types[0], table.types[1])] != null;
+    }
+
+    /**
+     *
+     * Returns the result of perfect play of the specified {@code GameState} for the player to move:
+     * the number of plies to the capture of the opponent's {@code Sun} piece if it is a win, minus the number of plies to the capture of their own
+     * {@code Sun} piece if it is a loss, {@code 0} if it is a draw, or {@code UNKNOWN} if the position is not in a table of the {@code Tablebase}.
+     * This method can be called from any thread.
+     *
+     * @param state the {@code GameState} to probe
+     * @return the result of the position for the player to move
+     * @author Chay Wen Ning
+     */
+    public int probe(GameState state) {
+        if (state.isGameOver() || Long.bitCount(state.getOccupiedMask()) > maxPieces) {
+            return UNKNOWN;
+        }
+        int code = materialCode(state);
+        Table table = code >= 0 ? tables[code] : null;
+        if (table == null) {
+            return UNKNOWN;
+        }
+        int index = table.index(state, switched[code]);
+        return index >= 0 ? toResult(table.get(index)) : UNKNOWN;
+    }
+
+    /**
+     *
+     * Returns the table of the material of the specified {@code GameState}, {@code null} if there is none.
+     *
+     * @param state the {@code GameState}
+     * @return the table of the material of the position
+     * @author Chay Wen Ning
+     */
+    Table findTable(GameState state) {
+        int code = materialCode(state);
+        return code >= 0 ? tables[code] : null;
+    }
+
+    /**
+     *
+     * Returns {@code true} if the material of the specified {@code GameState} is the signature of its table with {@code Time} and {@code Plus} pieces switched.
+     *
+     * @param state the {@code GameState}
+     * @return {@code true} if the material of the position is switched
+     * @author Chay Wen Ning
+     */
+    boolean isSwitched(GameState state) {
+        return switched[materialCode(state)];
+    }
+
+    /**
+     *
+     * Adds the specified table to the {@code Tablebase}, replacing any table of the same signature.
+     * Must not be called while the {@code Tablebase} is probed.
+     *
+     * @param table the table to add
+     * @author Chay Wen Ning
+     */
+    void add(Table table) {
+        int code = materialCode(table.types[0], table.types[1]);
+        tables[code] = table;
+        switched[code] = false;
+        if (table.switchable) {
+            int switchedCode = materialCode(switchTypes(table.types[0]), switchTypes(table.types[1]));
+            tables[switchedCode] = table;
+            switched[switchedCode] = true;
+        }
+        maxPieces = Math.max(maxPieces, table.pieceCount);
+    }
+
+    /**
+     *
+     * Maps the specified table file into memory as the values of the specified table.
+     *
+     * @param table the table without values
+     * @param file  the file of the table
+     * @return the table with its values
+     * @throws IOException if the file cannot be mapped, or its size does not match the table
+     * @author Chay Wen Ning
+     */
+    static Table map(Table table, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != table.size) {
+                throw new IOException("Size of " + file + " is " + channel.size() + " bytes, expected " + table.size);
+            }
+            return table.withValues(channel.map(FileChannel.MapMode.READ_ONLY, 0, table.size));
+        }
+    }
+
+    /**
+     *
+     * Converts a byte of a table to the result of the position for the player to move.
+     *
+     * @param value the unsigned byte of the position
+     * @return the number of plies of a win, minus the number of plies of a loss, {@code 0} for a draw, or {@code UNKNOWN} if the position is not used
+     * @author Chay Wen Ning
+     */
+    static int toResult(int value) {
+        if (value == NOT_USED) {
+            return UNKNOWN;
+        } else if (value == DRAW) {
+            return 0;
+        }
+        int distance = value - 1;
+        return (distance & 1) != 0 ? distance : -distance;
+    }
+
+    /**
+     *
+     * Returns the material code of the specified {@code GameState}, i.e. the counts of every piece type other than the {@code Sun} of the player to move,
+     * then of the opponent, or {@code -1} if a side has more than {@code MAX_PIECES_PER_TYPE} pieces of a type or not exactly one {@code Sun} piece.
+     *
+     * @param state the {@code GameState}
+     * @return the material code of the position
+     * @author Chay Wen Ning
+     */
+    private static int materialCode(GameState state) {
+        int code = 0;
+        for (int side = 0; side < 2; side++) {
+            long pieces = state.getColorMask(state.getPlayerTurn() ^ side);
+            if (Long.bitCount(state.getPieceTypeMask(GameState.SUN) & pieces) != 1) {
+                return -1;
+            }
+            for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+                if (type != GameState.SUN) {
+                    int count = Long.bitCount(state.getPieceTypeMask(type) & pieces);
+                    if (count > MAX_PIECES_PER_TYPE) {
+                        return -1;
+                    }
+                    code |= count << typeShift(side, type);
+                }
+            }
+        }
+        return code;
+    }
+
+    /**
+     *
+     * Returns the material code of the specified piece types of the player to move and of the opponent, other than their {@code Sun} pieces.
+     *
+     * @param moverTypes the piece type indices of the player to move
+     * @param otherTypes the piece type indices of the opponent
+     * @return the material code
+     * @author Chay Wen Ning
+     */
+    private static int materialCode(int[] moverTypes, int[] otherTypes) {
+        int code = 0;
+        for (int type : moverTypes) {
+            code += 1 << typeShift(0, type);
+        }
+        for (int type : otherTypes) {
+            code += 1 << typeShift(1, type);
+        }
+        return code;
+    }
+
+    private static int typeShift(int side, int type) {
+        return side * 8 + (type < GameState.SUN ? type : type - 1) * 2;
+    }
+
+    /**
+     *
+     * Returns the specified piece type indices with {@code Time} and {@code Plus} switched, in ascending order.
+     *
+     * @param types the piece type indices
+     * @return the switched piece type indices
+     * @author Chay Wen Ning
+     */
+    private static int[] switchTypes(int[] types) {
+        int[] switchedTypes = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            switchedTypes[i] = Evaluation.switchedType(types[i]);
+        }
+        Arrays.sort(switchedTypes);
+        return switchedTypes;
+    }
+
+    /**
+     * The {@code Table} class; The layout and values of the table of a material signature.
+     * The index of a position is, from the most significant digit, whether the {@code Time} and {@code Plus} pieces are switched (if the signature has any),
+     * the phase of the switch, the square of every piece from the point of view of the player to move, in the order of the signature,
+     * and the orientation of every {@code Point} piece. Pieces of the same type and side are in ascending order of their squares,
+     * so that every position has a single index and the indices of other orders are not used.
+     */
+    static final class Table {
+        final String name;
+        final int[][] types; // piece type indices other than the Sun, of the player to move then of the opponent
+        final boolean switchable;
+        final int pieceCount;
+        final int pointCount;
+        final int size;
+        private final ByteBuffer values;
+
+        private Table(int[] moverTypes, int[] otherTypes, ByteBuffer values) {
+            this.types = new int[][] { moverTypes, otherTypes };
+            this.name = signature(moverTypes) + "v" + signature(otherTypes);
+            this.switchable = materialCode(moverTypes, otherTypes) != materialCode(switchTypes(moverTypes), switchTypes(otherTypes));
+            this.pieceCount = 2 + moverTypes.length + otherTypes.length;
+            int points = 0;
+            for (int[] sideTypes : types) {
+                for (int type : sideTypes) {
+                    points += type == GameState.POINT ? 1 : 0;
+                }
+            }
+            this.pointCount = points;
+
+            double positions = (switchable ? 2 : 1) * NO_OF_PHASES * Math.pow(ChessBoard.NO_OF_SQUARE, pieceCount) * (1 << pointCount);
+            if (positions > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Table " + name + " is too large: " + (long) positions + " positions");
+            }
+            this.size = (int) positions;
+            this.values = values;
+        }
+
+        /**
+         *
+         * Returns the table of the specified material signature, without values. Of a signature and the signature with its {@code Time} and {@code Plus} pieces switched,
+         * which share a table, the table has the signature that comes first in alphabetical order.
+         *
+         * @param signature the material signature, e.g. {@code SHvS}
+         * @return the table of the signature
+         * @throws IllegalArgumentException if the signature is malformed or too large
+         * @author Chay Wen Ning
+         */
+        static Table forSignature(String signature) {
+            String[] sides = signature.split("v", -1);
+            if (sides.length != 2) {
+                throw new IllegalArgumentException("Malformed material signature: " + signature);
+            }
+            int[] moverTypes = parseSide(sides[0], signature);
+            int[] otherTypes = parseSide(sides[1], signature);
+            return forTypes(moverTypes, otherTypes);
+        }
+
+        /**
+         *
+         * Returns the table of the specified piece types of the player to move and of the opponent, other than their {@code Sun} pieces, without values.
+         *
+         * @param moverTypes the piece type indices of the player to move
+         * @param otherTypes the piece type indices of the opponent
+         * @return the table of the piece types
+         * @author Chay Wen Ning
+         */
+        static Table forTypes(int[] moverTypes, int[] otherTypes) {
+            moverTypes = moverTypes.clone();
+            otherTypes = otherTypes.clone();
+            Arrays.sort(moverTypes);
+            Arrays.sort(otherTypes);
+            Table table = new Table(moverTypes, otherTypes, null);
+            Table switchedTable = new Table(switchTypes(moverTypes), switchTypes(otherTypes), null);
+            return switchedTable.name.compareTo(table.name) < 0 ? switchedTable : table;
+        }
+
+        private static int[] parseSide(String side, String signature) {
+            if (side.isEmpty() || side.charAt(0) != TYPE_LETTERS[GameState.SUN]) {
+                throw new IllegalArgumentException("Side without a Sun piece in material signature: " + signature);
+            }
+            int[] sideTypes = new int[side.length() - 1];
+            int[] counts = new int[GameState.NO_OF_PIECE_TYPE];
+            for (int i = 1; i < side.length(); i++) {
+                int type = new String(TYPE_LETTERS).indexOf(side.charAt(i));
+                if (type < 0 || type == GameState.SUN || ++counts[type] > MAX_PIECES_PER_TYPE) {
+                    throw new IllegalArgumentException("Malformed material signature: " + signature);
+                }
+                sideTypes[i - 1] = type;
+            }
+            return sideTypes;
+        }
+
+        private static String signature(int[] sideTypes) {
+            StringBuilder builder = new StringBuilder().append(TYPE_LETTERS[GameState.SUN]);
+            for (int type : sideTypes) {
+                builder.append(TYPE_LETTERS[type]);
+            }
+            return builder.toString();
+        }
+
+        /**
+         *
+         * Returns a copy of this table with the specified values.
+         *
+         * @param values the values of the positions, of {@code size} bytes
+         * @return the table with the values
+         * @author Chay Wen Ning
+         */
+        Table withValues(ByteBuffer values) {
+            return new Table(types[0], types[1], values);
+        }
+
+        /**
+         *
+         * Returns the unsigned byte of the position of the specified index.
+         *
+         * @param index the index of the position
+         * @return the byte of the position
+         * @author Chay Wen Ning
+         */
+        int get(int index) {
+            return values.get(index) & 0xFF;
+        }
+
+        /**
+         *
+         * Returns the index of the specified {@code GameState}, whose material is the signature of this table, with {@code Time} and {@code Plus} pieces
+         * switched if specified. Returns {@code -1} if the play counts of the players are not those of a game at the phase of the switch.
+         *
+         * @param state    the {@code GameState}
+         * @param switched {@code true} if the {@code Time} and {@code Plus} pieces of the position are switched
+         * @return the index of the position
+         * @author Chay Wen Ning
+         */
+        int index(GameState state, boolean switched) {
+            int mover = state.getPlayerTurn();
+            int phase = state.getPlayCount(0) + state.getPlayCount(1);
+            if (phase >= NO_OF_PHASES || state.getPlayCount(mover) != phase / 2) {
+                return -1;
+            }
+            boolean rotated = mover == 1;
+            long flippedPoints = state.getFlippedPointMask();
+
+            int index = (switched ? 1 : 0) * NO_OF_PHASES + phase;
+            int flips = 0;
+            for (int side = 0; side < 2; side++) {
+                long pieces = state.getColorMask(mover ^ side);
+                index = index * ChessBoard.NO_OF_SQUARE + toView(Long.numberOfTrailingZeros(state.getPieceTypeMask(GameState.SUN) & pieces), rotated);
+
+                long remaining = 0;
+                int previousType = -1;
+                for (int type : types[side]) {
+                    if (type != previousType) {
+                        int actualType = switched ? Evaluation.switchedType(type) : type;
+                        remaining = toView(state.getPieceTypeMask(actualType) & pieces, rotated);
+                        previousType = type;
+                    }
+                    int square = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    index = index * ChessBoard.NO_OF_SQUARE + square;
+                    if (type == GameState.POINT) {
+                        boolean flipped = (flippedPoints & (1L << toView(square, rotated))) != 0;
+                        flips = flips * 2 + (flipped != rotated ? 1 : 0);
+                    }
+                }
+            }
+            return (index << pointCount) + flips;
+        }
+
+        /**
+         *
+         * Sets up the position of the specified index on the specified {@code GameState}, with the player to move as the first player,
+         * and returns {@code true}, or returns {@code false} if the index is not used.
+         * An index is not used if two pieces share a square, if pieces of the same type and side are not in ascending order,
+         * or if a {@code Point} piece is at the end of the board it moves towards, since it would have been flipped.
+         *
+         * @param index   the index of the position
+         * @param state   the {@code GameState} to set up
+         * @param squares a buffer of at least {@code pieceCount} squares
+         * @return {@code true} if the index is used
+         * @author Chay Wen Ning
+         */
+        boolean setUp(int index, GameState state, int[] squares) {
+            int flips = index & ((1 << pointCount) - 1);
+            index >>>= pointCount;
+            for (int i = pieceCount - 1; i >= 0; i--) {
+                squares[i] = index % ChessBoard.NO_OF_SQUARE;
+                index /= ChessBoard.NO_OF_SQUARE;
+            }
+            int phase = index % NO_OF_PHASES;
+            boolean switched = index / NO_OF_PHASES != 0;
+
+            state.clear(0, phase / 2, (phase + 1) / 2);
+            long occupied = 0;
+            int i = 0;
+            int pointIndex = pointCount;
+            for (int side = 0; side < 2; side++) {
+                int previousType = -1;
+                int previousSquare = -1;
+                for (int slot = -1; slot < types[side].length; slot++) {
+                    int type = slot < 0 ? GameState.SUN : types[side][slot];
+                    int square = squares[i++];
+                    if ((occupied & (1L << square)) != 0 || (type == previousType && square < previousSquare)) {
+                        return false;
+                    }
+                    occupied |= 1L << square;
+                    previousType = type;
+                    previousSquare = square;
+
+                    boolean flipped = false;
+                    if (type == GameState.POINT) {
+                        flipped = (flips >>> --pointIndex & 1) != 0;
+                        int row = square / ChessBoard.NO_OF_COLUMN;
+                        if (row == (flipped ? ChessBoard.NO_OF_ROW - 1 : 0)) {
+                            return false;
+                        }
+                    }
+                    state.addPiece(side, switched ? Evaluation.switchedType(type) : type, square, flipped);
+                }
+            }
+            return true;
+        }
+
+        private static int toView(int square, boolean rotated) {
+            return rotated ? ChessBoard.NO_OF_SQUARE - 1 - square : square;
+        }
+
+        private static long toView(long mask, boolean rotated) {
+            return rotated ? Long.reverse(mask) >>> (Long.SIZE - ChessBoard.NO_OF_SQUARE) : mask;
+        }
+    }
+}
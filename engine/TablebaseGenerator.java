@@ -0,0 +1,294 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code TablebaseGenerator} class; Generates the endgame tables of material signatures for a {@code Tablebase}, and writes them to table files.
+ * <p>
+ * A table is solved together with the table of its signature seen from the opponent, since a move that does not capture leads from one to the other.
+ * A capture leads to a table of fewer pieces, which is generated first if its file is not in the directory yet.
+ * The tables are solved by sweeps over every undecided position, the sweep of distance {@code n} deciding the positions whose capture of a {@code Sun} piece
+ * is exactly {@code n} plies away: a position is won in an odd number of plies {@code n} if a move leads to a loss in fewer plies,
+ * and lost in an even number of plies {@code n} if every move leads to a win in fewer plies. The first sweep decides the positions where the opponent's
+ * {@code Sun} piece can be captured at once. Once two sweeps in a row decide nothing, the undecided positions are draws.
+ * A sweep only reads values decided by earlier sweeps, so it is split over a {@code ForkJoinPool} and writes the values in place.
+ * <p>
+ * Every position is played with {@code GameState.makeMove}, so the {@code Point} reversals, the turn switch and the {@code Time} and {@code Plus} switch
+ * happen exactly as in a {@code ChessGame}.
+ * <p>
+ * Usage: {@code java engine.TablebaseGenerator <directory> <signature>... [-threads n]}, e.g. {@code java engine.TablebaseGenerator tables SHvS}.
+ *
+ * @see engine.Tablebase
+ * @author Chay Wen Ning
+ */
+public class TablebaseGenerator {
+    // Number of positions below which a sweep is not split further
+    private static final int SPLIT_SIZE = 1 << 14;
+
+    private final File directory;
+    private final Tablebase tablebase;
+    private final ForkJoinPool pool;
+
+    /**
+     *
+     * Constructs a new {@code TablebaseGenerator} object that writes table files to the specified directory,
+     * and probes the table files already there for the positions after a capture.
+     *
+     * @param directory the directory of the table files, created if it does not exist
+     * @param threads   the number of threads of a sweep
+     * @throws IOException if the directory cannot be created, or a table file in it cannot be mapped
+     * @author Chay Wen Ning
+     */
+    public TablebaseGenerator(File directory, int threads) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        this.directory = directory;
+        this.tablebase = new Tablebase(directory);
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     *
+     * Generates the table of the specified material signature, the table of the signature seen from the opponent,
+     * and every table of fewer pieces they lead to, unless their files already exist.
+     *
+     * @param signature the material signature, e.g. {@code SHvS}
+     * @throws IOException if a table file cannot be written
+     * @throws IllegalArgumentException if the signature is malformed or too large
+     * @author Chay Wen Ning
+     */
+    public void generate(String signature) throws IOException {
+        generate(Tablebase.Table.forSignature(signature));
+    }
+
+    /**
+     *
+     * Generates the specified table and the table of its signature seen from the opponent, after the tables of fewer pieces they lead to.
+     *
+     * @param table the table to generate
+     * @throws IOException if a table file cannot be written
+     * @author Chay Wen Ning
+     */
+    private void generate(Tablebase.Table table) throws IOException {
+        if (tablebase.hasTable(table.name)) {
+            return;
+        }
+        Tablebase.Table opponentTable = Tablebase.Table.forTypes(table.types[1], table.types[0]);
+        List<Tablebase.Table> tables = new ArrayList<>();
+        tables.add(table);
+        if (!opponentTable.name.equals(table.name)) {
+            tables.add(opponentTable);
+        }
+
+        // the tables after a capture of a piece of the opponent, other than the Sun piece
+        for (Tablebase.Table solved : tables) {
+            int[] captured = solved.types[1];
+            for (int i = 0; i < captured.length; i++) {
+                if (i == 0 || captured[i] != captured[i - 1]) {
+                    int[] remaining = new int[captured.length - 1];
+                    System.arraycopy(captured, 0, remaining, 0, i);
+                    System.arraycopy(captured, i + 1, remaining, i, captured.length - 1 - i);
+                    generate(Tablebase.Table.forTypes(remaining, solved.types[0]));
+                }
+            }
+        }
+
+        long startTime = System.nanoTime();
+        byte[][] values = new byte[tables.size()][];
+        for (int i = 0; i < tables.size(); i++) {
+            values[i] = new byte[tables.get(i).size];
+            tables.set(i, tables.get(i).withValues(ByteBuffer.wrap(values[i])));
+            tablebase.add(tables.get(i));
+        }
+
+        int lastDistance = 1;
+        int distance = 1;
+        while (distance <= lastDistance + 2) {
+            if (distance > Tablebase.MAX_DISTANCE) {
+                throw new IllegalStateException("Distance of table " + table.name + " exceeds " + Tablebase.MAX_DISTANCE + " plies");
+            }
+            long decided = 0;
+            for (int i = 0; i < tables.size(); i++) {
+                decided += pool.invoke(new SweepTask(tables.get(i), values[i], 0, values[i].length, distance));
+            }
+            if (decided > 0) {
+                lastDistance = distance;
+            }
+            distance++;
+        }
+        long elapsed = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+        for (int i = 0; i < tables.size(); i++) {
+            Tablebase.Table solved = tables.get(i);
+            File file = new File(directory, solved.name + Tablebase.FILE_EXTENSION);
+            write(file, values[i]);
+            tablebase.add(Tablebase.map(solved, file));
+            printSummary(solved, values[i], distance - 1, elapsed);
+        }
+    }
+
+    /**
+     *
+     * Writes the specified values to the specified table file.
+     *
+     * @param file   the table file
+     * @param values the values of the table
+     * @throws IOException if the file cannot be written
+     * @author Chay Wen Ning
+     */
+    private static void write(File file, byte[] values) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(values);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     *
+     * Prints the number of wins, losses and draws of the specified table, and its longest win.
+     *
+     * @param table   the table
+     * @param values  the values of the table
+     * @param sweeps  the number of sweeps of the table
+     * @param elapsed the time to solve the table in milliseconds
+     * @author Chay Wen Ning
+     */
+    private static void printSummary(Tablebase.Table table, byte[] values, int sweeps, long elapsed) {
+        long[] counts = new long[3];
+        int longest = 0;
+        for (byte value : values) {
+            int result = Tablebase.toResult(value & 0xFF);
+            if (result != Tablebase.UNKNOWN) {
+                counts[Integer.signum(result) + 1]++;
+                longest = Math.max(longest, result);
+            }
+        }
+        System.out.println(table.name + ": " + (counts[0] + counts[1] + counts[2]) + " positions, " + counts[2] + " wins, "
+                + counts[0] + " losses, " + counts[1] + " draws, longest win " + longest + " plies, "
+                + sweeps + " sweeps, " + elapsed + " ms");
+    }
+
+    /**
+     * The {@code SweepTask} class; Decides the undecided positions of a range of indices of a table at one distance, on its own {@code GameState},
+     * and returns the number of positions decided.
+     */
+    private class SweepTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Tablebase.Table table;
+        private final byte[] values;
+        private final int from;
+        private final int to;
+        private final int distance;
+
+        SweepTask(Tablebase.Table table, byte[] values, int from, int to, int distance) {
+            this.table = table;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.distance = distance;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > SPLIT_SIZE) {
+                int middle = (from + to) >>> 1;
+                SweepTask left = new SweepTask(table, values, from, middle, distance);
+                left.fork();
+                long right = new SweepTask(table, values, middle, to, distance).compute();
+                return right + left.join();
+            }
+
+            GameState state = new GameState();
+            int[] moves = new int[Move.MAX_MOVES];
+            int[] squares = new int[table.pieceCount];
+            long decided = 0;
+            for (int index = from; index < to; index++) {
+                if (distance == 1) {
+                    if (table.setUp(index, state, squares)) {
+                        boolean won = state.isSunAttacked(1);
+                        values[index] = (byte) (won ? distance + 1 : Tablebase.DRAW);
+                        decided += won ? 1 : 0;
+                    }
+                } else if (values[index] == Tablebase.DRAW) {
+                    table.setUp(index, state, squares);
+                    if (isDecided(state, moves)) {
+                        values[index] = (byte) (distance + 1);
+                        decided++;
+                    }
+                }
+            }
+            return decided;
+        }
+
+        /**
+         *
+         * Returns {@code true} if the undecided position of the specified {@code GameState} is won (at an odd distance) or lost (at an even distance)
+         * in exactly the distance of the sweep.
+         *
+         * @param state the {@code GameState} of the position
+         * @param moves a buffer of at least {@code Move.MAX_MOVES} moves
+         * @return {@code true} if the position is decided
+         * @author Chay Wen Ning
+         */
+        private boolean isDecided(GameState state, int[] moves) {
+            boolean winSweep = (distance & 1) != 0;
+            int count = state.generateMoves(moves);
+            if (count == 0) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                state.makeMove(moves[i]);
+                int result = tablebase.probe(state);
+                state.unmakeMove();
+                if (result == Tablebase.UNKNOWN) {
+                    throw new IllegalStateException("No table for the position after " + Move.toString(moves[i]) + " in table " + table.name);
+                }
+
+                // the result of the opponent, decided by an earlier sweep if it is closer than this distance
+                boolean decidedBefore = result != 0 && Math.abs(result) < distance;
+                if (winSweep && decidedBefore && result < 0) {
+                    return true;
+                } else if (!winSweep && !(decidedBefore && result > 0)) {
+                    return false;
+                }
+            }
+            return !winSweep;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> signatures = new ArrayList<>(Arrays.asList(args));
+        int threads = Runtime.getRuntime().availableProcessors();
+        int threadsIndex = signatures.indexOf("-threads");
+        if (threadsIndex >= 0 && threadsIndex + 1 < signatures.size()) {
+            threads = Integer.parseInt(signatures.get(threadsIndex + 1));
+            signatures.subList(threadsIndex, threadsIndex + 2).clear();
+        }
+        if (signatures.size() < 2) {
+            System.err.println("Usage: java engine.TablebaseGenerator <directory> <signature>... [-threads n]");
+            System.exit(1);
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(new File(signatures.get(0)), threads);
+        for (String signature : signatures.subList(1, signatures.size())) {
+            generator.generate(signature);
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code Tournament} class; Plays a match of many games between two computer players, headless and in parallel,
+ * to tell whether a change to an engine or to the game rules code makes it stronger or weaker.
+ * <p>
+ * The games are played in pairs from a random opening, each player taking the first move once, so that the openings favour neither player.
+ * Every worker thread keeps its own pair of players and plays one game at a time on a {@code GameState}, with the same rules as a {@code ChessGame}.
+ * A game ends with the capture of a {@code Sun} piece, with a draw once it reaches the maximum number of plies,
+ * with a loss for a player that answers an illegal move, or with the result of a {@code Tablebase} position if a {@code Tablebase} is given.
+ * <p>
+ * After every game, the score of the first player gives its Elo difference to the second player, with a 95% confidence interval.
+ * With a sequential probability ratio test (SPRT) between the Elo differences {@code elo0} and {@code elo1}, the match stops early
+ * once the log-likelihood ratio of the results crosses a bound given by the error rates {@code alpha} and {@code beta}.
+ * <p>
+ * Every finished game is appended at once to the result file as a comment line, with the game number, the player that moved first and how the game ended,
+ * followed by its moves and result in the archived games format of {@code OpeningBookBuilder}.
+ * <p>
+ * A player is {@code alphabeta} for an {@code Engine}, {@code mcts} for an {@code MctsEngine}, or {@code uci:<command>} for an engine process
+ * served by {@code UciServer}, e.g. {@code "uci:java -cp old engine.UciServer"}.
+ * <p>
+ * Usage: {@code java engine.Tournament <playerA> <playerB> [-games n] [-concurrency n] [-movetime ms | -nodes n] [-openings plies] [-maxplies n]
+ * [-sprt elo0 elo1] [-alpha a] [-beta b] [-tablebase directory] [-out resultFile] [-seed n]}.
+ *
+ * @see engine.SearchEngine
+ * @see engine.UciClient
+ * @see engine.OpeningBookBuilder
+ * @author Chay Wen Ning
+ */
+public class Tournament {
+    public static final int DEFAULT_GAMES = 1000;
+
+    // Default number of random plies of an opening
+    public static final int DEFAULT_OPENING_PLIES = 8;
+
+    // Default number of plies after which a game is a draw
+    public static final int DEFAULT_MAX_PLIES = 400;
+
+    // Default error rates of the SPRT
+    public static final double DEFAULT_ALPHA = 0.05;
+    public static final double DEFAULT_BETA = 0.05;
+
+    // Quantile of the normal distribution of a 95% confidence interval
+    private static final double CONFIDENCE_Z = 1.96;
+
+    // Number of games between two progress reports
+    private static final int REPORT_INTERVAL = 10;
+
+    private final String[] players;
+    private int games = DEFAULT_GAMES;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private long moveTime = Engine.DEFAULT_TIME_LIMIT;
+    private long nodes = 0;
+    private int openingPlies = DEFAULT_OPENING_PLIES;
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    private boolean sprt;
+    private double elo0;
+    private double elo1;
+    private double alpha = DEFAULT_ALPHA;
+    private double beta = DEFAULT_BETA;
+    private Tablebase tablebase;
+    private File resultFile;
+    private long seed = System.nanoTime();
+
+    private final AtomicInteger nextPair = new AtomicInteger();
+    private volatile boolean finished;
+    private PrintWriter results;
+    private int wins; // guarded by this
+    private int draws; // guarded by this
+    private int losses; // guarded by this
+    private String sprtResult; // guarded by this
+
+    /**
+     *
+     * Constructs a new {@code Tournament} object of a match between the two specified players.
+     *
+     * @param playerA the first player, {@code alphabeta}, {@code mcts} or {@code uci:<command>}
+     * @param playerB the second player, {@code alphabeta}, {@code mcts} or {@code uci:<command>}
+     * @throws IllegalArgumentException if a player is unknown
+     * @author Chay Wen Ning
+     */
+    public Tournament(String playerA, String playerB) {
+        for (String player : new String[] { playerA, playerB }) {
+            if (!player.equals("alphabeta") && !player.equals("mcts") && !player.startsWith("uci:")) {
+                throw new IllegalArgumentException("Unknown player: " + player);
+            }
+        }
+        this.players = new String[] { playerA, playerB };
+    }
+
+    /**
+     *
+     * Sets the maximum number of games of the match, rounded up to an even number so that every opening is played twice.
+     *
+     * @param games the maximum number of games
+     * @author Chay Wen Ning
+     */
+    public void setGames(int games) {
+        this.games = games + (games & 1);
+    }
+
+    /**
+     *
+     * Sets the number of games played at once, each on its own worker thread.
+     *
+     * @param concurrency the number of games played at once
+     * @author Chay Wen Ning
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     *
+     * Sets the time control of a move: a fixed number of nodes (or playouts) if it is positive, or else a fixed time in milliseconds.
+     * A fixed number of nodes gives the same games on any hardware load, so it suits comparing strength; a fixed time also measures speed.
+     *
+     * @param moveTime the time of a move in milliseconds
+     * @param nodes    the nodes of a move, {@code 0} for a fixed time
+     * @author Chay Wen Ning
+     */
+    public void setTimeControl(long moveTime, long nodes) {
+        this.moveTime = moveTime;
+        this.nodes = nodes;
+    }
+
+    /**
+     *
+     * Sets the number of random plies of an opening.
+     *
+     * @param openingPlies the number of random plies
+     * @author Chay Wen Ning
+     */
+    public void setOpeningPlies(int openingPlies) {
+        this.openingPlies = openingPlies;
+    }
+
+    /**
+     *
+     * Sets the number of plies after the opening at which a game is a draw.
+     *
+     * @param maxPlies the maximum number of plies of a game
+     * @throws IllegalArgumentException if the number exceeds {@code GameState.MAX_PLY}
+     * @author Chay Wen Ning
+     */
+    public void setMaxPlies(int maxPlies) {
+        if (maxPlies > GameState.MAX_PLY) {
+            throw new IllegalArgumentException("Maximum plies must not exceed " + GameState.MAX_PLY + ": " + maxPlies);
+        }
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     *
+     * Stops the match early by a sequential probability ratio test of the Elo difference {@code elo0} against {@code elo1},
+     * with the specified error rates of accepting {@code elo1} when {@code elo0} holds ({@code alpha}) and the reverse ({@code beta}).
+     *
+     * @param elo0  the Elo difference of the null hypothesis
+     * @param elo1  the Elo difference of the alternative hypothesis
+     * @param alpha the false positive rate
+     * @param beta  the false negative rate
+     * @author Chay Wen Ning
+     */
+    public void setSprt(double elo0, double elo1, double alpha, double beta) {
+        this.sprt = true;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     *
+     * Sets the {@code Tablebase} that ends a game once it reaches a position of its tables, {@code null} for none.
+     *
+     * @param tablebase the {@code Tablebase} to adjudicate games with
+     * @author Chay Wen Ning
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     *
+     * Sets the file every finished game is appended to, {@code null} for none.
+     *
+     * @param resultFile the result file
+     * @author Chay Wen Ning
+     */
+    public void setResultFile(File resultFile) {
+        this.resultFile = resultFile;
+    }
+
+    /**
+     *
+     * Sets the seed of the random openings, so that a match can be replayed with the same openings.
+     *
+     * @param seed the seed of the openings
+     * @author Chay Wen Ning
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     *
+     * Plays the match on the worker threads until every game is played or the SPRT stops it, and prints its progress.
+     *
+     * @throws IOException if the result file cannot be written
+     * @throws InterruptedException if the calling thread is interrupted while the games are played
+     * @author Chay Wen Ning
+     */
+    public void run() throws IOException, InterruptedException {
+        if (resultFile != null) {
+            results = new PrintWriter(new FileWriter(resultFile, true));
+            results.println("# " + players[0] + " vs " + players[1] + ", " + (nodes > 0 ? nodes + " nodes" : moveTime + " ms")
+                    + " per move, seed " + seed);
+            results.flush();
+        }
+
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < Math.min(concurrency, games / 2); i++) {
+            Thread worker = new Thread(this::runWorker, "Tournament worker " + i);
+            worker.setUncaughtExceptionHandler((thread, ex) -> {
+                synchronized (failures) {
+                    failures.add(ex);
+                }
+                finished = true;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            finished = true;
+            if (results != null) {
+                results.close();
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Tournament worker failed", failures.get(0));
+        }
+        printProgress();
+    }
+
+    /**
+     *
+     * Plays pairs of games on the calling worker thread, with its own pair of players, until the match is finished.
+     *
+     * @author Chay Wen Ning
+     */
+    private void runWorker() {
+        SearchEngine[] engines = new SearchEngine[2];
+        try {
+            for (int i = 0; i < 2; i++) {
+                engines[i] = createEngine(players[i]);
+            }
+            int pair;
+            while (!finished && (pair = nextPair.getAndIncrement()) < games / 2) {
+                int[] opening = createOpening(pair);
+                for (int first = 0; first < 2 && !finished; first++) {
+                    GameResult result = playGame(engines[first], engines[1 - first], opening);
+                    addResult(2 * pair + first, first, result);
+                }
+            }
+        } finally {
+            for (SearchEngine engine : engines) {
+                if (engine instanceof UciClient) {
+                    ((UciClient) engine).close();
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns a new computer player of the specified kind, with the time control of the match.
+     *
+     * @param player the kind of player, {@code alphabeta}, {@code mcts} or {@code uci:<command>}
+     * @return the computer player
+     * @throws UncheckedIOException if the engine process of a {@code uci} player cannot be started
+     * @author Chay Wen Ning
+     */
+    private SearchEngine createEngine(String player) {
+        SearchEngine engine;
+        if (player.startsWith("uci:")) {
+            try {
+                UciClient client = new UciClient(Arrays.asList(player.substring(4).trim().split("\\s+")));
+                client.setNodeLimit(nodes);
+                engine = client;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        } else if (player.equals("mcts")) {
+            MctsEngine mcts = new MctsEngine();
+            mcts.setPlayoutLimit(nodes);
+            engine = mcts;
+        } else {
+            Engine alphaBeta = new Engine();
+            alphaBeta.setNodeLimit(nodes);
+            engine = alphaBeta;
+        }
+        engine.setTimeLimit(nodes > 0 ? 0 : moveTime);
+        return engine;
+    }
+
+    /**
+     *
+     * Returns the moves of the random opening of the specified pair of games, played from the starting position with a seed of the pair,
+     * so that a match with the same seed has the same openings. An opening that ends the game is drawn again.
+     *
+     * @param pair the index of the pair of games
+     * @return the encoded moves of the opening
+     * @author Chay Wen Ning
+     */
+    private int[] createOpening(int pair) {
+        SplittableRandom random = new SplittableRandom(seed + pair);
+        int[] moves = new int[Move.MAX_MOVES];
+        int[] opening = new int[openingPlies];
+        while (true) {
+            GameState state = new GameState();
+            int ply = 0;
+            for (; ply < openingPlies && !state.isGameOver(); ply++) {
+                int count = state.generateMoves(moves);
+                if (count == 0) {
+                    break;
+                }
+                opening[ply] = moves[random.nextInt(count)];
+                state.makeMove(opening[ply]);
+            }
+            if (!state.isGameOver() && state.generateMoves(moves) > 0) {
+                return Arrays.copyOf(opening, ply);
+            }
+        }
+    }
+
+    /**
+     *
+     * Plays a game from the specified opening between the two specified players, and returns its result.
+     *
+     * @param first   the player who moves first after the opening
+     * @param second  the other player
+     * @param opening the encoded moves of the opening
+     * @return the result of the game
+     * @author Chay Wen Ning
+     */
+    private GameResult playGame(SearchEngine first, SearchEngine second, int[] opening) {
+        for (SearchEngine engine : new SearchEngine[] { first, second }) {
+            if (engine instanceof Engine) {
+                ((Engine) engine).clearHash();
+            } else if (engine instanceof UciClient) {
+                ((UciClient) engine).newGame();
+            }
+        }
+
+        StringBuilder record = new StringBuilder();
+        GameState state = new GameState();
+        for (int move : opening) {
+            record.append(Move.toString(move)).append(' ');
+            state.makeMove(move);
+        }
+        // a copy has an empty undo stack, so that the game may last up to GameState.MAX_PLY plies after the opening
+        state = new GameState(state);
+        SearchEngine[] engines = { first, second };
+        int firstColor = state.getPlayerTurn();
+        int[] moves = new int[Move.MAX_MOVES];
+
+        while (state.getPly() < maxPlies) {
+            if (state.isGameOver()) {
+                return new GameResult(state.getWinner() == firstColor ? 0 : 1, "Sun captured", firstColor, record);
+            }
+            int mover = state.getPlayerTurn() == firstColor ? 0 : 1;
+            if (state.generateMoves(moves) == 0) {
+                return new GameResult(-1, "no moves", firstColor, record);
+            }
+            if (tablebase != null) {
+                int result = tablebase.probe(state);
+                if (result != Tablebase.UNKNOWN) {
+                    return new GameResult(result == 0 ? -1 : result > 0 ? mover : 1 - mover, "tablebase", firstColor, record);
+                }
+            }
+
+            int move = engines[mover].findBestMove(state);
+            if (!state.isLegalMove(move)) {
+                return new GameResult(1 - mover, "illegal move " + Move.toString(move), firstColor, record);
+            }
+            record.append(Move.toString(move)).append(' ');
+            state.makeMove(move);
+        }
+        return new GameResult(-1, "max plies", firstColor, record);
+    }
+
+    /**
+     *
+     * Records the result of a finished game: updates the score of the first player, appends the game to the result file,
+     * prints the progress, and stops the match if the SPRT is decided.
+     *
+     * @param game   the number of the game
+     * @param first  the index of the player who moved first, {@code 0} for the first player of the match
+     * @param result the result of the game
+     * @author Chay Wen Ning
+     */
+    private synchronized void addResult(int game, int first, GameResult result) {
+        // the winner of a GameResult is 0 for the player who moved first
+        int winner = result.winner < 0 ? -1 : result.winner == 0 ? first : 1 - first;
+        if (winner == 0) {
+            wins++;
+        } else if (winner == 1) {
+            losses++;
+        } else {
+            draws++;
+        }
+
+        if (results != null) {
+            // the label is by color, 1-0 if the yellow player won, as the OpeningBookBuilder reads it
+            int winnerColor = result.winner == 0 ? result.firstColor : 1 - result.firstColor;
+            String score = result.winner < 0 ? "1/2-1/2" : winnerColor == 0 ? "1-0" : "0-1";
+            results.println("# " + game + " " + (first == 0 ? "A" : "B") + " first, " + result.reason);
+            results.println(result.moves + score);
+            results.flush();
+        }
+
+        boolean decided = false;
+        if (sprt && sprtResult == null) {
+            double llr = getLlr();
+            if (llr >= Math.log((1 - beta) / alpha)) {
+                sprtResult = "H1 accepted (elo >= " + elo1 + ")";
+            } else if (llr <= Math.log(beta / (1 - alpha))) {
+                sprtResult = "H0 accepted (elo <= " + elo0 + ")";
+            }
+            if (sprtResult != null) {
+                decided = true;
+                finished = true;
+            }
+        }
+        if ((wins + draws + losses) % REPORT_INTERVAL == 0 || decided) {
+            printProgress();
+        }
+    }
+
+    /**
+     *
+     * Prints the score, the Elo difference of the first player with its confidence interval, and the state of the SPRT.
+     *
+     * @author Chay Wen Ning
+     */
+    private synchronized void printProgress() {
+        int played = wins + draws + losses;
+        double[] interval = getEloInterval();
+        StringBuilder progress = new StringBuilder();
+        progress.append(String.format("Games %d: +%d =%d -%d, score %.1f%%, Elo %.1f [%.1f, %.1f]",
+                played, wins, draws, losses, 100 * getScore(), toElo(getScore()), interval[0], interval[1]));
+        if (sprt) {
+            progress.append(String.format(", LLR %.2f (%.2f, %.2f)", getLlr(), Math.log(beta / (1 - alpha)), Math.log((1 - beta) / alpha)));
+            if (sprtResult != null) {
+                progress.append(", ").append(sprtResult);
+            }
+        }
+        System.out.println(progress);
+    }
+
+    /**
+     *
+     * Returns the score of the first player, as the mean points of a game: {@code 1} for a win, {@code 0.5} for a draw and {@code 0} for a loss.
+     *
+     * @return the score of the first player, {@code 0.5} before any game
+     * @author Chay Wen Ning
+     */
+    public synchronized double getScore() {
+        int played = wins + draws + losses;
+        return played == 0 ? 0.5 : (wins + 0.5 * draws) / played;
+    }
+
+    /**
+     *
+     * Returns the variance of the points of a game of the first player.
+     *
+     * @return the variance of the points of a game
+     * @author Chay Wen Ning
+     */
+    private synchronized double getVariance() {
+        int played = wins + draws + losses;
+        if (played == 0) {
+            return 0;
+        }
+        double score = getScore();
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / played;
+    }
+
+    /**
+     *
+     * Returns the 95% confidence interval of the Elo difference of the first player.
+     *
+     * @return the lower and upper bounds of the Elo difference
+     * @author Chay Wen Ning
+     */
+    public synchronized double[] getEloInterval() {
+        int played = wins + draws + losses;
+        double margin = played == 0 ? 0.5 : CONFIDENCE_Z * Math.sqrt(getVariance() / played);
+        return new double[] { toElo(getScore() - margin), toElo(getScore() + margin) };
+    }
+
+    /**
+     *
+     * Returns the log-likelihood ratio of the results of {@code elo1} against {@code elo0}, by the normal approximation of the points of a game.
+     *
+     * @return the log-likelihood ratio
+     * @author Chay Wen Ning
+     */
+    public synchronized double getLlr() {
+        double variance = getVariance();
+        if (variance == 0) {
+            return 0;
+        }
+        double score0 = toScore(elo0);
+        double score1 = toScore(elo1);
+        return (wins + draws + losses) * (score1 - score0) * (2 * getScore() - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     *
+     * Returns the Elo difference of the specified score, infinite for a score of {@code 0} or {@code 1}.
+     *
+     * @param score the score, from {@code 0} to {@code 1}
+     * @return the Elo difference
+     * @author Chay Wen Ning
+     */
+    static double toElo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     *
+     * Returns the expected score of the specified Elo difference.
+     *
+     * @param elo the Elo difference
+     * @return the expected score, from {@code 0} to {@code 1}
+     * @author Chay Wen Ning
+     */
+    static double toScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * The {@code GameResult} class; The result of a finished game, with how it ended and its moves.
+     */
+    private static final class GameResult {
+        final int winner; // 0 for the player who moved first, 1 for the other, -1 for a draw
+        final String reason;
+        final int firstColor; // the color index of the player who moved first
+        final String moves;
+
+        GameResult(int winner, String reason, int firstColor, StringBuilder moves) {
+            this.winner = winner;
+            this.reason = reason;
+            this.firstColor = firstColor;
+            this.moves = moves.toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java engine.Tournament <playerA> <playerB> [-games n] [-concurrency n] [-movetime ms | -nodes n]"
+                    + " [-openings plies] [-maxplies n] [-sprt elo0 elo1] [-alpha a] [-beta b] [-tablebase directory] [-out resultFile] [-seed n]");
+            System.exit(1);
+        }
+
+        Tournament tournament = new Tournament(args[0], args[1]);
+        long moveTime = Engine.DEFAULT_TIME_LIMIT;
+        long nodes = 0;
+        double[] sprt = null;
+        double alpha = DEFAULT_ALPHA;
+        double beta = DEFAULT_BETA;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-games":
+                    tournament.setGames(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-concurrency":
+                    tournament.setConcurrency(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-movetime":
+                    moveTime = Long.parseLong(args[i + 1]);
+                    break;
+                case "-nodes":
+                    nodes = Long.parseLong(args[i + 1]);
+                    break;
+                case "-openings":
+                    tournament.setOpeningPlies(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-maxplies":
+                    tournament.setMaxPlies(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-sprt":
+                    if (i + 2 >= args.length) {
+                        System.err.println("-sprt needs elo0 and elo1");
+                        System.exit(1);
+                    }
+                    sprt = new double[] { Double.parseDouble(args[i + 1]), Double.parseDouble(args[i + 2]) };
+                    i++;
+                    break;
+                case "-alpha":
+                    alpha = Double.parseDouble(args[i + 1]);
+                    break;
+                case "-beta":
+                    beta = Double.parseDouble(args[i + 1]);
+                    break;
+                case "-tablebase":
+                    tournament.setTablebase(new Tablebase(new File(args[i + 1])));
+                    break;
+                case "-out":
+                    tournament.setResultFile(new File(args[i + 1]));
+                    break;
+                case "-seed":
+                    tournament.setSeed(Long.parseLong(args[i + 1]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        tournament.setTimeControl(moveTime, nodes);
+        if (sprt != null) {
+            tournament.setSprt(sprt[0], sprt[1], alpha, beta);
+        }
+        tournament.run();
+    }
+}
@@ -0,0 +1,582 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code TrainingDataGenerator} class; Plays self-play games of the {@code Engine} in parallel and samples their positions,
+ * with the score of the search and the result of the game, as training data for evaluation models.
+ * <p>
+ * Every game starts with random plies, so that the games differ, and is then played by an {@code Engine} with a fixed number of nodes per move.
+ * A position is sampled at random, once its search is done, unless it is not quiet: the {@code Sun} piece of the player to move is attacked,
+ * the best move is a capture, or the score is a win or a loss. A game ends with the capture of a {@code Sun} piece, with a win or a loss once
+ * the score of a search is one, or with a draw at the maximum number of plies. Each position is kept once, by its key, across all games.
+ * <p>
+ * Positions are written as fixed-size little-endian records of {@code RECORD_SIZE} bytes to shard files named {@code <prefix>-00000.bin},
+ * {@code <prefix>-00001.bin} and so on, with a new shard every {@code shardRecords} records. Every worker thread fills its own buffer
+ * and hands it whole to a {@code FileChannel} once it is full, so that the threads rarely wait on each other or on the disk.
+ * A record has:
+ * <ul>
+ * <li>bytes 0 to 7: the mask of the pieces of the first player</li>
+ * <li>bytes 8 to 47: the mask of the pieces of each piece type, by piece type index</li>
+ * <li>bytes 48 to 55: the mask of the {@code Point} pieces moving down the board</li>
+ * <li>byte 56: the index of the player to move</li>
+ * <li>byte 57: the play counts of the phase of the {@code Time} and {@code Plus} switch, the first player's in the low 4 bits</li>
+ * <li>bytes 58 and 59: the score of the search, from the point of view of the player to move</li>
+ * <li>byte 60: the result of the game for the player to move, {@code 2} for a win, {@code 1} for a draw and {@code 0} for a loss</li>
+ * <li>bytes 61 and 62: the ply of the position in its game; byte 63 is not used</li>
+ * </ul>
+ * <p>
+ * Usage: {@code java engine.TrainingDataGenerator <prefix> [-positions n] [-threads n] [-nodes n] [-openings plies] [-maxplies n]
+ * [-sample rate] [-shard records] [-seed n]}.
+ *
+ * @see engine.Engine
+ * @see engine.Tournament
+ * @author Chay Wen Ning
+ */
+public class TrainingDataGenerator {
+    // Size of a record in bytes
+    public static final int RECORD_SIZE = 64;
+
+    // Offsets of the fields of a record
+    static final int COLOR_OFFSET = 0;
+    static final int PIECE_TYPE_OFFSET = 8;
+    static final int FLIPPED_POINT_OFFSET = 48;
+    static final int TURN_OFFSET = 56;
+    static final int PLAY_COUNTS_OFFSET = 57;
+    static final int SCORE_OFFSET = 58;
+    static final int RESULT_OFFSET = 60;
+    static final int PLY_OFFSET = 61;
+
+    // Results of the game stored in a record, for the player to move
+    public static final int LOSS = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+
+    // Default number of positions to generate, and of records per shard file
+    public static final long DEFAULT_POSITIONS = 1_000_000;
+    public static final int DEFAULT_SHARD_RECORDS = 1 << 20;
+
+    // Default number of nodes of a search, random plies of an opening, and plies after which a game is a draw
+    public static final long DEFAULT_NODES = 5000;
+    public static final int DEFAULT_OPENING_PLIES = 8;
+    public static final int DEFAULT_MAX_PLIES = 400;
+
+    // Default chance of sampling a quiet position
+    public static final double DEFAULT_SAMPLE_RATE = 0.5;
+
+    // Number of records of the buffer of a worker thread
+    private static final int BUFFER_RECORDS = 4096;
+
+    // Number of games between two progress reports
+    private static final int REPORT_INTERVAL = 100;
+
+    private final String prefix;
+    private long positions = DEFAULT_POSITIONS;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long nodes = DEFAULT_NODES;
+    private int openingPlies = DEFAULT_OPENING_PLIES;
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    private double sampleRate = DEFAULT_SAMPLE_RATE;
+    private int shardRecords = DEFAULT_SHARD_RECORDS;
+    private long seed = System.nanoTime();
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private KeySet keys;
+    private volatile boolean finished;
+    private long startTime;
+    private FileChannel shard; // guarded by this
+    private int shardIndex; // guarded by this
+    private int recordsInShard; // guarded by this
+    private long written; // guarded by this
+
+    /**
+     *
+     * Constructs a new {@code TrainingDataGenerator} object that writes shard files with the specified path prefix.
+     *
+     * @param prefix the path prefix of the shard files, e.g. {@code data/selfplay}
+     * @author Chay Wen Ning
+     */
+    public TrainingDataGenerator(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     *
+     * Sets the number of distinct positions to generate.
+     *
+     * @param positions the number of positions
+     * @author Chay Wen Ning
+     */
+    public void setPositions(long positions) {
+        this.positions = positions;
+    }
+
+    /**
+     *
+     * Sets the number of games played at once, each on its own worker thread.
+     *
+     * @param threads the number of games played at once
+     * @author Chay Wen Ning
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     *
+     * Sets the number of nodes of the search of a move.
+     *
+     * @param nodes the nodes of a move
+     * @author Chay Wen Ning
+     */
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     *
+     * Sets the number of random plies of an opening.
+     *
+     * @param openingPlies the number of random plies
+     * @author Chay Wen Ning
+     */
+    public void setOpeningPlies(int openingPlies) {
+        this.openingPlies = openingPlies;
+    }
+
+    /**
+     *
+     * Sets the number of plies after the opening at which a game is a draw.
+     *
+     * @param maxPlies the maximum number of plies of a game
+     * @throws IllegalArgumentException if the number exceeds {@code GameState.MAX_PLY}
+     * @author Chay Wen Ning
+     */
+    public void setMaxPlies(int maxPlies) {
+        if (maxPlies > GameState.MAX_PLY) {
+            throw new IllegalArgumentException("Maximum plies must not exceed " + GameState.MAX_PLY + ": " + maxPlies);
+        }
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     *
+     * Sets the chance of sampling a quiet position.
+     *
+     * @param sampleRate the chance of sampling, between {@code 0} and {@code 1}
+     * @author Chay Wen Ning
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     *
+     * Sets the number of records of a shard file.
+     *
+     * @param shardRecords the number of records of a shard file
+     * @author Chay Wen Ning
+     */
+    public void setShardRecords(int shardRecords) {
+        this.shardRecords = Math.max(1, shardRecords);
+    }
+
+    /**
+     *
+     * Sets the seed of the random openings and of the sampling.
+     *
+     * @param seed the seed
+     * @author Chay Wen Ning
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     *
+     * Returns the number of positions written to the shard files.
+     *
+     * @return the number of positions written
+     * @author Chay Wen Ning
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     *
+     * Plays self-play games on the worker threads until the number of positions is generated, writes them to the shard files,
+     * and prints its progress.
+     *
+     * @throws IOException if a shard file cannot be written
+     * @throws InterruptedException if the calling thread is interrupted while the games are played
+     * @author Chay Wen Ning
+     */
+    public void run() throws IOException, InterruptedException {
+        keys = new KeySet(positions);
+        startTime = System.nanoTime();
+
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::runWorker, "Training data worker " + i);
+            worker.setUncaughtExceptionHandler((thread, ex) -> {
+                synchronized (failures) {
+                    failures.add(ex);
+                }
+                finished = true;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            finished = true;
+            synchronized (this) {
+                if (shard != null) {
+                    shard.close();
+                    shard = null;
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            Throwable failure = failures.get(0);
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            throw new IllegalStateException("Training data worker failed", failure);
+        }
+        printProgress(nextGame.get());
+    }
+
+    /**
+     *
+     * Plays self-play games on the calling worker thread, with its own {@code Engine}, until enough positions are generated,
+     * and writes the buffer of its records whenever it is full.
+     *
+     * @throws UncheckedIOException if a shard file cannot be written
+     * @author Chay Wen Ning
+     */
+    private void runWorker() {
+        Engine engine = new Engine();
+        engine.setNodeLimit(nodes);
+        engine.setTimeLimit(0);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer game = ByteBuffer.allocate(GameState.MAX_PLY * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (!finished) {
+                int index = nextGame.getAndIncrement();
+                game.clear();
+                playGame(engine, new SplittableRandom(seed + index), game);
+                game.flip();
+                while (game.hasRemaining()) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer);
+                    }
+                    int length = Math.min(game.remaining(), buffer.remaining());
+                    buffer.put(game.slice().limit(length));
+                    game.position(game.position() + length);
+                }
+                if ((index + 1) % REPORT_INTERVAL == 0) {
+                    printProgress(index + 1);
+                }
+            }
+            flush(buffer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     *
+     * Plays a self-play game from a random opening, and puts a record of every position sampled into the specified buffer.
+     *
+     * @param engine the {@code Engine} that plays both sides
+     * @param random the random numbers of the opening and of the sampling
+     * @param game   the buffer of the records of the game
+     * @author Chay Wen Ning
+     */
+    private void playGame(Engine engine, SplittableRandom random, ByteBuffer game) {
+        engine.clearHash();
+        int[] moves = new int[Move.MAX_MOVES];
+        GameState state = new GameState();
+        for (int ply = 0; ply < openingPlies && !state.isGameOver(); ply++) {
+            int count = state.generateMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            state.makeMove(moves[random.nextInt(count)]);
+        }
+        int openingPly = state.getPly();
+        // a copy has an empty undo stack, so that the game may last up to GameState.MAX_PLY plies after the opening
+        state = new GameState(state);
+
+        int winner = -1;
+        while (true) {
+            if (state.isGameOver()) {
+                winner = state.getWinner();
+                break;
+            }
+            if (state.getPly() >= maxPlies || state.generateMoves(moves) == 0) {
+                break;
+            }
+            int move = engine.findBestMove(state);
+            if (move == Move.NONE) {
+                break;
+            }
+            int score = engine.getLastScore();
+            if (Math.abs(score) >= Search.MIN_WIN_SCORE) {
+                winner = score > 0 ? state.getPlayerTurn() : 1 - state.getPlayerTurn();
+                break;
+            }
+            boolean quiet = !state.isSunAttacked(state.getPlayerTurn())
+                    && (state.getOccupiedMask() & (1L << Move.getTo(move))) == 0;
+            // the game is played to its end after enough positions are generated, so that its records have their result
+            if (quiet && !finished && random.nextDouble() < sampleRate) {
+                if (!keys.add(state.getKey())) {
+                    duplicates.incrementAndGet();
+                } else if (accepted.incrementAndGet() <= positions) {
+                    putRecord(game, state, score, openingPly + state.getPly());
+                } else {
+                    finished = true;
+                }
+            }
+            state.makeMove(move);
+        }
+
+        for (int offset = 0; offset < game.position(); offset += RECORD_SIZE) {
+            int result = winner < 0 ? DRAW : winner == game.get(offset + TURN_OFFSET) ? WIN : LOSS;
+            game.put(offset + RESULT_OFFSET, (byte) result);
+        }
+    }
+
+    /**
+     *
+     * Puts a record of the specified {@code GameState} into the specified buffer, with the result of the game left as a draw.
+     *
+     * @param buffer the buffer to put the record into
+     * @param state  the {@code GameState} of the record
+     * @param score  the score of the search, from the point of view of the player to move
+     * @param ply    the ply of the position in its game
+     * @author Chay Wen Ning
+     */
+    private static void putRecord(ByteBuffer buffer, GameState state, int score, int ply) {
+        int offset = buffer.position();
+        buffer.putLong(offset + COLOR_OFFSET, state.getColorMask(0));
+        for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+            buffer.putLong(offset + PIECE_TYPE_OFFSET + type * Long.BYTES, state.getPieceTypeMask(type));
+        }
+        buffer.putLong(offset + FLIPPED_POINT_OFFSET, state.getFlippedPointMask());
+        buffer.put(offset + TURN_OFFSET, (byte) state.getPlayerTurn());
+        buffer.put(offset + PLAY_COUNTS_OFFSET, (byte) (state.getPlayCount(0) | (state.getPlayCount(1) << 4)));
+        buffer.putShort(offset + SCORE_OFFSET, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+        buffer.put(offset + RESULT_OFFSET, (byte) DRAW);
+        buffer.putShort(offset + PLY_OFFSET, (short) ply);
+        buffer.put(offset + PLY_OFFSET + Short.BYTES, (byte) 0);
+        buffer.position(offset + RECORD_SIZE);
+    }
+
+    /**
+     *
+     * Sets the specified {@code GameState} to the position of the record at the specified offset of a shard file.
+     *
+     * @param records the little-endian records of a shard file
+     * @param offset  the offset of the record in bytes
+     * @param state   the {@code GameState} to set
+     * @author Chay Wen Ning
+     */
+    public static void readPosition(ByteBuffer records, int offset, GameState state) {
+        int playCounts = records.get(offset + PLAY_COUNTS_OFFSET);
+        state.clear(records.get(offset + TURN_OFFSET), playCounts & 0xF, (playCounts >>> 4) & 0xF);
+        long yellow = records.getLong(offset + COLOR_OFFSET);
+        long flipped = records.getLong(offset + FLIPPED_POINT_OFFSET);
+        for (int type = 0; type < GameState.NO_OF_PIECE_TYPE; type++) {
+            long pieces = records.getLong(offset + PIECE_TYPE_OFFSET + type * Long.BYTES);
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                state.addPiece((yellow & (1L << square)) != 0 ? 0 : 1, type, square, (flipped & (1L << square)) != 0);
+            }
+        }
+    }
+
+    /**
+     *
+     * Returns the score of the search of the record at the specified offset of a shard file, from the point of view of the player to move.
+     *
+     * @param records the little-endian records of a shard file
+     * @param offset  the offset of the record in bytes
+     * @return the score of the search
+     * @author Chay Wen Ning
+     */
+    public static int readScore(ByteBuffer records, int offset) {
+        return records.getShort(offset + SCORE_OFFSET);
+    }
+
+    /**
+     *
+     * Returns the result of the game of the record at the specified offset of a shard file, for the player to move.
+     *
+     * @param records the little-endian records of a shard file
+     * @param offset  the offset of the record in bytes
+     * @return {@code WIN}, {@code DRAW} or {@code LOSS}
+     * @author Chay Wen Ning
+     */
+    public static int readResult(ByteBuffer records, int offset) {
+        return records.get(offset + RESULT_OFFSET);
+    }
+
+    /**
+     *
+     * Writes the records of the specified buffer to the shard files, opening the next shard file whenever the current one is full,
+     * and clears the buffer.
+     *
+     * @param buffer the buffer of whole records
+     * @throws IOException if a shard file cannot be written
+     * @author Chay Wen Ning
+     */
+    private synchronized void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            if (shard == null || recordsInShard == shardRecords) {
+                if (shard != null) {
+                    shard.close();
+                }
+                File file = new File(String.format("%s-%05d.bin", prefix, shardIndex++));
+                shard = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                recordsInShard = 0;
+            }
+            int records = Math.min(buffer.remaining() / RECORD_SIZE, shardRecords - recordsInShard);
+            ByteBuffer slice = buffer.slice().limit(records * RECORD_SIZE);
+            while (slice.hasRemaining()) {
+                shard.write(slice);
+            }
+            buffer.position(buffer.position() + records * RECORD_SIZE);
+            recordsInShard += records;
+            written += records;
+        }
+        buffer.clear();
+    }
+
+    /**
+     *
+     * Prints the number of games played, positions written and duplicate positions skipped, and the rate of positions per hour.
+     *
+     * @param games the number of games played
+     * @author Chay Wen Ning
+     */
+    private void printProgress(int games) {
+        long count = Math.min(accepted.get(), positions);
+        double hours = (System.nanoTime() - startTime) / 3.6e12;
+        System.out.printf("Games: %d, positions: %d, duplicates: %d, %.0f positions/hour%n", games, count, duplicates.get(), count / hours);
+    }
+
+    /**
+     * A set of position keys of fixed capacity, with open addressing in a {@code long} array so that it holds millions of keys
+     * without boxing them. The key {@code 0} marks an empty slot, and is held by a flag of its own.
+     */
+    private static final class KeySet {
+        // Largest number of slots, so that the array length stays a positive power of two
+        private static final int MAX_LENGTH = 1 << 30;
+
+        private final long[] slots;
+        private final int mask;
+        private boolean hasZero;
+        private long size;
+
+        private KeySet(long capacity) {
+            // at most half full, so that probe sequences stay short; a larger capacity is clamped to what the largest array holds
+            long wanted = Math.max(16, Math.min(capacity, MAX_LENGTH / 2) * 2);
+            int length = (int) Math.min(MAX_LENGTH, Long.highestOneBit(wanted - 1) << 1);
+            slots = new long[length];
+            mask = length - 1;
+        }
+
+        /**
+         * Adds the specified key, and returns {@code true} if it was not in the set. Once the set is half full, no key is added
+         * and {@code true} is returned, so that a generator asked for more positions than the set holds keeps going.
+         */
+        private synchronized boolean add(long key) {
+            if (key == 0) {
+                boolean added = !hasZero;
+                hasZero = true;
+                return added;
+            }
+            int index = (int) (key ^ (key >>> 32)) & mask;
+            while (slots[index] != 0) {
+                if (slots[index] == key) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            if (size * 2 < slots.length) {
+                slots[index] = key;
+                size++;
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java engine.TrainingDataGenerator <prefix> [-positions n] [-threads n] [-nodes n] [-openings plies]"
+                    + " [-maxplies n] [-sample rate] [-shard records] [-seed n]");
+            System.exit(1);
+        }
+
+        TrainingDataGenerator generator = new TrainingDataGenerator(args[0]);
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-positions":
+                    generator.setPositions(Long.parseLong(args[i + 1]));
+                    break;
+                case "-threads":
+                    generator.setThreads(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-nodes":
+                    generator.setNodes(Long.parseLong(args[i + 1]));
+                    break;
+                case "-openings":
+                    generator.setOpeningPlies(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-maxplies":
+                    generator.setMaxPlies(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-sample":
+                    generator.setSampleRate(Double.parseDouble(args[i + 1]));
+                    break;
+                case "-shard":
+                    generator.setShardRecords(Integer.parseInt(args[i + 1]));
+                    break;
+                case "-seed":
+                    generator.setSeed(Long.parseLong(args[i + 1]));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        generator.run();
+        System.out.println("Written: " + generator.getWritten() + " positions");
+    }
+}
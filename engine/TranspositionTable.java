@@ -0,0 +1,381 @@
+package engine;
+
+import chessgame.Move;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code TranspositionTable} class; A fixed-size hash table of searched positions, indexed by the position key of a {@code GameState}.
+ * It lets a {@code Search} reuse the result of a position reached again through another order of moves.
+ * <p>
+ * The table is a power-of-two number of buckets stored in a single {@code long[]} array. Each bucket has two slots:
+ * a depth-preferred slot, which keeps the deepest entry of the current search, and an always-replace slot, which takes every other entry.
+ * A slot is a pair of {@code long}s, the position key XOR-ed with the entry data, followed by the entry data.
+ * A torn slot written by two threads at once then fails the key check and is treated as empty,
+ * so that many search threads can share the table without any locks.
+ * <p>
+ * The entry data packs the best move, the score, the depth, the bound type and the generation of the search into a single {@code long}.
+ * Use the {@code getMove}, {@code getScore}, {@code getDepth} and {@code getBound} methods to unpack the data returned by {@code probe}.
+ *
+ * @see engine.Search
+ * @see chessgame.GameState#getKey()
+ * @author Chay Wen Ning
+ */
+public class TranspositionTable {
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    // Data returned by probe when the position is not found
+    public static final long NO_ENTRY = 0L;
+
+    // Bound types of an entry score
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+
+    // Longs per slot and per bucket
+    private static final int SLOT_SIZE = 2;
+    private static final int BUCKET_SIZE = 2 * SLOT_SIZE;
+    private static final int BYTES_PER_BUCKET = BUCKET_SIZE * Long.BYTES;
+
+    // Layout of the entry data: move (12 bits), score (16 bits), depth (8 bits), bound (2 bits), generation (8 bits)
+    private static final int SCORE_SHIFT = 12;
+    private static final int DEPTH_SHIFT = 28;
+    private static final int BOUND_SHIFT = 36;
+    private static final int GENERATION_SHIFT = 38;
+    private static final int GENERATION_MASK = 0xFF;
+
+    // Number of buckets sampled by hashfull
+    private static final int HASHFULL_SAMPLE = 500;
+
+    private long[] table;
+    private int bucketMask;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     *
+     * Constructs a new {@code TranspositionTable} object of the default size.
+     *
+     * @author Chay Wen Ning
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     *
+     * Constructs a new {@code TranspositionTable} object of at most the specified size in megabytes.
+     *
+     * @param sizeMb the size of the table in megabytes
+     * @author Chay Wen Ning
+     */
+    public TranspositionTable(int sizeMb) {
+        resize(sizeMb);
+    }
+
+    /**
+     *
+     * Resizes the table to the largest power-of-two number of buckets that fits in the specified size in megabytes, and clears it.
+     * The table must not be in use by a search while it is resized.
+     *
+     * @param sizeMb the size of the table in megabytes
+     * @throws IllegalArgumentException if the size is not positive
+     * @author Chay Wen Ning
+     */
+    public void resize(int sizeMb) {
+        if (sizeMb <= 0) {
+            throw new IllegalArgumentException("Transposition table size must be positive: " + sizeMb);
+        }
+        long buckets = Long.highestOneBit((long) sizeMb * 1024 * 1024 / BYTES_PER_BUCKET);
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_SIZE));
+        table = new long[(int) buckets * BUCKET_SIZE];
+        bucketMask = (int) buckets - 1;
+        clear();
+    }
+
+    /**
+     *
+     * Removes every entry and resets the statistics of the table.
+     *
+     * @author Chay Wen Ning
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+        resetStatistics();
+    }
+
+    /**
+     *
+     * Starts a new generation of entries. Entries of older searches are replaced first.
+     * Call this method once before every search, not by every search thread.
+     *
+     * @author Chay Wen Ning
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     *
+     * Returns the size of the table in bytes.
+     *
+     * @return the size of the table in bytes
+     * @author Chay Wen Ning
+     */
+    public long getSizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     *
+     * Returns the number of entries the table can hold.
+     *
+     * @return the number of slots of the table
+     * @author Chay Wen Ning
+     */
+    public int getCapacity() {
+        return table.length / SLOT_SIZE;
+    }
+
+    /**
+     *
+     * Returns the entry data of the specified position key, or {@code NO_ENTRY} if the position is not in the table.
+     *
+     * @param key the position key
+     * @return the entry data of the position
+     * @author Chay Wen Ning
+     */
+    public long probe(long key) {
+        probes.increment();
+        long[] table = this.table;
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + BUCKET_SIZE; slot += SLOT_SIZE) {
+            long data = table[slot + 1];
+            if (data != NO_ENTRY && (table[slot] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     *
+     * Stores an entry for the specified position key.
+     * The entry goes into the depth-preferred slot if that slot holds the same position,
+     * an entry of an older search, or an entry of no greater depth; otherwise it goes into the always-replace slot.
+     * A move of {@code Move.NONE} keeps the move of an existing entry of the same position.
+     *
+     * @param key   the position key
+     * @param move  the encoded best move, {@code Move.NONE} if unknown
+     * @param score the score of the position, adjusted with {@code toTableScore}
+     * @param depth the depth searched in plies
+     * @param bound the bound type of the score
+     * @author Chay Wen Ning
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        stores.increment();
+        long[] table = this.table;
+        int index = bucketIndex(key);
+
+        int slot = index + SLOT_SIZE;
+        long preferred = table[index + 1];
+        if (preferred == NO_ENTRY || (table[index] ^ preferred) == key || getGeneration(preferred) != generation
+                || getDepth(preferred) <= depth) {
+            slot = index;
+        }
+
+        long old = table[slot + 1];
+        if (move == Move.NONE && old != NO_ENTRY && (table[slot] ^ old) == key) {
+            move = getMove(old);
+        }
+
+        long data = pack(move, score, depth, bound, generation);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     *
+     * Returns the number of entries of the current search per thousand slots, sampled from the start of the table.
+     *
+     * @return the fill rate of the table in permill
+     * @author Chay Wen Ning
+     */
+    public int hashfull() {
+        long[] table = this.table;
+        int buckets = Math.min(HASHFULL_SAMPLE, bucketMask + 1);
+        int used = 0;
+        for (int slot = 0; slot < buckets * BUCKET_SIZE; slot += SLOT_SIZE) {
+            long data = table[slot + 1];
+            if (data != NO_ENTRY && getGeneration(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / (buckets * 2);
+    }
+
+    /**
+     *
+     * Returns the number of probes since the statistics were last reset.
+     *
+     * @return the number of probes
+     * @author Chay Wen Ning
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     *
+     * Returns the number of probes that found their position since the statistics were last reset.
+     *
+     * @return the number of hits
+     * @author Chay Wen Ning
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     *
+     * Returns the number of stores since the statistics were last reset.
+     *
+     * @return the number of stores
+     * @author Chay Wen Ning
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     *
+     * Returns the ratio of hits to probes since the statistics were last reset, {@code 0} if there were no probes.
+     *
+     * @return the hit rate, from {@code 0} to {@code 1}
+     * @author Chay Wen Ning
+     */
+    public double getHitRate() {
+        long probeCount = probes.sum();
+        return probeCount == 0 ? 0 : (double) hits.sum() / probeCount;
+    }
+
+    /**
+     *
+     * Resets the probe, hit and store counts.
+     *
+     * @author Chay Wen Ning
+     */
+    public void resetStatistics() {
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     *
+     * Returns the encoded best move of the specified entry data.
+     *
+     * @param data the entry data
+     * @return the encoded move
+     * @author Chay Wen Ning
+     */
+    public static int getMove(long data) {
+        return (int) (data & 0xFFF);
+    }
+
+    /**
+     *
+     * Returns the score of the specified entry data, to be adjusted with {@code fromTableScore}.
+     *
+     * @param data the entry data
+     * @return the score stored in the entry
+     * @author Chay Wen Ning
+     */
+    public static int getScore(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    /**
+     *
+     * Returns the depth of the specified entry data in plies.
+     *
+     * @param data the entry data
+     * @return the depth of the entry
+     * @author Chay Wen Ning
+     */
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     *
+     * Returns the bound type of the specified entry data.
+     *
+     * @param data the entry data
+     * @return {@code BOUND_EXACT}, {@code BOUND_LOWER} or {@code BOUND_UPPER}
+     * @author Chay Wen Ning
+     */
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     *
+     * Converts a win or loss score relative to the root into a score relative to the position at the specified ply, to be stored in the table.
+     *
+     * @param score the score relative to the root
+     * @param ply   the distance of the position from the root
+     * @return the score to store
+     * @author Chay Wen Ning
+     */
+    public static int toTableScore(int score, int ply) {
+        if (score >= Search.MIN_WIN_SCORE) {
+            return score + ply;
+        }
+        if (score <= -Search.MIN_WIN_SCORE) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     *
+     * Converts a win or loss score read from the table into a score relative to the root, for a position at the specified ply.
+     *
+     * @param score the score read from the table
+     * @param ply   the distance of the position from the root
+     * @return the score relative to the root
+     * @author Chay Wen Ning
+     */
+    public static int fromTableScore(int score, int ply) {
+        if (score >= Search.MIN_WIN_SCORE) {
+            return score - ply;
+        }
+        if (score <= -Search.MIN_WIN_SCORE) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        return (move & 0xFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+    }
+}
@@ -0,0 +1,199 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+import chessgame.PositionNotation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code UciClient} class; A computer player that runs an engine process served by {@code UciServer}, e.g. another build of the project,
+ * and asks it for its moves over its standard input and output.
+ * It lets a {@code Tournament} play engines of different builds against each other, each in its own process.
+ * <p>
+ * The position is sent in the notation of {@code PositionNotation} before every search, so the engine process keeps no game history.
+ *
+ * @see engine.UciServer
+ * @see engine.Tournament
+ * @author Chay Wen Ning
+ */
+public class UciClient implements SearchEngine, AutoCloseable {
+    // Time given to the engine process to exit after quit, in milliseconds
+    private static final long QUIT_TIMEOUT = 1000;
+
+    private final Process process;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private long timeLimit = Engine.DEFAULT_TIME_LIMIT;
+    private long nodeLimit = 0;
+    private long lastNodes;
+
+    /**
+     *
+     * Constructs a new {@code UciClient} object that starts the engine process of the specified command, and waits until it is ready.
+     *
+     * @param command the command and arguments of the engine process, e.g. {@code java -cp build engine.UciServer}
+     * @throws IOException if the process cannot be started, or does not answer the protocol
+     * @author Chay Wen Ning
+     */
+    public UciClient(List<String> command) throws IOException {
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        out = new PrintWriter(process.getOutputStream(), true);
+        send("uci");
+        waitFor("uciok");
+        send("isready");
+        waitFor("readyok");
+    }
+
+    @Override
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    @Override
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     *
+     * Returns the node limit of a search, {@code 0} if there is no node limit.
+     *
+     * @return the node limit
+     * @author Chay Wen Ning
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     *
+     * Sets the node limit of a search, which takes the place of the time limit. Set {@code 0} for no node limit.
+     *
+     * @param nodeLimit the node limit
+     * @author Chay Wen Ning
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     *
+     * Sets an option of the engine process.
+     *
+     * @param name  the name of the option, e.g. {@code Hash}
+     * @param value the value of the option
+     * @author Chay Wen Ning
+     */
+    public void setOption(String name, String value) {
+        send("setoption name " + name + " value " + value);
+    }
+
+    /**
+     *
+     * Tells the engine process that a new game starts, so that it clears its {@code TranspositionTable}, and waits until it is ready.
+     *
+     * @throws UncheckedIOException if the engine process does not answer
+     * @author Chay Wen Ning
+     */
+    public void newGame() {
+        send("ucinewgame");
+        send("isready");
+        waitForUnchecked("readyok");
+    }
+
+    @Override
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    /**
+     *
+     * Sends the specified {@code GameState} to the engine process, and returns the best move it answers within the node limit, or else the time limit.
+     * Returns {@code Move.NONE} if the player to move has no moves.
+     *
+     * @param state the {@code GameState} to search
+     * @return the encoded best move
+     * @throws UncheckedIOException if the engine process does not answer
+     * @author Chay Wen Ning
+     */
+    @Override
+    public int findBestMove(GameState state) {
+        lastNodes = 0;
+        send("position notation " + PositionNotation.toString(state));
+        send(nodeLimit > 0 ? "go nodes " + nodeLimit : timeLimit > 0 ? "go movetime " + timeLimit : "go infinite");
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("info")) {
+                    for (int i = 1; i + 1 < tokens.length; i++) {
+                        if (tokens[i].equals("nodes")) {
+                            lastNodes = Long.parseLong(tokens[i + 1]);
+                        }
+                    }
+                } else if (tokens[0].equals("bestmove") && tokens.length > 1) {
+                    return Move.parse(tokens[1]);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        throw new UncheckedIOException(new IOException("Engine process exited during a search"));
+    }
+
+    @Override
+    public void stop() {
+        send("stop");
+    }
+
+    /**
+     *
+     * Tells the engine process to quit, and kills it if it does not exit in time.
+     *
+     * @author Chay Wen Ning
+     */
+    @Override
+    public void close() {
+        send("quit");
+        try {
+            if (!process.waitFor(QUIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException ex) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(String command) {
+        synchronized (out) {
+            out.println(command);
+        }
+    }
+
+    private void waitFor(String answer) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().equals(answer)) {
+                return;
+            }
+        }
+        throw new IOException("Engine process exited before answering " + answer);
+    }
+
+    private void waitForUnchecked(String answer) {
+        try {
+            waitFor(answer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
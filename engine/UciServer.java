@@ -0,0 +1,462 @@
+package engine;
+
+import chessgame.GameState;
+import chessgame.Move;
+import chessgame.PositionNotation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * The {@code UciServer} class; Serves an {@code Engine} over standard input and output with a text protocol modelled on UCI,
+ * so that the {@code Engine} can be driven without the Swing container, e.g. by a tournament runner playing engines as separate processes.
+ * It plays on a {@code GameState}, so no AWT or Swing class is ever loaded.
+ * <p>
+ * The commands are read one per line:
+ * <ul>
+ * <li>{@code uci} lists the options, then answers {@code uciok}; {@code isready} answers {@code readyok}.</li>
+ * <li>{@code setoption name <name> [value <value>]} sets the option {@code Hash} (megabytes), {@code Threads}, {@code MultiPV},
+ * {@code Ponder}, {@code BookFile} (an {@code OpeningBook} file), {@code TablebasePath} (a {@code Tablebase} directory)
+ * or {@code NetworkFile} (a {@code Network} file, which scores positions instead of the {@code Evaluation}).</li>
+ * <li>{@code ucinewgame} clears the {@code TranspositionTable}.</li>
+ * <li>{@code position startpos [moves <move>...]} or {@code position notation <position> [moves <move>...]} sets the position,
+ * in the notation of {@code PositionNotation}, then plays the moves, in the notation of {@code Move.toString}.</li>
+ * <li>{@code go [movetime <ms>] [nodes <n>] [depth <plies>] [infinite] [ponder]} searches the position on a background thread.
+ * With {@code infinite}, the search runs until {@code stop}; without any limit it has the default move time of the {@code Engine}.</li>
+ * <li>{@code stop} stops the search; {@code ponderhit} tells a {@code go ponder} search that the predicted move was played,
+ * so that its limits start to apply; {@code quit} stops the search and exits.</li>
+ * </ul>
+ * <p>
+ * The search answers {@code info depth <plies> [multipv <n>] score cp <score> nodes <n> nps <n> time <ms> pv <move>...} after every iteration,
+ * with {@code score mate <moves>} instead once a {@code Sun} piece capture is forced, then {@code bestmove <move> [ponder <move>]},
+ * or {@code bestmove 0000} if the player to move has no moves. An infinite or pondering search holds its {@code bestmove} until {@code stop} or {@code ponderhit}.
+ * <p>
+ * Usage: {@code java engine.UciServer [weightsFile]}, where the optional weights file of {@code EvaluationTuner} replaces the weights of the {@code Evaluation}; pin it to a core with e.g. {@code taskset -c 2 java engine.UciServer} for reproducible benchmarks.
+ *
+ * @see engine.Engine
+ * @see chessgame.PositionNotation
+ * @see chessgame.Move#toString(int)
+ * @author Chay Wen Ning
+ */
+public class UciServer {
+    // Name and author answered to the uci command
+    private static final String NAME = "Talabia Chess Engine";
+    private static final String AUTHOR = "Chay Wen Ning";
+
+    // Upper bounds of the spin options
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    // Best move answered when the player to move has no moves
+    private static final String NO_MOVE = "0000";
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Engine engine = new Engine();
+    private GameState position = new GameState();
+
+    private Thread searchThread;
+    private boolean holdBestMove; // guarded by this
+    private boolean infinite; // guarded by this
+    private boolean searchReturned; // guarded by this
+
+    /**
+     *
+     * Constructs a new {@code UciServer} object that reads commands from the specified input and writes answers to the specified output.
+     *
+     * @param in  the input to read commands from
+     * @param out the output to write answers to
+     * @author Chay Wen Ning
+     */
+    public UciServer(InputStream in, PrintStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = out;
+        engine.setAnalysisListener(this::sendInfo);
+    }
+
+    /**
+     *
+     * Reads and handles commands until {@code quit} or the end of the input.
+     *
+     * @throws IOException if the input cannot be read
+     * @author Chay Wen Ning
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line.trim())) {
+                return;
+            }
+        }
+        stopSearch();
+    }
+
+    /**
+     *
+     * Handles the specified command, and returns {@code false} if it is {@code quit}.
+     *
+     * @param command the command line
+     * @return {@code false} if the server must exit
+     * @author Chay Wen Ning
+     */
+    private boolean handle(String command) {
+        String[] tokens = command.split("\\s+");
+        switch (tokens[0]) {
+            case "":
+                break;
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default " + TranspositionTable.DEFAULT_SIZE_MB + " min 1 max " + MAX_HASH_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name MultiPV type spin default 1 min 1 max " + Move.MAX_MOVES);
+                send("option name Ponder type check default true");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("option name NetworkFile type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(command);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                engine.clearHash();
+                break;
+            case "position":
+                setPosition(tokens);
+                break;
+            case "go":
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                stopSearch();
+                return false;
+            default:
+                send("info string Unknown command: " + command);
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Sets the option of a {@code setoption} command. The running search, if any, is stopped first.
+     *
+     * @param command the {@code setoption} command line
+     * @author Chay Wen Ning
+     */
+    private void setOption(String command) {
+        int nameIndex = command.indexOf(" name ");
+        if (nameIndex < 0) {
+            send("info string Missing option name: " + command);
+            return;
+        }
+        int valueIndex = command.indexOf(" value ", nameIndex);
+        String name = (valueIndex < 0 ? command.substring(nameIndex + 6) : command.substring(nameIndex + 6, valueIndex)).trim();
+        String value = valueIndex < 0 ? "" : command.substring(valueIndex + 7).trim();
+
+        stopSearch();
+        try {
+            switch (name.toLowerCase()) {
+                case "hash":
+                    engine.setHashSize(Math.min(Integer.parseInt(value), MAX_HASH_MB));
+                    break;
+                case "threads":
+                    engine.setThreads(Math.min(Integer.parseInt(value), MAX_THREADS));
+                    break;
+                case "multipv":
+                    engine.setMultiPv(Math.min(Integer.parseInt(value), Move.MAX_MOVES));
+                    break;
+                case "ponder":
+                    // pondering is asked for by go ponder
+                    break;
+                case "bookfile":
+                    engine.setOpeningBook(isEmpty(value) ? null : new OpeningBook(new File(value)));
+                    break;
+                case "tablebasepath":
+                    engine.setTablebase(isEmpty(value) ? null : new Tablebase(new File(value)));
+                    break;
+                case "networkfile":
+                    engine.setNetwork(isEmpty(value) ? null : new Network(new File(value)));
+                    break;
+                default:
+                    send("info string Unknown option: " + name);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            send("info string Cannot set option " + name + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     *
+     * Sets the position of a {@code position} command, then plays its moves. The position is left unchanged if the command is malformed or a move is illegal.
+     *
+     * @param tokens the tokens of the {@code position} command line
+     * @author Chay Wen Ning
+     */
+    private void setPosition(String[] tokens) {
+        int movesIndex = tokens.length;
+        for (int i = 1; i < tokens.length; i++) {
+            if (tokens[i].equals("moves")) {
+                movesIndex = i;
+                break;
+            }
+        }
+
+        GameState state;
+        try {
+            if (tokens.length > 1 && tokens[1].equals("startpos")) {
+                state = new GameState();
+            } else if (tokens.length > 1 && tokens[1].equals("notation")) {
+                state = PositionNotation.parse(String.join(" ", List.of(tokens).subList(2, movesIndex)));
+            } else {
+                send("info string Expected startpos or notation: " + String.join(" ", tokens));
+                return;
+            }
+        } catch (IllegalArgumentException ex) {
+            send("info string " + ex.getMessage());
+            return;
+        }
+
+        for (int i = movesIndex + 1; i < tokens.length; i++) {
+            int move = Move.parse(tokens[i]);
+            if (move == Move.NONE || !state.isLegalMove(move)) {
+                send("info string Illegal move: " + tokens[i]);
+                return;
+            }
+            state.makeMove(move);
+            // drop the undo stack, so that a game of any length fits
+            state = new GameState(state);
+        }
+        position = state;
+    }
+
+    /**
+     *
+     * Starts the search of a {@code go} command on a background thread, after stopping the running search, if any.
+     *
+     * @param tokens the tokens of the {@code go} command line
+     * @author Chay Wen Ning
+     */
+    private void go(String[] tokens) {
+        stopSearch();
+
+        long moveTime = 0;
+        long nodes = 0;
+        int depth = Search.MAX_DEPTH;
+        boolean depthGiven = false;
+        boolean infiniteSearch = false;
+        boolean ponder = false;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "movetime":
+                        moveTime = Long.parseLong(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "depth":
+                        depth = Integer.parseInt(tokens[++i]);
+                        depthGiven = true;
+                        break;
+                    case "infinite":
+                        infiniteSearch = true;
+                        break;
+                    case "ponder":
+                        ponder = true;
+                        break;
+                    default:
+                        send("info string Unknown go parameter: " + tokens[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            send("info string Malformed go command: " + String.join(" ", tokens));
+            return;
+        }
+        if (moveTime == 0 && nodes == 0 && !depthGiven && !infiniteSearch) {
+            // no budget understood, e.g. clock times, so the search is given the default move time instead of running until stop
+            moveTime = Engine.DEFAULT_TIME_LIMIT;
+        }
+
+        engine.setTimeLimit(infiniteSearch ? 0 : moveTime);
+        engine.setNodeLimit(infiniteSearch ? 0 : nodes);
+        engine.setMaxDepth(infiniteSearch ? Search.MAX_DEPTH : depth);
+        synchronized (this) {
+            infinite = infiniteSearch;
+            holdBestMove = infiniteSearch || ponder;
+            searchReturned = false;
+        }
+
+        GameState state = new GameState(position);
+        boolean ponderSearch = ponder;
+        searchThread = new Thread(() -> search(state, ponderSearch), "Search");
+        searchThread.setDaemon(true);
+        searchThread.start();
+    }
+
+    /**
+     *
+     * Searches the specified {@code GameState} on the search thread, holds the best move until it is released by {@code stop} or {@code ponderhit}
+     * if the search is infinite or pondering, then sends it with the predicted reply.
+     *
+     * @param state  the {@code GameState} to search
+     * @param ponder {@code true} if it is a {@code go ponder} search
+     * @author Chay Wen Ning
+     */
+    private void search(GameState state, boolean ponder) {
+        int bestMove = ponder ? engine.ponder(state) : engine.findBestMove(state);
+        synchronized (this) {
+            searchReturned = true;
+            while (holdBestMove) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (bestMove == Move.NONE) {
+            send("bestmove " + NO_MOVE);
+            return;
+        }
+        state.makeMove(bestMove);
+        int ponderMove = state.isGameOver() ? Move.NONE : engine.getPonderMove(state);
+        send("bestmove " + Move.toString(bestMove) + (ponderMove != Move.NONE ? " ponder " + Move.toString(ponderMove) : ""));
+    }
+
+    /**
+     *
+     * Stops the running search, if any, and waits for it to send its best move.
+     * The search is stopped again until it returns, in case it had not started yet when it was first stopped.
+     *
+     * @author Chay Wen Ning
+     */
+    private void stopSearch() {
+        Thread thread = searchThread;
+        if (thread == null) {
+            return;
+        }
+        synchronized (this) {
+            holdBestMove = false;
+            notifyAll();
+        }
+        try {
+            while (thread.isAlive()) {
+                engine.stop();
+                thread.join(10);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    /**
+     *
+     * Tells the running {@code go ponder} search that the predicted move was played, so that its limits start to apply,
+     * and releases its best move unless the search is infinite.
+     *
+     * @see engine.Engine#ponderHit()
+     * @author Chay Wen Ning
+     */
+    private void ponderHit() {
+        Thread thread = searchThread;
+        if (thread == null) {
+            return;
+        }
+        // the search may not have started yet, but runs until the ponder hit once it has
+        while (thread.isAlive() && !engine.ponderHit()) {
+            synchronized (this) {
+                if (searchReturned) {
+                    break;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (this) {
+            if (!infinite) {
+                holdBestMove = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     *
+     * Sends the {@code info} lines of a completed iteration, one per best move.
+     *
+     * @param lines the best moves of the iteration, best first
+     * @param nodes the number of nodes visited so far
+     * @param time  the time since the start of the search in milliseconds
+     * @author Chay Wen Ning
+     */
+    private void sendInfo(List<PrincipalVariation> lines, long nodes, long time) {
+        long nps = nodes * 1000 / Math.max(time, 1);
+        for (int i = 0; i < lines.size(); i++) {
+            PrincipalVariation line = lines.get(i);
+            send("info depth " + line.getDepth() + (lines.size() > 1 ? " multipv " + (i + 1) : "") + " score " + formatScore(line.getScore())
+                    + " nodes " + nodes + " nps " + nps + " time " + time + " pv " + line);
+        }
+    }
+
+    /**
+     *
+     * Returns the {@code info} notation of the specified score: {@code cp <score>},
+     * or {@code mate <moves>} for a forced {@code Sun} piece capture in that many moves of the player to move, negative if it is their {@code Sun} piece.
+     *
+     * @param score the score from the point of view of the player to move
+     * @return the notation of the score
+     * @author Chay Wen Ning
+     */
+    static String formatScore(int score) {
+        if (score >= Search.MIN_WIN_SCORE) {
+            return "mate " + (Search.WIN_SCORE - score + 1) / 2;
+        }
+        if (score <= -Search.MIN_WIN_SCORE) {
+            return "mate -" + (Search.WIN_SCORE + score + 1) / 2;
+        }
+        return "cp " + score;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value.isEmpty() || value.equals("<empty>");
+    }
+
+    /**
+     *
+     * Sends the specified line to the output, and flushes it. This method can be called from any thread.
+     *
+     * @param line the line to send
+     * @author Chay Wen Ning
+     */
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            Evaluation.loadWeights(new File(args[0]));
+        }
+        new UciServer(System.in, System.out).run();
+    }
+}
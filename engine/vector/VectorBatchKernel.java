@@ -0,0 +1,71 @@
+package engine.vector;
+
+import engine.BatchKernel;
+import engine.Network;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorBatchKernel} class; Runs the layers of a {@code Network} on the SIMD lanes of the incubating Vector API.
+ * <p>
+ * An accumulator is computed a vector of lanes at a time, adding the lanes of every weight column while they stay in a register,
+ * instead of adding the columns one by one to the accumulator in memory. The output layer clamps a vector of 16-bit lanes,
+ * then widens it to two vectors of 32-bit lanes to multiply it by the output weights without overflow.
+ * <p>
+ * The class is in a source folder of its own, so that the rest of the project compiles without the incubator module, and is loaded by reflection
+ * by the {@code BatchEvaluator}. Compile and run it with the module added, e.g.
+ * {@code javac --add-modules jdk.incubator.vector -cp build -d build engine/vector/*.java}
+ * and {@code java --add-modules jdk.incubator.vector -cp build engine.BatchEvaluator ...}.
+ *
+ * @see engine.BatchEvaluator
+ * @author Chay Wen Ning
+ */
+public class VectorBatchKernel implements BatchKernel {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void accumulate(short[] weights, int[] columns, int count, short[] biases, short[] accumulator, int hiddenSize) {
+        int i = 0;
+        for (; i <= hiddenSize - SHORTS.length(); i += SHORTS.length()) {
+            ShortVector sum = ShortVector.fromArray(SHORTS, biases, i);
+            for (int j = 0; j < count; j++) {
+                sum = sum.add(ShortVector.fromArray(SHORTS, weights, columns[j] + i));
+            }
+            sum.intoArray(accumulator, i);
+        }
+        for (; i < hiddenSize; i++) {
+            int sum = biases[i];
+            for (int j = 0; j < count; j++) {
+                sum += weights[columns[j] + i];
+            }
+            accumulator[i] = (short) sum;
+        }
+    }
+
+    @Override
+    public int output(short[] own, short[] other, short[] outputWeights, int hiddenSize) {
+        return output(own, outputWeights, 0, hiddenSize) + output(other, outputWeights, hiddenSize, hiddenSize);
+    }
+
+    private static int output(short[] accumulator, short[] outputWeights, int offset, int hiddenSize) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (; i <= hiddenSize - SHORTS.length(); i += SHORTS.length()) {
+            ShortVector values = ShortVector.fromArray(SHORTS, accumulator, i).max((short) 0).min((short) Network.QA);
+            ShortVector weights = ShortVector.fromArray(SHORTS, outputWeights, offset + i);
+            for (int part = 0; part < 2; part++) {
+                IntVector wideValues = (IntVector) values.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector wideWeights = (IntVector) weights.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(wideValues.mul(wideWeights));
+            }
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < hiddenSize; i++) {
+            total += Math.min(Math.max(accumulator[i], 0), Network.QA) * outputWeights[offset + i];
+        }
+        return total;
+    }
+}
@@ -53,6 +53,8 @@ public class ChessGameContainer extends JFrame {
 
     private JButton switchBtn;
     private JButton saveBtn;
+    private JCheckBox[] computerPlayerBoxes = new JCheckBox[2];
+    private JCheckBox ponderBox;
 
     private boolean gameStarted = false;
 
@@ -338,6 +340,29 @@ public class ChessGameContainer extends JFrame {
             }
         });
 
+        for (int i = 0; i < computerPlayerBoxes.length; i++) {
+            final int playerIndex = i;
+            computerPlayerBoxes[i] = new JCheckBox("Computer player " + (i + 1));
+            computerPlayerBoxes[i].setFocusable(false);
+            computerPlayerBoxes[i].setAlignmentX(Component.CENTER_ALIGNMENT);
+            computerPlayerBoxes[i].addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    setComputerPlayer(playerIndex, computerPlayerBoxes[playerIndex].isSelected());
+                }
+            });
+        }
+
+        ponderBox = new JCheckBox("Computer ponders", true);
+        ponderBox.setFocusable(false);
+        ponderBox.setAlignmentX(Component.CENTER_ALIGNMENT);
+        ponderBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setPondering(ponderBox.isSelected());
+            }
+        });
+
         JButton exitBtn = new JButton("Exit Game");
         exitBtn.setFocusable(false);
         exitBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -355,6 +380,10 @@ public class ChessGameContainer extends JFrame {
         sidePanel.add(Box.createRigidArea(new Dimension(0, 20)));
         sidePanel.add(switchBtn);
         sidePanel.add(Box.createRigidArea(new Dimension(0, 20)));
+        sidePanel.add(computerPlayerBoxes[0]);
+        sidePanel.add(computerPlayerBoxes[1]);
+        sidePanel.add(ponderBox);
+        sidePanel.add(Box.createRigidArea(new Dimension(0, 20)));
         sidePanel.add(saveBtn);
         sidePanel.add(Box.createRigidArea(new Dimension(0, 20)));
         sidePanel.add(loadBtn);
@@ -374,6 +403,41 @@ public class ChessGameContainer extends JFrame {
         chessController.switchTurnAndUpdateContainer();
     }
 
+    /**
+     * 
+     * Sets whether the player of the specified index is played by the computer, and lets the computer play if it is its turn.
+     * This method calls the {@code setComputerPlayer} and {@code playComputerTurnIfNeeded} methods in the controller.
+     * 
+     * @param index      the index of the player
+     * @param isComputer {@code true} if the player is to be played by the computer
+     * @see chessgame.ChessController#setComputerPlayer(int, boolean)
+     * @see chessgame.ChessController#playComputerTurnIfNeeded()
+     * @author Chay Wen Ning
+     */
+    public void setComputerPlayer(int index, boolean isComputer) {
+        chessController.setComputerPlayer(index, isComputer);
+        if (gameStarted) {
+            chessController.playComputerTurnIfNeeded();
+        }
+    }
+
+    /**
+     * 
+     * Sets whether the computer player searches during the turn of a human player, and starts pondering if it is such a turn.
+     * This method calls the {@code setPondering} and {@code playComputerTurnIfNeeded} methods in the controller.
+     * 
+     * @param pondering {@code true} if the computer player ponders
+     * @see chessgame.ChessController#setPondering(boolean)
+     * @see chessgame.ChessController#playComputerTurnIfNeeded()
+     * @author Chay Wen Ning
+     */
+    public void setPondering(boolean pondering) {
+        chessController.setPondering(pondering);
+        if (gameStarted) {
+            chessController.playComputerTurnIfNeeded();
+        }
+    }
+
     /**
      * 
      * Starts a chess game.
@@ -388,6 +452,7 @@ public class ChessGameContainer extends JFrame {
 
         chessController.displayCurrentPlayerTurn();
         chessController.displayCurrentPlayerStatus();
+        chessController.playComputerTurnIfNeeded();
     }
 
     /**
@@ -505,7 +570,7 @@ public class ChessGameContainer extends JFrame {
          * @author Chay Wen Ning
          */
         public void selectPieceIfValid(Point point) {
-            if (!gameStarted || chessController.currentPlayerHasPlayed()) {
+            if (!gameStarted || chessController.currentPlayerHasPlayed() || chessController.isComputerTurn()) {
                 selectedPieceImage = null;
                 return;
             }
@@ -547,7 +612,7 @@ public class ChessGameContainer extends JFrame {
          * @author Chay Wen Ning
          */
         public void playPieceIfValid(Point point) {
-            if (!gameStarted || chessController.currentPlayerHasPlayed())
+            if (!gameStarted || chessController.currentPlayerHasPlayed() || chessController.isComputerTurn())
                 return;
 
             // determine the relative point at grid panel